@@ -0,0 +1,137 @@
+package cz.muni.fi.kurcik.kgs.benchmarks;
+
+import cz.muni.fi.kurcik.kgs.Main;
+import cz.muni.fi.kurcik.kgs.download.BasicDownloader;
+import cz.muni.fi.kurcik.kgs.download.metrics.CrawlMetrics;
+import cz.muni.fi.kurcik.kgs.download.metrics.CrawlStage;
+import cz.muni.fi.kurcik.kgs.download.metrics.LatencyHistogram;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Benchmark of downloader against generated site served from local HTTP server.
+ * Reports pages and bytes per second and latencies of crawl stages, so changes of crawler can be compared without network.
+ *
+ * @author Lukáš Kurčík
+ */
+public class CrawlerBenchmark {
+
+    public static void main(String[] args) throws ParseException, IOException {
+        Options options = getOptions();
+        CommandLine cmd = new DefaultParser().parse(options, args);
+        if (cmd.hasOption("help")) {
+            new HelpFormatter().printHelp("java -jar kgs-benchmarks.jar", options);
+            return;
+        }
+
+        Logger logger = Logger.getLogger("kgs.benchmark");
+        logger.setLevel(cmd.hasOption("verbose") ? Level.ALL : Level.WARNING);
+
+        try (SyntheticSite site = createSite(cmd)) {
+            site.start(Integer.valueOf(cmd.getOptionValue("port", "0")), Integer.valueOf(cmd.getOptionValue("serverthreads", "16")));
+            int runs = Integer.valueOf(cmd.getOptionValue("runs", "3"));
+            for (int run = 1; run <= runs; run++) {
+                Path dir = Files.createTempDirectory("kgs-benchmark");
+                try {
+                    BasicDownloader downloader = Main.localDownloader(cmd);
+                    downloader.setLogger(logger);
+                    downloader.setDownloadDirectory(dir);
+
+                    long requests = site.getRequests();
+                    long bytes = site.getBytes();
+                    long start = System.nanoTime();
+                    downloader.downloadPage(site.getStartUrl(), 0, Integer.valueOf(cmd.getOptionValue("depth", "1000")));
+                    double elapsed = (System.nanoTime() - start) / 1e9;
+
+                    System.out.println("Run " + run + "/" + runs);
+                    report(downloader.getMetrics(), elapsed, site.getRequests() - requests, site.getBytes() - bytes);
+                } finally {
+                    if (cmd.hasOption("keep"))
+                        System.out.println("Data kept in " + dir);
+                    else
+                        FileUtils.deleteQuietly(dir.toFile());
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints results of one run
+     *
+     * @param metrics        Crawl metrics
+     * @param elapsed        Time of crawl in seconds
+     * @param serverRequests Number of requests handled by server
+     * @param serverBytes    Number of bytes sent by server
+     */
+    protected static void report(CrawlMetrics metrics, double elapsed, long serverRequests, long serverBytes) {
+        System.out.println(String.format("  time: %.2f s", elapsed));
+        System.out.println(String.format("  pages: %d (%.2f pages/s)", metrics.getPages(), metrics.getPages() / elapsed));
+        System.out.println(String.format("  bytes: %d (%.0f bytes/s)", metrics.getBytes(), metrics.getBytes() / elapsed));
+        System.out.println(String.format("  server: %d requests, %d bytes", serverRequests, serverBytes));
+        for (CrawlStage stage : CrawlStage.values()) {
+            LatencyHistogram latency = metrics.getLatency(stage);
+            System.out.println(String.format("  %-8s %s", stage.name().toLowerCase(), latency));
+        }
+    }
+
+    /**
+     * Creates site from command line options
+     *
+     * @param cmd Command line
+     * @return site that isn't started
+     */
+    protected static SyntheticSite createSite(CommandLine cmd) {
+        SyntheticSite site = new SyntheticSite();
+        site.setPages(Integer.valueOf(cmd.getOptionValue("pages", "500")));
+        site.setFanout(Integer.valueOf(cmd.getOptionValue("fanout", "10")));
+        site.setWords(Integer.valueOf(cmd.getOptionValue("words", "300")));
+        site.setRedirects(Integer.valueOf(cmd.getOptionValue("redirects", "0")));
+        site.setRedirectRatio(Double.valueOf(cmd.getOptionValue("redirectratio", "0.1")));
+        site.setSlowRatio(Double.valueOf(cmd.getOptionValue("slow", "0")));
+        site.setSlowDelay(Integer.valueOf(cmd.getOptionValue("slowdelay", "200")));
+        site.setBinaryRatio(Double.valueOf(cmd.getOptionValue("binary", "0")));
+        site.setBinarySize(Integer.valueOf(cmd.getOptionValue("binarysize", "65536")));
+        site.setEnglishRatio(Double.valueOf(cmd.getOptionValue("english", "0")));
+        site.setSeed(Long.valueOf(cmd.getOptionValue("seed", "42")));
+        return site;
+    }
+
+    /**
+     * Return options of benchmark
+     *
+     * @return options
+     */
+    protected static Options getOptions() {
+        Options options = new Options();
+        options.addOption("h", "help", false, "Print this message");
+        options.addOption("verbose", false, "Print downloader logs");
+        options.addOption("keep", false, "Keep downloaded data");
+        options.addOption("runs", true, "Number of runs. Default: 3");
+        options.addOption("depth", true, "Maximum depth for downloader. Default: 1000");
+        options.addOption("pipeline", true, "Use staged pipeline with numbers of fetch, parse and detect threads, e.g. 16,4,2");
+        options.addOption("port", true, "Port of server. Default: any free port");
+        options.addOption("serverthreads", true, "Number of server threads. Default: 16");
+        options.addOption("pages", true, "Number of pages. Default: 500");
+        options.addOption("fanout", true, "Number of links on each page. Default: 10");
+        options.addOption("words", true, "Number of words on each page. Default: 300");
+        options.addOption("redirects", true, "Length of redirect chains, 0 means no redirects. Default: 0");
+        options.addOption("redirectratio", true, "Ratio of links going through redirect chain. Default: 0.1");
+        options.addOption("slow", true, "Ratio of slow pages. Default: 0");
+        options.addOption("slowdelay", true, "Delay of slow pages in milliseconds. Default: 200");
+        options.addOption("binary", true, "Ratio of pages linking binary file. Default: 0");
+        options.addOption("binarysize", true, "Size of binary files in bytes. Default: 65536");
+        options.addOption("english", true, "Ratio of English pages. Default: 0");
+        options.addOption("seed", true, "Seed of generated site. Default: 42");
+        return options;
+    }
+}
@@ -0,0 +1,309 @@
+package cz.muni.fi.kurcik.kgs.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generated web site served by local HTTP server.
+ * Site has pages /page/[n].html, each with text and links to other pages. Content of site depends only on its settings and seed.
+ * Some links go through redirect chains /redirect/[target]/[length], some pages respond slowly,
+ * some pages link binary files /file/[n].bin and some pages are in English instead of Czech.
+ * Page 0 links page 1, page 1 links page 2 and so on, so all pages are reachable from start URL.
+ *
+ * @author Lukáš Kurčík
+ */
+public class SyntheticSite implements AutoCloseable {
+
+    protected static final String[] CZECH = ("a v se na je že s z do o to i k ve jsou pro by jak ale jeho po tak při od "
+            + "jako který bude jejich než má může město řeka škola učitel příroda dům zahrada počítač člověk dítě "
+            + "práce rodina léto zima jaro podzim strom voda hora cesta silnice knihovna kniha jazyk věda výzkum "
+            + "univerzita student přednáška vlak nádraží obchod potraviny chléb mléko maso zelenina ovoce "
+            + "dnes včera zítra velmi často někdy vždycky nikdy rychle pomalu krásný velký malý starý nový "
+            + "český moravský pražský brněnský dobrý špatný důležitý zajímavý").split(" ");
+    protected static final String[] ENGLISH = ("the of and to in is that it was for on are as with his they at be this "
+            + "from have or by one had not but what all were when we there can an your which their said if do will "
+            + "each about how up out them then she many some so these would other into has more her two like him "
+            + "see time could no make than first been its who now people my made over did down only way find use "
+            + "may water long little very after words called just where most know").split(" ");
+
+    protected int pages = 500;
+    protected int fanout = 10;
+    protected int words = 300;
+    protected int redirects = 0;
+    protected double redirectRatio = 0.1;
+    protected double slowRatio = 0;
+    protected int slowDelay = 200;
+    protected double binaryRatio = 0;
+    protected int binarySize = 64 * 1024;
+    protected double englishRatio = 0;
+    protected long seed = 42;
+
+    protected final Map<Integer, byte[]> cache = new ConcurrentHashMap<>();
+    protected final LongAdder requests = new LongAdder();
+    protected final LongAdder bytes = new LongAdder();
+
+    protected HttpServer server;
+    protected ExecutorService executor;
+
+    /**
+     * Starts server on localhost
+     *
+     * @param port    Port or 0 for any free port
+     * @param threads Number of threads handling requests
+     * @throws IOException when server can't be started
+     */
+    public void start(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 128);
+        server.createContext("/page/", this::page);
+        server.createContext("/redirect/", this::redirect);
+        server.createContext("/file/", this::file);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Stops server
+     */
+    @Override
+    public void close() {
+        if (server != null)
+            server.stop(0);
+        if (executor != null)
+            executor.shutdownNow();
+    }
+
+    /**
+     * Return URL of first page
+     *
+     * @return start URL
+     */
+    public URI getStartUrl() {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + "/page/0.html");
+    }
+
+    /**
+     * Return number of handled requests
+     *
+     * @return number of requests
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Return number of sent bytes
+     *
+     * @return number of bytes
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * Handles page request
+     *
+     * @param exchange HTTP exchange
+     * @throws IOException when response can't be sent
+     */
+    protected void page(HttpExchange exchange) throws IOException {
+        int page = parseNumber(exchange, "/page/", ".html");
+        if (page < 0 || page >= pages) {
+            send(exchange, 404, "text/plain", new byte[0]);
+            return;
+        }
+        if (is(page, 1, slowRatio)) {
+            try {
+                Thread.sleep(slowDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        send(exchange, 200, "text/html; charset=UTF-8", cache.computeIfAbsent(page, this::generatePage));
+    }
+
+    /**
+     * Handles redirect request /redirect/[target]/[remaining redirects]
+     *
+     * @param exchange HTTP exchange
+     * @throws IOException when response can't be sent
+     */
+    protected void redirect(HttpExchange exchange) throws IOException {
+        String[] parts = exchange.getRequestURI().getPath().substring("/redirect/".length()).split("/");
+        int target = Integer.parseInt(parts[0]);
+        int remaining = Integer.parseInt(parts[1]);
+        exchange.getResponseHeaders().add("Location", remaining <= 1
+                ? "/page/" + target + ".html"
+                : "/redirect/" + target + "/" + (remaining - 1));
+        send(exchange, 302, "text/plain", new byte[0]);
+    }
+
+    /**
+     * Handles binary file request
+     *
+     * @param exchange HTTP exchange
+     * @throws IOException when response can't be sent
+     */
+    protected void file(HttpExchange exchange) throws IOException {
+        int file = parseNumber(exchange, "/file/", ".bin");
+        byte[] content = new byte[binarySize];
+        new Random(seed + file).nextBytes(content);
+        send(exchange, 200, "application/octet-stream", content);
+    }
+
+    /**
+     * Generates HTML of page
+     *
+     * @param page Page number
+     * @return UTF-8 encoded HTML
+     */
+    protected byte[] generatePage(int page) {
+        Random random = new Random(seed * 31 + page);
+        String[] dictionary = is(page, 2, englishRatio) ? ENGLISH : CZECH;
+
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html>\n<html><head><meta charset=\"UTF-8\"><title>Stránka ").append(page)
+                .append("</title></head><body>\n<h1>Stránka ").append(page).append("</h1>\n<p>");
+        for (int i = 0; i < words; i++) {
+            html.append(dictionary[random.nextInt(dictionary.length)]);
+            html.append(i % 15 == 14 ? ".</p>\n<p>" : " ");
+        }
+        html.append("</p>\n<ul>\n");
+
+        if (page + 1 < pages)
+            appendLink(html, page + 1, random);
+        for (int i = 1; i < fanout; i++)
+            appendLink(html, random.nextInt(pages), random);
+        if (is(page, 3, binaryRatio))
+            html.append("<li><a href=\"/file/").append(page).append(".bin\">soubor</a></li>\n");
+
+        html.append("</ul>\n</body></html>\n");
+        return html.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends link to page, possibly through redirect chain
+     *
+     * @param html   HTML builder
+     * @param target Target page
+     * @param random Random generator of page
+     */
+    protected void appendLink(StringBuilder html, int target, Random random) {
+        String href = redirects > 0 && random.nextDouble() < redirectRatio
+                ? "/redirect/" + target + "/" + redirects
+                : "/page/" + target + ".html";
+        html.append("<li><a href=\"").append(href).append("\">Odkaz ").append(target).append("</a></li>\n");
+    }
+
+    /**
+     * Decides whether page has property, page 0 never has any
+     *
+     * @param page     Page number
+     * @param property Number of property to get independent decisions
+     * @param ratio    Ratio of pages with property
+     * @return true if page has property
+     */
+    protected boolean is(int page, int property, double ratio) {
+        return page != 0 && new Random(seed * 7919 + page * 31L + property).nextDouble() < ratio;
+    }
+
+    /**
+     * Parses number from request path
+     *
+     * @param exchange HTTP exchange
+     * @param prefix   Path prefix
+     * @param suffix   Path suffix
+     * @return number or -1 if path is invalid
+     */
+    protected int parseNumber(HttpExchange exchange, String prefix, String suffix) {
+        String path = exchange.getRequestURI().getPath();
+        if (!path.startsWith(prefix) || !path.endsWith(suffix))
+            return -1;
+        try {
+            return Integer.parseInt(path.substring(prefix.length(), path.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Sends response
+     *
+     * @param exchange    HTTP exchange
+     * @param status      HTTP status
+     * @param contentType Content type
+     * @param body        Body
+     * @throws IOException when response can't be sent
+     */
+    protected void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        requests.increment();
+        bytes.add(body.length);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    public void setPages(int pages) {
+        this.pages = pages;
+    }
+
+    public void setFanout(int fanout) {
+        this.fanout = fanout;
+    }
+
+    public void setWords(int words) {
+        this.words = words;
+    }
+
+    /**
+     * Sets length of redirect chains
+     *
+     * @param redirects number of redirects, 0 disables redirects
+     */
+    public void setRedirects(int redirects) {
+        this.redirects = redirects;
+    }
+
+    public void setRedirectRatio(double redirectRatio) {
+        this.redirectRatio = redirectRatio;
+    }
+
+    public void setSlowRatio(double slowRatio) {
+        this.slowRatio = slowRatio;
+    }
+
+    public void setSlowDelay(int slowDelay) {
+        this.slowDelay = slowDelay;
+    }
+
+    public void setBinaryRatio(double binaryRatio) {
+        this.binaryRatio = binaryRatio;
+    }
+
+    public void setBinarySize(int binarySize) {
+        this.binarySize = binarySize;
+    }
+
+    public void setEnglishRatio(double englishRatio) {
+        this.englishRatio = englishRatio;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}
@@ -0,0 +1,35 @@
+package cz.muni.fi.kurcik.kgs.benchmarks.jmh;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Representative Czech text used by NLP benchmarks, so results of different runs can be compared.
+ * Text has paragraphs of few sentences with diacritics, numbers, punctuation and quotes like parsed web pages.
+ *
+ * @author Lukáš Kurčík
+ */
+public final class CzechSample {
+
+    public static final String RESOURCE = "czech_sample.txt";
+
+    private CzechSample() {
+    }
+
+    /**
+     * Loads sample text from resources
+     *
+     * @return text
+     * @throws IOException when sample is missing
+     */
+    public static String load() throws IOException {
+        try (InputStream input = CzechSample.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (input == null)
+                throw new IOException("Missing resource " + RESOURCE);
+            return IOUtils.toString(input, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package cz.muni.fi.kurcik.kgs.benchmarks.jmh;
+
+import cz.muni.fi.kurcik.kgs.keywords.TextRank.LanguageCzech;
+import cz.muni.fi.kurcik.kgs.util.Majka;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls of LanguageCzech made by TextRank for each document: splitting text into sentences,
+ * lemmatization of sentence tokens and tagging of lemmas. One operation processes whole Czech sample.
+ * Majka cache is warmed up in setup, like it is after first documents.
+ *
+ * @author Lukáš Kurčík
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LanguageCzechBenchmark {
+
+    protected Majka majka;
+    protected LanguageCzech language;
+    protected String text;
+    protected String[] sentences;
+    protected String[][] tokens;
+
+    @Setup
+    public void setUp() throws IOException {
+        majka = new Majka();
+        language = new LanguageCzech(true, majka);
+        text = CzechSample.load();
+        sentences = language.splitParagraph(text);
+        tokens = new String[sentences.length][];
+        for (int i = 0; i < sentences.length; i++)
+            tokens[i] = language.tokenizeSentence(sentences[i]);
+    }
+
+    @TearDown
+    public void tearDown() {
+        majka.close();
+    }
+
+    @Benchmark
+    public String[] splitParagraph() {
+        return language.splitParagraph(text);
+    }
+
+    @Benchmark
+    public void tokenizeSentence(Blackhole blackhole) {
+        for (String sentence : sentences)
+            blackhole.consume(language.tokenizeSentence(sentence));
+    }
+
+    @Benchmark
+    public void tagTokens(Blackhole blackhole) {
+        for (String[] sentence : tokens)
+            blackhole.consume(language.tagTokens(sentence));
+    }
+}
@@ -0,0 +1,105 @@
+package cz.muni.fi.kurcik.kgs.benchmarks.jmh;
+
+import cz.muni.fi.kurcik.kgs.preprocessing.CzechTokenizer;
+import cz.muni.fi.kurcik.kgs.util.LemmaCache;
+import cz.muni.fi.kurcik.kgs.util.Majka;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lemmatization of all tokens of Czech sample by Majka.findAll.
+ * Cold benchmarks start each operation with empty cache, so every word goes to dictionary,
+ * warm benchmarks have all words already cached, like frequent words in later documents.
+ * C++ library can be measured with -p nativeLibrary=true, it must be on java.library.path.
+ *
+ * @author Lukáš Kurčík
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MajkaBenchmark {
+
+    protected static final int CACHE_CAPACITY = 1 << 12;
+
+    @Param({"false"})
+    public boolean nativeLibrary;
+
+    protected Majka majka;
+    protected List<String> words;
+    protected LemmaCache warmCache;
+
+    @Setup
+    public void setUp() throws IOException {
+        majka = new Majka(nativeLibrary);
+        words = new CzechTokenizer().tokenize(CzechSample.load());
+        warmCache = new LemmaCache(CACHE_CAPACITY);
+        majka.setCache(warmCache);
+        majka.findAll(words, Majka.IGNORE_CASE, true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        majka.close();
+    }
+
+    @Benchmark
+    public Map<String, String> findAllCold(ColdCache cold) throws IOException {
+        return majka.findAll(words, Majka.IGNORE_CASE, true);
+    }
+
+    @Benchmark
+    public Map<String, String> findAllColdWithoutTags(ColdCache cold) throws IOException {
+        return majka.findAll(words, Majka.IGNORE_CASE, false);
+    }
+
+    @Benchmark
+    public Map<String, String> findAllWarm(WarmCache warm) throws IOException {
+        return majka.findAll(words, Majka.IGNORE_CASE, true);
+    }
+
+    @Benchmark
+    public Map<String, String> findAllWarmWithoutTags(WarmCache warm) throws IOException {
+        return majka.findAll(words, Majka.IGNORE_CASE, false);
+    }
+
+    /**
+     * Sets new empty cache before each operation, creation of cache is not measured
+     */
+    @State(Scope.Thread)
+    public static class ColdCache {
+        @Setup(Level.Invocation)
+        public void setUp(MajkaBenchmark benchmark) {
+            benchmark.majka.setCache(new LemmaCache(CACHE_CAPACITY));
+        }
+    }
+
+    /**
+     * Sets cache with all words of sample
+     */
+    @State(Scope.Thread)
+    public static class WarmCache {
+        @Setup(Level.Iteration)
+        public void setUp(MajkaBenchmark benchmark) {
+            benchmark.majka.setCache(benchmark.warmCache);
+        }
+    }
+}
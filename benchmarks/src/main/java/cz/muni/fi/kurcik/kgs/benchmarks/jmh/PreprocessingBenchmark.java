@@ -0,0 +1,69 @@
+package cz.muni.fi.kurcik.kgs.benchmarks.jmh;
+
+import cz.muni.fi.kurcik.kgs.preprocessing.MajkaPreprocessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokenization and filtering of tokens done by MajkaPreprocessor for each parsed document.
+ * One operation processes whole Czech sample.
+ *
+ * @author Lukáš Kurčík
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreprocessingBenchmark {
+
+    protected SamplePreprocessor preprocessor;
+    protected String text;
+    protected List<String> tokens;
+
+    @Setup
+    public void setUp() throws IOException {
+        preprocessor = new SamplePreprocessor();
+        text = CzechSample.load();
+        tokens = preprocessor.tokenize(text);
+    }
+
+    @Benchmark
+    public List<String> tokenize() throws IOException {
+        return preprocessor.tokenize(text);
+    }
+
+    @Benchmark
+    public List<String> filterTokens() throws IOException {
+        return preprocessor.filterTokens(tokens);
+    }
+
+    /**
+     * Makes protected methods of preprocessor accessible for benchmarks
+     */
+    public static class SamplePreprocessor extends MajkaPreprocessor {
+
+        @Override
+        public List<String> tokenize(String content) throws IOException {
+            return super.tokenize(content);
+        }
+
+        @Override
+        public List<String> filterTokens(List<String> tokens) throws IOException {
+            return super.filterTokens(tokens);
+        }
+    }
+}
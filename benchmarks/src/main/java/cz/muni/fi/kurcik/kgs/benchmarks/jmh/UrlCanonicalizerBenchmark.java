@@ -0,0 +1,111 @@
+package cz.muni.fi.kurcik.kgs.benchmarks.jmh;
+
+import cz.muni.fi.kurcik.kgs.util.UrlCanonicalizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares URL canonicalization and host extraction of UrlCanonicalizer with previous implementation
+ * based on URI constructor and regular expressions.
+ *
+ * @author Lukáš Kurčík
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlCanonicalizerBenchmark {
+
+    protected static final Pattern HOST_PATTERN = Pattern.compile("(([^.]+\\.)?[a-zA-Z]+)$");
+    protected static final String[] HOSTS = {"www.fi.muni.cz", "is.muni.cz", "www.seznam.cz", "novinky.cz", "WWW.Example.com", "cs.wikipedia.org"};
+
+    protected URI[] urls;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        urls = new URI[1024];
+        for (int i = 0; i < urls.length; i++) {
+            StringBuilder url = new StringBuilder(random.nextBoolean() ? "https://" : "http://")
+                    .append(HOSTS[random.nextInt(HOSTS.length)]);
+            int segments = 1 + random.nextInt(4);
+            for (int s = 0; s < segments; s++)
+                url.append('/').append(random.nextBoolean() ? "clanek" : "%C4%8Dl%C3%A1nek").append(random.nextInt(1000));
+            if (random.nextBoolean())
+                url.append('/');
+            if (random.nextInt(3) == 0)
+                url.append("?id=").append(random.nextInt(100000)).append("&page=").append(random.nextInt(10));
+            if (random.nextInt(4) == 0)
+                url.append("#sekce");
+            urls[i] = URI.create(url.toString());
+        }
+    }
+
+    @Benchmark
+    public void canonicalize(Blackhole blackhole) {
+        for (URI url : urls)
+            blackhole.consume(UrlCanonicalizer.canonicalize(url));
+    }
+
+    @Benchmark
+    public void legacyNormalize(Blackhole blackhole) {
+        for (URI url : urls)
+            blackhole.consume(legacyNormalize(url));
+    }
+
+    @Benchmark
+    public void registrableHost(Blackhole blackhole) {
+        for (URI url : urls)
+            blackhole.consume(UrlCanonicalizer.registrableHost(url));
+    }
+
+    @Benchmark
+    public void legacyHost(Blackhole blackhole) {
+        for (URI url : urls)
+            blackhole.consume(legacyHost(url));
+    }
+
+    /**
+     * Previous UrlIndex.normalize
+     */
+    protected static URI legacyNormalize(URI url) {
+        try {
+            String path;
+            if (url.getPath() != null && url.getPath().endsWith("/"))
+                path = url.getPath().replaceAll("/$", "");
+            else
+                path = url.getPath();
+            return new URI("http", url.getAuthority(), path, url.getQuery(), null);
+        } catch (URISyntaxException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Previous BasicUrlContainer.getHost
+     */
+    protected static String legacyHost(URI url) {
+        Matcher matcher = HOST_PATTERN.matcher(legacyNormalize(url).getHost());
+        if (matcher.find())
+            return matcher.group(1);
+        return "";
+    }
+}
@@ -0,0 +1,57 @@
+package cz.muni.fi.kurcik.kgs.benchmarks.jmh;
+
+import cz.muni.fi.kurcik.kgs.clustering.corpus.Vocabulary;
+import cz.muni.fi.kurcik.kgs.preprocessing.CzechTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vocabulary.addAndGetId with filtered tokens of Czech sample, as it is called by corpus for each word of document.
+ * Empty vocabulary measures mix of new and repeated words, filled vocabulary measures only lookups.
+ *
+ * @author Lukáš Kurčík
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VocabularyBenchmark {
+
+    protected String[] words;
+    protected Vocabulary filled;
+
+    @Setup
+    public void setUp() throws IOException {
+        words = new CzechTokenizer().tokenizeFiltered(CzechSample.load()).toArray(new String[0]);
+        filled = new Vocabulary();
+        for (String word : words)
+            filled.addAndGetId(word);
+    }
+
+    @Benchmark
+    public void addAndGetIdEmpty(Blackhole blackhole) {
+        Vocabulary vocabulary = new Vocabulary();
+        for (String word : words)
+            blackhole.consume(vocabulary.addAndGetId(word));
+    }
+
+    @Benchmark
+    public void addAndGetIdFilled(Blackhole blackhole) {
+        for (String word : words)
+            blackhole.consume(filled.addAndGetId(word));
+    }
+}
@@ -10,57 +10,96 @@
 #include	<iostream>
 #include	<string.h>
 
+/*
+ * Class:     cz_muni_fi_kurcik_kgs_util_Majka
+ * Method:    open
+ * Signature: (Ljava/lang/String;)J
+ */
+JNIEXPORT jlong JNICALL Java_cz_muni_fi_kurcik_kgs_util_Majka_open
+	(JNIEnv *env, jobject object, jstring dic) {
+	const char *nativeDic = env->GetStringUTFChars(dic, 0);
+	fsa *majka = new fsa(nativeDic);
+	env->ReleaseStringUTFChars(dic, nativeDic);
+
+	if (majka->state) {
+		delete majka;
+		return 0;
+	}
+	return (jlong) majka;
+}
+
+/*
+ * Class:     cz_muni_fi_kurcik_kgs_util_Majka
+ * Method:    close
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_cz_muni_fi_kurcik_kgs_util_Majka_close
+	(JNIEnv *env, jobject object, jlong handle) {
+	delete (fsa *) handle;
+}
+
 /*
  * Class:     cz_muni_fi_kurcik_kgs_util_Majka
  * Method:    find
- * Signature: (Ljava/lang/String;Ljava/lang/String;I)[Ljava/lang/String;
+ * Signature: (JLjava/lang/String;I)[Ljava/lang/String;
  */
 JNIEXPORT jobjectArray JNICALL Java_cz_muni_fi_kurcik_kgs_util_Majka_find
-	(JNIEnv *env, jobject object, jstring dic, jstring word, jint flags) {
-	const char *nativeDic = env->GetStringUTFChars(dic, 0);
+	(JNIEnv *env, jobject object, jlong handle, jstring word, jint flags) {
+	fsa *majka = (fsa *) handle;
 	const char *nativeWord = env->GetStringUTFChars(word, 0);
 
-	fsa majka(nativeDic);
-
-	char * results = new char[majka.max_results_size];
-	int rc = majka.find(nativeWord, results, (int) flags);
+	char * results = new char[majka->max_results_size];
+	int rc = majka->find(nativeWord, results, (int) flags);
+	env->ReleaseStringUTFChars(word, nativeWord);
+	if (rc < 0)
+		rc = 0;
 
-	jobjectArray ret = (jobjectArray)env->NewObjectArray(rc,env->FindClass("java/lang/String"),env->NewStringUTF(""));
+	jclass stringClass = env->FindClass("java/lang/String");
+	jobjectArray ret = (jobjectArray)env->NewObjectArray(rc, stringClass, NULL);
+	env->DeleteLocalRef(stringClass);
 	const char * result;
 	int i;
-	for (result = results, i = 0; i < rc; i++, result += strlen(result) + 1) {
-		env->SetObjectArrayElement(ret,i,env->NewStringUTF(result));
+	for (result = results, i = 0; ret != NULL && i < rc; i++, result += strlen(result) + 1) {
+		jstring row = env->NewStringUTF(result);
+		env->SetObjectArrayElement(ret, i, row);
+		env->DeleteLocalRef(row);
 	}
+	delete [] results;
 
 	return ret;
 }
 
 /*
  * Class:     cz_muni_fi_kurcik_kgs_util_Majka
- * Method:    findAll
- * Signature: (Ljava/lang/String;[Ljava/lang/String;II)[Ljava/lang/String;
+ * Method:    lemmatize
+ * Signature: (JLjava/nio/ByteBuffer;ILjava/nio/ByteBuffer;I)I
+ *
+ * Words are read from direct buffer as UTF-8 strings terminated by 0.
+ * First lemma:tag of each word, or word itself if it is unknown, is written into results buffer terminated by 0.
+ * Stops when next result doesn't fit into results buffer and returns number of written bytes.
  */
-JNIEXPORT jobjectArray JNICALL Java_cz_muni_fi_kurcik_kgs_util_Majka_findAll
-	(JNIEnv *env, jobject object, jstring dic, jobjectArray words, jint wordCount, jint flags) {
-	const char *nativeDic = env->GetStringUTFChars(dic, 0);
-
-	fsa majka(nativeDic);
+JNIEXPORT jint JNICALL Java_cz_muni_fi_kurcik_kgs_util_Majka_lemmatize
+	(JNIEnv *env, jobject object, jlong handle, jobject words, jint wordCount, jobject results, jint flags) {
+	fsa *majka = (fsa *) handle;
+	const char *input = (const char *) env->GetDirectBufferAddress(words);
+	char *output = (char *) env->GetDirectBufferAddress(results);
+	jlong capacity = env->GetDirectBufferCapacity(results);
+	if (input == NULL || output == NULL || capacity < 0)
+		return -1;
 
-	jobjectArray rows = (jobjectArray)env->NewObjectArray(wordCount,env->FindClass("java/lang/String"),env->NewStringUTF(""));
-	int i, rc;
-	char * results = new char[majka.max_results_size];
-	for (i = 0; i < wordCount; i++) {
-		jobject word = env->GetObjectArrayElement(words, i);
-		const char *nativeWord = env->GetStringUTFChars((jstring) word, 0);
-		rc = majka.find(nativeWord, results, (int) flags);
-
-		if (rc <= 0) {
-			env->SetObjectArrayElement(rows,i,env->NewStringUTF(nativeWord));
-		} else {
-			env->SetObjectArrayElement(rows,i,env->NewStringUTF(results));
-		}
+	char * buffer = new char[majka->max_results_size];
+	jlong used = 0;
+	for (int i = 0; i < wordCount; i++) {
+		int rc = majka->find(input, buffer, (int) flags);
+		const char * result = rc > 0 ? buffer : input;
+		jlong length = strlen(result) + 1;
+		if (used + length > capacity)
+			break;
+		memcpy(output + used, result, length);
+		used += length;
+		input += strlen(input) + 1;
 	}
+	delete [] buffer;
 
-	return rows;
-
+	return (jint) used;
 }
\ No newline at end of file
@@ -13,21 +13,37 @@ extern "C" {
 #define cz_muni_fi_kurcik_kgs_util_Majka_IGNORE_CASE 2L
 #undef cz_muni_fi_kurcik_kgs_util_Majka_DISALLOW_LOWERCASE
 #define cz_muni_fi_kurcik_kgs_util_Majka_DISALLOW_LOWERCASE 4L
+/*
+ * Class:     cz_muni_fi_kurcik_kgs_util_Majka
+ * Method:    open
+ * Signature: (Ljava/lang/String;)J
+ */
+JNIEXPORT jlong JNICALL Java_cz_muni_fi_kurcik_kgs_util_Majka_open
+  (JNIEnv *, jobject, jstring);
+
+/*
+ * Class:     cz_muni_fi_kurcik_kgs_util_Majka
+ * Method:    close
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_cz_muni_fi_kurcik_kgs_util_Majka_close
+  (JNIEnv *, jobject, jlong);
+
 /*
  * Class:     cz_muni_fi_kurcik_kgs_util_Majka
  * Method:    find
- * Signature: (Ljava/lang/String;Ljava/lang/String;I)[Ljava/lang/String;
+ * Signature: (JLjava/lang/String;I)[Ljava/lang/String;
  */
 JNIEXPORT jobjectArray JNICALL Java_cz_muni_fi_kurcik_kgs_util_Majka_find
-  (JNIEnv *, jobject, jstring, jstring, jint);
+  (JNIEnv *, jobject, jlong, jstring, jint);
 
 /*
  * Class:     cz_muni_fi_kurcik_kgs_util_Majka
- * Method:    findAll
- * Signature: (Ljava/lang/String;[Ljava/lang/String;II)[Ljava/lang/String;
+ * Method:    lemmatize
+ * Signature: (JLjava/nio/ByteBuffer;ILjava/nio/ByteBuffer;I)I
  */
-JNIEXPORT jobjectArray JNICALL Java_cz_muni_fi_kurcik_kgs_util_Majka_findAll
-  (JNIEnv *, jobject, jstring, jobjectArray, jint, jint);
+JNIEXPORT jint JNICALL Java_cz_muni_fi_kurcik_kgs_util_Majka_lemmatize
+  (JNIEnv *, jobject, jlong, jobject, jint, jobject, jint);
 
 #ifdef __cplusplus
 }
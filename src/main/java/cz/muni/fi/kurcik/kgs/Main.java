@@ -9,15 +9,18 @@ import cz.muni.fi.kurcik.kgs.clustering.corpus.PruningCorpus;
 import cz.muni.fi.kurcik.kgs.clustering.util.LogTopicNumber;
 import cz.muni.fi.kurcik.kgs.cmd.OptionsBuilder;
 import cz.muni.fi.kurcik.kgs.download.BasicDownloader;
-import cz.muni.fi.kurcik.kgs.download.BasicUrlContainer;
+import cz.muni.fi.kurcik.kgs.download.batch.BatchDownloader;
+import cz.muni.fi.kurcik.kgs.download.distributed.CrawlMerger;
+import cz.muni.fi.kurcik.kgs.download.distributed.DistributedDownloader;
+import cz.muni.fi.kurcik.kgs.download.distributed.LocalWorkerLauncher;
 import cz.muni.fi.kurcik.kgs.download.parser.TikaParserFactory;
+import cz.muni.fi.kurcik.kgs.download.pipeline.StagedDownloader;
 import cz.muni.fi.kurcik.kgs.keywords.TextPageRankKeywordGenerator;
 import cz.muni.fi.kurcik.kgs.linkmining.BasicLinkMiner;
 import cz.muni.fi.kurcik.kgs.linkmining.LinkMiner;
 import cz.muni.fi.kurcik.kgs.linkmining.LinkMiningStrategy;
 import cz.muni.fi.kurcik.kgs.linkmining.ranking.SimplifiedPageRank;
 import cz.muni.fi.kurcik.kgs.preprocessing.MajkaPreprocessor;
-import cz.muni.fi.kurcik.kgs.preprocessing.Preprocessor;
 import org.apache.commons.cli.*;
 import org.apache.tika.langdetect.OptimaizeLangDetector;
 
@@ -27,6 +30,9 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -167,11 +173,28 @@ public class Main {
      */
     public static void download(CommandLine cmd, Path dir, Logger logger) throws IOException {
         if (cmd.hasOption("downloader")) {
-            TikaParserFactory factory = new TikaParserFactory();
-            factory.setContentDetection(true);
-            BasicDownloader downloader = new BasicDownloader("cs", factory, new OptimaizeLangDetector());
+            if (cmd.hasOption("workers") && !cmd.hasOption("worker")) {
+                distributedDownload(cmd, dir, logger);
+                return;
+            }
+            if (cmd.hasOption("seeds")) {
+                batchDownload(cmd, dir, logger);
+                return;
+            }
+
+            BasicDownloader downloader;
+            if (cmd.hasOption("worker")) {
+                TikaParserFactory factory = new TikaParserFactory();
+                factory.setContentDetection(true);
+                downloader = new DistributedDownloader("cs", factory, new OptimaizeLangDetector(),
+                        Integer.valueOf(cmd.getOptionValue("worker")),
+                        Integer.valueOf(cmd.getOptionValue("workers", "1")));
+            } else {
+                downloader = localDownloader(cmd);
+            }
             downloader.setDownloadDirectory(dir);
             downloader.setLogger(logger);
+            downloader.setMetricsInterval(Integer.valueOf(cmd.getOptionValue("metrics", "0")));
             downloader.downloadPage(
                     URI.create(cmd.getOptionValue("url")),
                     Integer.valueOf(cmd.getOptionValue("hops", "0")),
@@ -179,6 +202,91 @@ public class Main {
         }
     }
 
+    /**
+     * Creates downloader crawling in this process, staged downloader if -pipeline is set.
+     * Used also by crawler benchmark, so it crawls the same way as command line.
+     *
+     * @param cmd Command line
+     * @return downloader
+     * @throws IOException when language models can't be loaded
+     */
+    public static BasicDownloader localDownloader(CommandLine cmd) throws IOException {
+        TikaParserFactory factory = new TikaParserFactory();
+        factory.setContentDetection(true);
+        if (cmd.hasOption("pipeline"))
+            return stagedDownloader(factory, cmd.getOptionValue("pipeline"));
+        return new BasicDownloader("cs", factory, new OptimaizeLangDetector());
+    }
+
+    /**
+     * Creates staged downloader
+     *
+     * @param factory Parser factory
+     * @param threads Numbers of fetch, parse and detect threads separated by comma
+     * @return downloader
+     * @throws IOException
+     */
+    protected static StagedDownloader stagedDownloader(TikaParserFactory factory, String threads) throws IOException {
+        StagedDownloader downloader = new StagedDownloader("cs", factory, OptimaizeLangDetector::new);
+        String[] counts = threads.split(",");
+        if (counts.length > 0 && !counts[0].isEmpty())
+            downloader.setFetchThreads(Integer.valueOf(counts[0].trim()));
+        if (counts.length > 1)
+            downloader.setParseThreads(Integer.valueOf(counts[1].trim()));
+        if (counts.length > 2)
+            downloader.setDetectThreads(Integer.valueOf(counts[2].trim()));
+        return downloader;
+    }
+
+    /**
+     * Downloads all domains from seeds file in one process
+     *
+     * @param cmd
+     * @param dir
+     * @param logger
+     * @throws IOException
+     */
+    public static void batchDownload(CommandLine cmd, Path dir, Logger logger) throws IOException {
+        TikaParserFactory factory = new TikaParserFactory();
+        factory.setContentDetection(true);
+        BatchDownloader downloader = new BatchDownloader("cs", factory, OptimaizeLangDetector::new,
+                Integer.valueOf(cmd.getOptionValue("concurrency", String.valueOf(Runtime.getRuntime().availableProcessors()))));
+        downloader.setDownloadDirectory(dir);
+        downloader.setLogger(logger);
+        downloader.setMetricsInterval(Integer.valueOf(cmd.getOptionValue("metrics", "0")));
+        downloader.download(
+                BatchDownloader.loadSeeds(Paths.get(cmd.getOptionValue("seeds"))),
+                Integer.valueOf(cmd.getOptionValue("hops", "0")),
+                Integer.valueOf(cmd.getOptionValue("depth", "1")));
+    }
+
+    /**
+     * Runs distributed download in local worker processes and merges their data.
+     * With merge option only merges data of already finished workers.
+     *
+     * @param cmd
+     * @param dir
+     * @param logger
+     * @throws IOException
+     */
+    public static void distributedDownload(CommandLine cmd, Path dir, Logger logger) throws IOException {
+        int workers = Integer.valueOf(cmd.getOptionValue("workers"));
+        if (!cmd.hasOption("merge")) {
+            List<String> arguments = new ArrayList<>(Arrays.asList(
+                    "-downloader",
+                    "-dir", dir.toAbsolutePath().toString(),
+                    "-url", cmd.getOptionValue("url"),
+                    "-hops", cmd.getOptionValue("hops", "0"),
+                    "-depth", cmd.getOptionValue("depth", "1"),
+                    "-metrics", cmd.getOptionValue("metrics", "0"),
+                    "-workers", String.valueOf(workers)));
+            if (cmd.hasOption("L"))
+                arguments.add("-L");
+            new LocalWorkerLauncher(dir, workers, logger).run(arguments);
+        }
+        new CrawlMerger(dir, workers, logger).merge();
+    }
+
     /**
      * Check preprocessing options
      *
@@ -189,14 +297,30 @@ public class Main {
      */
     public static void preprocessing(CommandLine cmd, Path dir, Logger logger) throws IOException {
         if (cmd.hasOption("preprocessing")) {
-            Preprocessor preprocessor = new MajkaPreprocessor();
+            MajkaPreprocessor preprocessor = new MajkaPreprocessor();
             preprocessor.setDownloadDirectory(dir);
-            preprocessor.normalizeParsedFiles();
-            preprocessor.prepareClusteringFiles(new PruningCorpus(
+            preprocessor.setThreads(Integer.valueOf(cmd.getOptionValue("threads", "1")));
+            preprocessor.setNativeMajka(cmd.hasOption("nativemajka"));
+            preprocessor.setGlobalLemmatization(cmd.hasOption("global"));
+            preprocessor.setBinaryNormalized(cmd.hasOption("binary"));
+            preprocessor.setAnnotate(cmd.hasOption("annotate"));
+            if (cmd.hasOption("lemmacache"))
+                preprocessor.setLemmaCacheFile(Paths.get(cmd.getOptionValue("lemmacache")));
+            PruningCorpus corpus = new PruningCorpus(
                     Double.valueOf(cmd.getOptionValue("pruning", "0")),
                     Double.valueOf(cmd.getOptionValue("redundant", "0.3")),
                     Integer.valueOf(cmd.getOptionValue("vocabulary", "2000")),
-                    logger));
+                    logger);
+            corpus.setSketchCapacity(Integer.valueOf(cmd.getOptionValue("sketch", "0")));
+            if (cmd.hasOption("incremental")) {
+                preprocessor.preprocessIncrementally(corpus);
+            } else if (cmd.hasOption("fused")) {
+                preprocessor.setWriteNormalizedFiles(cmd.hasOption("writenormalized"));
+                preprocessor.normalizeIntoCorpus(corpus);
+            } else {
+                preprocessor.normalizeParsedFiles();
+                preprocessor.prepareClusteringFiles(corpus);
+            }
         }
     }
 
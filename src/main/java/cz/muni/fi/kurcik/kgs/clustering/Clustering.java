@@ -12,7 +12,9 @@ import java.nio.file.Path;
 public interface Clustering extends Module {
     String CLUSTERING_FILES_DIR = "clustering";
     String VOCAB_FILE = "vocab.txt";
+    String FROZEN_VOCAB_FILE = "vocab.bin";
     String CORPUS_FILE = "corpus.dat";
+    String BINARY_CORPUS_FILE = "corpus.bin";
     String CLUSTERING_FILE = "clusters.txt";
     String URL_CLUSTER_FILE = "url-cluster.txt";
 
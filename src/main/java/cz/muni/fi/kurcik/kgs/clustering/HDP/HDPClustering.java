@@ -1,16 +1,16 @@
 package cz.muni.fi.kurcik.kgs.clustering.HDP;
 
 import cz.muni.fi.kurcik.kgs.clustering.Clustering;
+import cz.muni.fi.kurcik.kgs.clustering.corpus.BinaryCorpus;
 import cz.muni.fi.kurcik.kgs.clustering.index.GradedDistanceIndex;
 import cz.muni.fi.kurcik.kgs.clustering.util.ClusterSaver;
 import cz.muni.fi.kurcik.kgs.util.AModule;
 import cz.muni.fi.kurcik.kgs.util.LogOutputStream;
 import cz.muni.fi.kurcik.kgs.util.UrlIndex;
-import de.uni_leipzig.informatik.asv.utils.CLDACorpus;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Path;
 import java.util.logging.Level;
 
 /**
@@ -50,32 +50,32 @@ public class HDPClustering extends AModule implements Clustering {
     @Override
     public void cluster() throws IOException {
         getLogger().info("Starting clustering");
-        try (FileInputStream fileInputStream = new FileInputStream(downloadDir.resolve(CLUSTERING_FILES_DIR).resolve(CORPUS_FILE).toFile())) {
-            HDPGibbsSampler2 hdp = new HDPGibbsSampler2();
-            hdp.alpha = alpha;
-            hdp.beta = beta;
-            hdp.gamma = gamma;
+        HDPGibbsSampler2 hdp = new HDPGibbsSampler2();
+        hdp.alpha = alpha;
+        hdp.beta = beta;
+        hdp.gamma = gamma;
 
-            getLogger().info("Preparing corpus");
-            CLDACorpus corpus = new CLDACorpus(fileInputStream);
+        getLogger().info("Preparing corpus");
+        Path dir = downloadDir.resolve(CLUSTERING_FILES_DIR);
+        BinaryCorpus corpus = BinaryCorpus.load(dir.resolve(BINARY_CORPUS_FILE), dir.resolve(CORPUS_FILE));
+        int[][] documents = corpus.getTokenDocuments();
 
-            getLogger().info("Preparing HDP");
-            hdp.addInstances(corpus.getDocuments(), corpus.getVocabularySize());
+        getLogger().info("Preparing HDP");
+        hdp.addInstances(documents, corpus.getVocabularySize());
 
-            getLogger().info("Computing HDP");
-            hdp.run(0, 2000, new PrintStream(new LogOutputStream(getLogger(), Level.INFO)));
+        getLogger().info("Computing HDP");
+        hdp.run(0, 2000, new PrintStream(new LogOutputStream(getLogger(), Level.INFO)));
 
-            getLogger().info("Saving model");
-            saveModel(hdp);
+        getLogger().info("Saving model");
+        saveModel(hdp);
 
-            getLogger().info("Saving clusters");
-            saveClusters(hdp, corpus);
+        getLogger().info("Saving clusters");
+        saveClusters(hdp, documents);
 
-            getLogger().info("Computing index of clustering");
-            computeClusteringIndex();
+        getLogger().info("Computing index of clustering");
+        computeClusteringIndex();
 
-            getLogger().info("Clustering finished");
-        }
+        getLogger().info("Clustering finished");
     }
 
     /**
@@ -97,14 +97,13 @@ public class HDPClustering extends AModule implements Clustering {
     /**
      * Saves clusters into CLUSTERING_FILE and each cluster into separate file
      *
-     * @param hdp    Finished HDP sampler
-     * @param corpus Corpus with documents form HDP sampler
+     * @param hdp       Finished HDP sampler
+     * @param documents Documents from HDP sampler
      * @throws IOException when there is problem with file IO
      */
-    protected void saveClusters(HDPGibbsSampler2 hdp, CLDACorpus corpus) throws IOException {
+    protected void saveClusters(HDPGibbsSampler2 hdp, int[][] documents) throws IOException {
         try {
             HDPModel model = hdp.getModel();
-            int[][] documents = corpus.getDocuments();
 
             getLogger().info("Saving clustering probabilities");
             ClusterSaver.saveClustering(model, documents, downloadDir.resolve(CLUSTERING_FILES_DIR).resolve(CLUSTERING_FILE));
@@ -1,15 +1,13 @@
 package cz.muni.fi.kurcik.kgs.clustering.LDA;
 
-import com.hankcs.lda.Corpus;
 import com.hankcs.lda.LdaGibbsSampler;
 import cz.muni.fi.kurcik.kgs.clustering.Clustering;
+import cz.muni.fi.kurcik.kgs.clustering.corpus.BinaryCorpus;
 import cz.muni.fi.kurcik.kgs.clustering.util.ClusterNumber;
 import cz.muni.fi.kurcik.kgs.clustering.util.ClusterSaver;
 import cz.muni.fi.kurcik.kgs.util.AModule;
 import cz.muni.fi.kurcik.kgs.util.UrlIndex;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -61,12 +59,13 @@ public class LDAClustering extends AModule implements Clustering {
         createFolders();
 
         getLogger().info("Loading corpus");
-        Corpus corpus = loadCorpus();
+        BinaryCorpus corpus = loadCorpus();
+        int[][] documents = corpus.getTokenDocuments();
 
         TreeMap<Double, Integer> mll = new TreeMap<>();
         HashMap<Integer, LdaModel> models = new HashMap<>();
 
-        int max = clusterNumber.compute(corpus.getDocument().length);
+        int max = clusterNumber.compute(documents.length);
 
         int increment = 10;
         int forMax = ((max + 5) / 10) * 10 + 1;
@@ -76,10 +75,10 @@ public class LDAClustering extends AModule implements Clustering {
         for (int k = 1; k <= forMax; k += increment) {
             if (mll.containsValue(k))
                 continue;
-            LdaModel model = computeModel(corpus, k);
+            LdaModel model = computeModel(documents, corpus.getVocabularySize(), k);
             models.put(k, model);
 
-            Path clusteringFile = saveModel(k, corpus, model);
+            Path clusteringFile = saveModel(k, documents, model);
 
             double res = model.marginalLogLikelihood();
             mll.put(res, k);
@@ -107,20 +106,21 @@ public class LDAClustering extends AModule implements Clustering {
         int bestK = mll.lastEntry().getValue();
         getLogger().info("Best clustering is K=" + bestK + " with marginal likelihood=" + mll.lastKey());
 
-        saveFinalClustering(corpus, models.get(bestK));
+        saveFinalClustering(documents, models.get(bestK));
     }
 
     /**
      * Computes LDA model from corpus with k clusters
      *
-     * @param corpus Corpius
-     * @param k      Number of clusters
+     * @param documents      Word IDs of all tokens for all documents
+     * @param vocabularySize Number of word IDs
+     * @param k              Number of clusters
      * @return LDA module
      */
-    protected LdaModel computeModel(Corpus corpus, int k) {
+    protected LdaModel computeModel(int[][] documents, int vocabularySize, int k) {
         getLogger().info("LDA with K = " + k);
         getLogger().info("Creating LDA Gibbs Sampler K = " + k);
-        LdaGibbsSampler ldaGibbsSampler = new LdaGibbsSampler(corpus.getDocument(), corpus.getVocabularySize());
+        LdaGibbsSampler ldaGibbsSampler = new LdaGibbsSampler(documents, vocabularySize);
 
         getLogger().info("Training model K = " + k);
         ldaGibbsSampler.gibbs(k, alpha, beta);
@@ -134,7 +134,7 @@ public class LDAClustering extends AModule implements Clustering {
 
             HashMap<String, Double> help = new HashMap<>();
             for (int i = 0; i < phi[q].length; i++) {
-                help.put(corpus.getVocabulary().getWord(i), phi[q][i]);
+                help.put(String.valueOf(i), phi[q][i]);
             }
 
             final int x = q;
@@ -149,19 +149,19 @@ public class LDAClustering extends AModule implements Clustering {
     /**
      * Saves clustering model
      *
-     * @param k      Number of clusters
-     * @param corpus Corpus
-     * @param model  Model
+     * @param k         Number of clusters
+     * @param documents Word IDs of all tokens for all documents
+     * @param model     Model
      * @return Path to clustering file
      * @throws IOException when there is problem with file IO
      */
-    protected Path saveModel(int k, Corpus corpus, LdaModel model) throws IOException {
+    protected Path saveModel(int k, int[][] documents, LdaModel model) throws IOException {
         getLogger().info("Saving model K = " + k);
         model.saveModel(downloadDir.resolve(CLUSTERING_FILES_DIR).resolve(LDA_CLUSTERS_DIR).resolve(k + MODEL_EXT));
 
         getLogger().info("Saving clustering for K = " + k);
         Path clusteringFile = downloadDir.resolve(CLUSTERING_FILES_DIR).resolve(LDA_CLUSTERS_DIR).resolve(k + ".txt");
-        saveClustering(corpus, model, clusteringFile);
+        saveClustering(documents, model, clusteringFile);
 
         return clusteringFile;
     }
@@ -169,19 +169,16 @@ public class LDAClustering extends AModule implements Clustering {
     /**
      * Saves clustering for all documents based on model
      *
-     * @param corpus Document corpus
-     * @param model  LDA model
-     * @param path   Path to file
+     * @param documents Word IDs of all tokens for all documents
+     * @param model     LDA model
+     * @param path      Path to file
      * @throws IOException when there is problem with file IO
      */
-    protected void saveClustering(Corpus corpus, LdaModel model, Path path) throws IOException {
-        int[][] documents = corpus.getDocument();
+    protected void saveClustering(int[][] documents, LdaModel model, Path path) throws IOException {
         ClusterSaver.saveClustering(model, documents, path);
     }
 
-    protected void saveFinalClustering(Corpus corpus, LdaModel model) throws IOException {
-        int[][] documents = corpus.getDocument();
-
+    protected void saveFinalClustering(int[][] documents, LdaModel model) throws IOException {
         getLogger().info("Saving clustering probabilities");
         ClusterSaver.saveClustering(model, documents, downloadDir.resolve(CLUSTERING_FILES_DIR).resolve(CLUSTERING_FILE));
 
@@ -195,29 +192,19 @@ public class LDAClustering extends AModule implements Clustering {
     }
 
     /**
-     * Loads corpus for LdaGibbsSampler
+     * Loads corpus for LdaGibbsSampler from binary corpus file, word IDs are the same as in vocabulary
      *
      * @return Corpus
      * @throws IOException when there is problem with file IO
      */
-    protected Corpus loadCorpus() throws IOException {
-        Corpus corpus = new Corpus();
-        try (FileReader file = new FileReader(downloadDir.resolve(CLUSTERING_FILES_DIR).resolve(CORPUS_FILE).toFile()); BufferedReader br = new BufferedReader(file)) {
-            for (String line; (line = br.readLine()) != null; ) {
-                ArrayList<String> words = new ArrayList<>();
-                String[] counts = line.split("[ :]");
-                for (int i = 1; i < counts.length; i += 2) {
-                    String word = counts[i];
-                    int count = Integer.parseInt(counts[i + 1]);
-                    words.addAll(Collections.nCopies(count, word));
-                }
-                corpus.addDocument(words);
-            }
+    protected BinaryCorpus loadCorpus() throws IOException {
+        Path dir = downloadDir.resolve(CLUSTERING_FILES_DIR);
+        try {
+            return BinaryCorpus.load(dir.resolve(BINARY_CORPUS_FILE), dir.resolve(CORPUS_FILE));
         } catch (IOException e) {
             getLogger().log(Level.SEVERE, "Error while loading corpus", e);
             throw e;
         }
-        return corpus;
     }
 
     /**
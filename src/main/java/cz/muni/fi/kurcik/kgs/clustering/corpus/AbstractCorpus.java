@@ -1,13 +1,11 @@
 package cz.muni.fi.kurcik.kgs.clustering.corpus;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.stream.Stream;
 
 /**
@@ -19,9 +17,19 @@ abstract class AbstractCorpus implements Corpus {
     protected Vocabulary vocabulary;
 
     /**
-     * Each document is represented as word ids and count for each word. nth number in array is word id, n+1th is ist count.
+     * Each document is represented as word ids and count for each word. nth number of document is word id, n+1th is its count.
      */
-    protected List<List<Integer>> documents;
+    protected PackedDocuments documents = new PackedDocuments();
+
+    /**
+     * Count of each word ID in document, that is being added. Reused by all documents, zeroed after each document.
+     */
+    protected int[] wordCounts = new int[1024];
+
+    /**
+     * Word IDs and counts of document, that is being added
+     */
+    protected int[] pairs = new int[256];
 
     /**
      * Loads corpus from file
@@ -32,16 +40,14 @@ abstract class AbstractCorpus implements Corpus {
     protected void loadCorpus(Path corpus) throws IOException {
         try (Stream<String> stream = Files.lines(corpus)) {
             stream.forEach(line -> {
-                int length, word, counts;
-                List<Integer> doc;
-                String[] fields;
-                fields = line.split("[ :]+");
-                length = Integer.parseInt(fields[0]);
-                doc = new ArrayList<>(length * 2);
-                for (int n = 1; n < fields.length; n++) {
-                    doc.add(Integer.parseInt(fields[n]));
+                String[] fields = line.split("[ :]+");
+                int length = fields.length - 1;
+                if (pairs.length < length)
+                    pairs = new int[length];
+                for (int n = 0; n < length; n++) {
+                    pairs[n] = Integer.parseInt(fields[n + 1]);
                 }
-                documents.add(doc);
+                documents.add(pairs, length);
             });
         }
     }
@@ -53,42 +59,74 @@ abstract class AbstractCorpus implements Corpus {
      * @throws IOException When there is problem with saving
      */
     public void save(Path file) throws IOException {
-        StringBuilder line;
-        try (FileWriter fw = new FileWriter(file.toFile())) {
-            for (List<Integer> doc : documents) {
-                line = new StringBuilder();
-                line.append(doc.size() / 2).append(" ");
-                for (int i = 0; i < doc.size(); i += 2) {
-                    if (i != 0)
+        int[] data = documents.getData();
+        StringBuilder line = new StringBuilder();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int d = 0; d < documents.size(); d++) {
+                line.setLength(0);
+                line.append(documents.getLength(d)).append(" ");
+                int start = documents.offset(d);
+                int end = documents.end(d);
+                for (int i = start; i < end; i += 2) {
+                    if (i != start)
                         line.append(" ");
-                    line.append(doc.get(i)).append(":").append(doc.get(i + 1));
+                    line.append(data[i]).append(":").append(data[i + 1]);
                 }
                 line.append('\n');
-                fw.append(line.toString());
+                writer.append(line);
             }
         }
     }
 
     /**
-     * Adds array of words as new document
+     * Saves corpus into binary file with token-expanded view
+     *
+     * @param file Path to file
+     * @throws IOException When there is problem with saving
+     */
+    public void saveBinary(Path file) throws IOException {
+        int[] data = documents.getData();
+        int vocabularySize = 0;
+        for (int i = 0; i < documents.getOffsets()[documents.size()]; i += 2)
+            vocabularySize = Math.max(vocabularySize, data[i] + 1);
+        BinaryCorpus.write(file, documents, vocabularySize, true);
+    }
+
+    /**
+     * Adds array of words as new document. Words are in order of their first occurrence in document.
      *
      * @param words All words in document
      */
     public void addDocument(String[] words) {
-        Map<Integer, Integer> counter = new HashMap<>();
+        int length = 0;
         for (String w : words) {
             if (w.isEmpty())
                 continue;
-            Integer id = vocabulary.addAndGetId(w);
-            counter.put(id, counter.get(id) != null ? counter.get(id) + 1 : 1);
+            int id = vocabulary.addAndGetId(w);
+            if (id >= wordCounts.length)
+                wordCounts = Arrays.copyOf(wordCounts, Math.max(id + 1, wordCounts.length * 2));
+            if (wordCounts[id]++ == 0) {
+                if (length + 2 > pairs.length)
+                    pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                pairs[length] = id;
+                length += 2;
+            }
         }
 
-        List<Integer> doc = new ArrayList<>(counter.size() * 2);
-        for (Map.Entry<Integer, Integer> entry : counter.entrySet()) {
-            doc.add(entry.getKey());
-            doc.add(entry.getValue());
+        for (int i = 0; i < length; i += 2) {
+            pairs[i + 1] = wordCounts[pairs[i]];
+            wordCounts[pairs[i]] = 0;
         }
-        documents.add(doc);
+        documents.add(pairs, length);
+    }
+
+    /**
+     * Return documents of corpus
+     *
+     * @return documents
+     */
+    public PackedDocuments getDocuments() {
+        return documents;
     }
 
     /**
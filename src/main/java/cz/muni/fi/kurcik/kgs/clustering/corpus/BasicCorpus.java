@@ -1,11 +1,7 @@
 package cz.muni.fi.kurcik.kgs.clustering.corpus;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.*;
-import java.util.stream.Stream;
 
 /**
  * Class used for working with document corpus.
@@ -24,7 +20,6 @@ public class BasicCorpus extends AbstractCorpus {
      */
     public BasicCorpus() {
         vocabulary = new Vocabulary();
-        documents = new LinkedList<>();
     }
 
     /**
@@ -35,7 +30,6 @@ public class BasicCorpus extends AbstractCorpus {
      * @throws IOException On error while loading files
      */
     public BasicCorpus(Path corpus, Path vocabulary) throws IOException {
-        documents = new LinkedList<>();
         loadCorpus(corpus);
         this.vocabulary = new Vocabulary(vocabulary);
     }
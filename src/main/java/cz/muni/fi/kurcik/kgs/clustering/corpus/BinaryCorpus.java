@@ -0,0 +1,304 @@
+package cz.muni.fi.kurcik.kgs.clustering.corpus;
+
+import cz.muni.fi.kurcik.kgs.util.AtomicFiles;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Corpus in binary file, that is memory-mapped, so opening it doesn't depend on its size.
+ * It is written alongside text corpus file and used by clustering instead of parsing text file.
+ * <p>
+ * File format, all numbers are big-endian:
+ * Header with [magic] [version] [flags] [documents] [vocabulary size] as 4 byte integers
+ * and [pairs] [tokens] as 8 byte integers.
+ * Then [documents + 1] offsets of documents in pairs as 4 byte integers and pairs of word ID and count
+ * as 4 byte integers, i.e. CSR layout of PackedDocuments.
+ * If flag TOKENS is set, there is also token-expanded view, where each word ID is repeated count times:
+ * [documents + 1] offsets of documents in tokens as 8 byte integers and [tokens] word IDs as 4 byte integers.
+ *
+ * @author Lukáš Kurčík
+ */
+public class BinaryCorpus {
+
+    public static final int TOKENS = 1;
+
+    protected static final int MAGIC = 0x4b475343; // KGSC
+    protected static final int VERSION = 1;
+    protected static final int HEADER_SIZE = 5 * 4 + 2 * 8;
+
+    protected final int flags;
+    protected final int documents;
+    protected final int vocabularySize;
+    protected final IntBuffer offsets;
+    protected final IntBuffer pairs;
+    protected final LongBuffer tokenOffsets;
+    protected final IntBuffer tokens;
+
+    protected BinaryCorpus(int flags, int documents, int vocabularySize, IntBuffer offsets, IntBuffer pairs,
+                           LongBuffer tokenOffsets, IntBuffer tokens) {
+        this.flags = flags;
+        this.documents = documents;
+        this.vocabularySize = vocabularySize;
+        this.offsets = offsets;
+        this.pairs = pairs;
+        this.tokenOffsets = tokenOffsets;
+        this.tokens = tokens;
+    }
+
+    /**
+     * Opens binary corpus file by memory mapping
+     *
+     * @param file Binary corpus file
+     * @return corpus
+     * @throws IOException when file can't be read or it has wrong format
+     */
+    public static BinaryCorpus open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("File " + file + " is not binary corpus");
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException("File " + file + " is not binary corpus");
+            int flags = header.getInt();
+            int documents = header.getInt();
+            int vocabularySize = header.getInt();
+            long pairCount = header.getLong();
+            long tokenCount = header.getLong();
+
+            long position = HEADER_SIZE;
+            long expected = position + 4L * (documents + 1) + 4L * pairCount;
+            if ((flags & TOKENS) != 0)
+                expected += 8L * (documents + 1) + 4L * tokenCount;
+            if (documents < 0 || pairCount < 0 || tokenCount < 0 || channel.size() != expected)
+                throw new IOException("File " + file + " is corrupted");
+
+            IntBuffer offsets = map(channel, position, 4L * (documents + 1)).asIntBuffer();
+            position += 4L * (documents + 1);
+            IntBuffer pairs = map(channel, position, 4L * pairCount).asIntBuffer();
+            position += 4L * pairCount;
+            LongBuffer tokenOffsets = null;
+            IntBuffer tokens = null;
+            if ((flags & TOKENS) != 0) {
+                tokenOffsets = map(channel, position, 8L * (documents + 1)).asLongBuffer();
+                position += 8L * (documents + 1);
+                tokens = map(channel, position, 4L * tokenCount).asIntBuffer();
+            }
+            return new BinaryCorpus(flags, documents, vocabularySize, offsets, pairs, tokenOffsets, tokens);
+        }
+    }
+
+    /**
+     * Opens binary corpus, binary file is created from text corpus file first if it doesn't exist or is older
+     *
+     * @param binary Binary corpus file
+     * @param text   Text corpus file
+     * @return corpus
+     * @throws IOException when files can't be read or written
+     */
+    public static BinaryCorpus load(Path binary, Path text) throws IOException {
+        if (!Files.exists(binary) || Files.getLastModifiedTime(binary).compareTo(Files.getLastModifiedTime(text)) < 0)
+            convert(text, binary);
+        return open(binary);
+    }
+
+    /**
+     * Creates binary corpus file with token-expanded view from text corpus file
+     *
+     * @param text   Text corpus file
+     * @param binary Binary corpus file
+     * @throws IOException when files can't be read or written
+     */
+    public static void convert(Path text, Path binary) throws IOException {
+        BasicCorpus corpus = new BasicCorpus();
+        corpus.loadCorpus(text);
+        corpus.saveBinary(binary);
+    }
+
+    /**
+     * Writes binary corpus file
+     *
+     * @param file           Binary corpus file
+     * @param documents      Documents of corpus
+     * @param vocabularySize Number of word IDs, all IDs in documents must be lower
+     * @param tokens         Specify if token-expanded view should be written
+     * @throws IOException when file can't be written
+     */
+    public static void write(Path file, PackedDocuments documents, int vocabularySize, boolean tokens) throws IOException {
+        int[] data = documents.getData();
+        int[] offsets = documents.getOffsets();
+        int size = documents.size();
+        long tokenCount = 0;
+        if (tokens) {
+            for (int i = 1; i < offsets[size]; i += 2)
+                tokenCount += data[i];
+        }
+
+        long tokenTotal = tokenCount;
+        AtomicFiles.writeAtomically(file, stream -> {
+            DataOutputStream output = new DataOutputStream(stream);
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(tokens ? TOKENS : 0);
+            output.writeInt(size);
+            output.writeInt(vocabularySize);
+            output.writeLong(offsets[size]);
+            output.writeLong(tokenTotal);
+            for (int d = 0; d <= size; d++)
+                output.writeInt(offsets[d]);
+            for (int i = 0; i < offsets[size]; i++)
+                output.writeInt(data[i]);
+            if (tokens) {
+                long position = 0;
+                output.writeLong(position);
+                for (int d = 0; d < size; d++) {
+                    for (int i = offsets[d] + 1; i < offsets[d + 1]; i += 2)
+                        position += data[i];
+                    output.writeLong(position);
+                }
+                for (int i = 0; i < offsets[size]; i += 2) {
+                    for (int c = 0; c < data[i + 1]; c++)
+                        output.writeInt(data[i]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Return number of documents
+     *
+     * @return number of documents
+     */
+    public int size() {
+        return documents;
+    }
+
+    /**
+     * Return number of word IDs, all IDs in corpus are lower
+     *
+     * @return vocabulary size
+     */
+    public int getVocabularySize() {
+        return vocabularySize;
+    }
+
+    /**
+     * Check if file has token-expanded view
+     *
+     * @return true if tokens are saved
+     */
+    public boolean hasTokens() {
+        return (flags & TOKENS) != 0;
+    }
+
+    /**
+     * Return number of unique words in document
+     *
+     * @param document Index of document
+     * @return number of words
+     */
+    public int getLength(int document) {
+        checkIndex(document);
+        return (offsets.get(document + 1) - offsets.get(document)) / 2;
+    }
+
+    /**
+     * Return ID of nth unique word of document
+     *
+     * @param document Index of document
+     * @param n        Index of word in document
+     * @return word ID
+     */
+    public int getWordId(int document, int n) {
+        checkIndex(document);
+        return pairs.get(offsets.get(document) + 2 * n);
+    }
+
+    /**
+     * Return count of nth unique word of document
+     *
+     * @param document Index of document
+     * @param n        Index of word in document
+     * @return count
+     */
+    public int getCount(int document, int n) {
+        checkIndex(document);
+        return pairs.get(offsets.get(document) + 2 * n + 1);
+    }
+
+    /**
+     * Return word IDs of all tokens in document, each word is repeated count times
+     *
+     * @param document Index of document
+     * @return word IDs
+     */
+    public int[] getTokens(int document) {
+        checkIndex(document);
+        if (hasTokens()) {
+            long start = tokenOffsets.get(document);
+            int[] result = new int[(int) (tokenOffsets.get(document + 1) - start)];
+            IntBuffer view = tokens.duplicate();
+            view.position((int) start);
+            view.get(result);
+            return result;
+        }
+
+        int start = offsets.get(document);
+        int end = offsets.get(document + 1);
+        int length = 0;
+        for (int i = start + 1; i < end; i += 2)
+            length += pairs.get(i);
+        int[] result = new int[length];
+        int n = 0;
+        for (int i = start; i < end; i += 2) {
+            int word = pairs.get(i);
+            for (int c = pairs.get(i + 1); c > 0; c--)
+                result[n++] = word;
+        }
+        return result;
+    }
+
+    /**
+     * Return word IDs of all tokens for all documents, as used by clustering samplers
+     *
+     * @return matrix with word ids for all documents
+     */
+    public int[][] getTokenDocuments() {
+        int[][] result = new int[documents][];
+        for (int d = 0; d < documents; d++)
+            result[d] = getTokens(d);
+        return result;
+    }
+
+    /**
+     * Maps part of file
+     *
+     * @param channel  File channel
+     * @param position Start of part
+     * @param size     Size of part in bytes
+     * @return buffer
+     * @throws IOException when part can't be mapped
+     */
+    protected static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("Part of corpus file is too big to be mapped: " + size + " bytes");
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    /**
+     * Checks index of document
+     *
+     * @param document Index of document
+     */
+    protected void checkIndex(int document) {
+        if (document < 0 || document >= documents)
+            throw new IndexOutOfBoundsException("Document " + document + ", size " + documents);
+    }
+}
@@ -29,6 +29,15 @@ public interface Corpus {
      */
     public void save(Path file) throws IOException;
 
+    /**
+     * Saves corpus into binary file with format described in BinaryCorpus.
+     * Documents are saved as they are, so corpus that changes documents while saving should be saved by save first.
+     *
+     * @param file Path to file
+     * @throws IOException When there is problem with saving
+     */
+    public void saveBinary(Path file) throws IOException;
+
     /**
      * Get vocabulary
      *
@@ -0,0 +1,56 @@
+package cz.muni.fi.kurcik.kgs.clustering.corpus;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Part of corpus built independently of other parts, so more shards can be built by more threads at the same time.
+ * Documents are encoded with vocabulary of the shard, where word IDs are in order of first occurrence in the shard,
+ * and words are counted the same way as by PruningCorpus. Shards are merged into PruningCorpus by addShard.
+ *
+ * @author Lukáš Kurčík
+ */
+public class CorpusShard extends AbstractCorpus {
+
+    protected final HashMap<String, Long> wordCounter = new HashMap<>();
+
+    /**
+     * Creates empty shard
+     */
+    public CorpusShard() {
+        vocabulary = new Vocabulary();
+    }
+
+    /**
+     * Adds array of words as new document
+     *
+     * @param words All words in document
+     */
+    @Override
+    public void addDocument(String[] words) {
+        super.addDocument(words);
+        for (String word : words) {
+            if (!word.isEmpty())
+                wordCounter.merge(word, 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Return number of documents in shard
+     *
+     * @return number of documents
+     */
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Return occurrence counts of words in shard, words are not lower-cased
+     *
+     * @return word counts
+     */
+    public Map<String, Long> getWordCounts() {
+        return Collections.unmodifiableMap(wordCounter);
+    }
+}
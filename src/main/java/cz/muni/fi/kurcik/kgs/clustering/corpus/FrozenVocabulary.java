@@ -0,0 +1,356 @@
+package cz.muni.fi.kurcik.kgs.clustering.corpus;
+
+import cz.muni.fi.kurcik.kgs.util.AtomicFiles;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Immutable vocabulary in one buffer, which is the same in memory and in file, so it can be memory-mapped.
+ * Words are UTF-8 bytes in one array, word for ID is found by table of offsets and ID for word by open addressing
+ * hash table with linear probing. Lookup of word doesn't allocate anything, word is lower-cased and encoded
+ * while it is hashed and compared. Only words with characters, that are lower-cased depending on context
+ * (capital sigma and dotted capital I), are lower-cased by Vocabulary.normalize first. Buffer is only read by absolute methods, so vocabulary can be shared by threads.
+ * <p>
+ * File format, all numbers are 4 byte big-endian integers:
+ * [magic] [version] [ID count] [word count] [table size] [bytes length],
+ * [ID count + 1] offsets of words in bytes (ID without word has empty word), [table size] slots with ID + 1 or 0
+ * for empty slot, then UTF-8 bytes of all words.
+ *
+ * @author Lukáš Kurčík
+ */
+public class FrozenVocabulary {
+
+    protected static final int MAGIC = 0x4b475356; // KGSV
+    protected static final int VERSION = 1;
+    protected static final int HEADER_SIZE = 6 * 4;
+    protected static final int FNV_OFFSET = 0x811c9dc5;
+    protected static final int FNV_PRIME = 0x01000193;
+
+    protected final ByteBuffer buffer;
+    protected final int idCount;
+    protected final int wordCount;
+    protected final int tableSize;
+    protected final int offsetsStart;
+    protected final int tableStart;
+    protected final int bytesStart;
+
+    /**
+     * Creates vocabulary over buffer with file content
+     *
+     * @param buffer Buffer
+     * @throws IllegalArgumentException if buffer doesn't contain vocabulary
+     */
+    protected FrozenVocabulary(ByteBuffer buffer) {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IllegalArgumentException("Buffer doesn't contain vocabulary");
+        this.buffer = buffer;
+        this.idCount = buffer.getInt(8);
+        this.wordCount = buffer.getInt(12);
+        this.tableSize = buffer.getInt(16);
+        int bytesLength = buffer.getInt(20);
+        this.offsetsStart = HEADER_SIZE;
+        this.tableStart = offsetsStart + 4 * (idCount + 1);
+        this.bytesStart = tableStart + 4 * tableSize;
+        if (idCount < 0 || tableSize < 1 || Integer.bitCount(tableSize) != 1 || bytesLength < 0
+                || (long) bytesStart + bytesLength != buffer.limit())
+            throw new IllegalArgumentException("Vocabulary is corrupted");
+    }
+
+    /**
+     * Creates frozen copy of vocabulary, IDs of words are kept
+     *
+     * @param vocabulary Vocabulary
+     * @return frozen vocabulary
+     */
+    public static FrozenVocabulary freeze(Vocabulary vocabulary) {
+        Map<Integer, String> pairs = vocabulary.getPairs();
+        int idCount = 0;
+        for (Integer id : pairs.keySet())
+            idCount = Math.max(idCount, id + 1);
+        byte[][] words = new byte[idCount][];
+        int bytesLength = 0;
+        for (Map.Entry<Integer, String> entry : pairs.entrySet()) {
+            words[entry.getKey()] = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            bytesLength += words[entry.getKey()].length;
+        }
+        int tableSize = Integer.highestOneBit(Math.max(pairs.size() * 2, 2) - 1) << 1;
+
+        int tableStart = HEADER_SIZE + 4 * (idCount + 1);
+        int bytesStart = tableStart + 4 * tableSize;
+        ByteBuffer buffer = ByteBuffer.allocate(bytesStart + bytesLength);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(idCount).putInt(pairs.size()).putInt(tableSize).putInt(bytesLength);
+        int offset = 0;
+        for (int id = 0; id < idCount; id++) {
+            buffer.putInt(HEADER_SIZE + 4 * id, offset);
+            if (words[id] != null) {
+                buffer.position(bytesStart + offset);
+                buffer.put(words[id]);
+                offset += words[id].length;
+                int slot = hash(words[id]) & (tableSize - 1);
+                while (buffer.getInt(tableStart + 4 * slot) != 0)
+                    slot = (slot + 1) & (tableSize - 1);
+                buffer.putInt(tableStart + 4 * slot, id + 1);
+            }
+        }
+        buffer.putInt(HEADER_SIZE + 4 * idCount, offset);
+        buffer.clear();
+        return new FrozenVocabulary(buffer);
+    }
+
+    /**
+     * Loads vocabulary by memory mapping of file
+     *
+     * @param file Frozen vocabulary file
+     * @return vocabulary
+     * @throws IOException when file can't be read or it has wrong format
+     */
+    public static FrozenVocabulary load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("File " + file + " is too big");
+            return new FrozenVocabulary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("File " + file + " is not vocabulary", e);
+        }
+    }
+
+    /**
+     * Loads frozen vocabulary, it is created from text vocabulary file first if it doesn't exist or is older
+     *
+     * @param frozen Frozen vocabulary file
+     * @param text   Text vocabulary file
+     * @return vocabulary
+     * @throws IOException when files can't be read or written
+     */
+    public static FrozenVocabulary load(Path frozen, Path text) throws IOException {
+        if (!Files.exists(frozen) || Files.getLastModifiedTime(frozen).compareTo(Files.getLastModifiedTime(text)) < 0)
+            freeze(new Vocabulary(text)).save(frozen);
+        return load(frozen);
+    }
+
+    /**
+     * Saves vocabulary into file
+     *
+     * @param file Frozen vocabulary file
+     * @throws IOException when file can't be written
+     */
+    public void save(Path file) throws IOException {
+        AtomicFiles.writeAtomically(file, output -> {
+            byte[] chunk = new byte[1 << 16];
+            ByteBuffer view = buffer.duplicate();
+            view.clear();
+            while (view.hasRemaining()) {
+                int length = Math.min(chunk.length, view.remaining());
+                view.get(chunk, 0, length);
+                output.write(chunk, 0, length);
+            }
+        });
+    }
+
+    /**
+     * Gets id for word, word is lower-cased like in Vocabulary
+     *
+     * @param word word
+     * @return Id for word or -1 if word is not in vocabulary
+     */
+    public int getId(CharSequence word) {
+        if (needsNormalize(word))
+            return find(Vocabulary.normalize(word.toString()), false);
+        return find(word, true);
+    }
+
+    /**
+     * Finds id for word
+     *
+     * @param word      word
+     * @param lowerCase true if code points of word should be lower-cased
+     * @return Id for word or -1 if word is not in vocabulary
+     */
+    protected int find(CharSequence word, boolean lowerCase) {
+        int slot = hash(word, lowerCase) & (tableSize - 1);
+        while (true) {
+            int id = buffer.getInt(tableStart + 4 * slot) - 1;
+            if (id < 0)
+                return -1;
+            if (matches(id, word, lowerCase))
+                return id;
+            slot = (slot + 1) & (tableSize - 1);
+        }
+    }
+
+    /**
+     * Check if vocabulary contains word
+     *
+     * @param word word
+     * @return true if word is in vocabulary
+     */
+    public boolean contains(CharSequence word) {
+        return getId(word) >= 0;
+    }
+
+    /**
+     * Check if vocabulary contains all words
+     *
+     * @param words words
+     * @return true if all words are in vocabulary
+     */
+    public boolean containsAll(Collection<String> words) {
+        for (String word : words) {
+            if (getId(word) < 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Return word for id or null.
+     *
+     * @param id Id
+     * @return word or null
+     */
+    public String getWord(int id) {
+        if (id < 0 || id >= idCount)
+            return null;
+        int start = buffer.getInt(offsetsStart + 4 * id);
+        int end = buffer.getInt(offsetsStart + 4 * id + 4);
+        if (start == end)
+            return null;
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buffer.get(bytesStart + start + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Return size of vocabulary
+     *
+     * @return number of words in vocabulary
+     */
+    public int size() {
+        return wordCount;
+    }
+
+    /**
+     * Return number of IDs, all IDs are lower
+     *
+     * @return highest ID + 1
+     */
+    public int getIdCount() {
+        return idCount;
+    }
+
+    /**
+     * Check if word contains character, which String.toLowerCase doesn't lower-case as single code point
+     *
+     * @param word word
+     * @return true if word must be lower-cased by Vocabulary.normalize
+     */
+    protected static boolean needsNormalize(CharSequence word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c == '\u03a3' || c == '\u0130')
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Compares word with ID with lower-cased word
+     *
+     * @param id        Id
+     * @param word      word
+     * @param lowerCase true if code points of word should be lower-cased
+     * @return true if words are equal
+     */
+    protected boolean matches(int id, CharSequence word, boolean lowerCase) {
+        int position = bytesStart + buffer.getInt(offsetsStart + 4 * id);
+        int end = bytesStart + buffer.getInt(offsetsStart + 4 * id + 4);
+        for (int i = 0; i < word.length(); ) {
+            int codePoint = Character.codePointAt(word, i);
+            i += Character.charCount(codePoint);
+            codePoint = lowerCase(codePoint, lowerCase);
+            int length = utf8Length(codePoint);
+            if (position + length > end)
+                return false;
+            for (int n = 0; n < length; n++) {
+                if (buffer.get(position++) != utf8Byte(codePoint, length, n))
+                    return false;
+            }
+        }
+        return position == end;
+    }
+
+    /**
+     * Return FNV-1a hash of UTF-8 bytes of lower-cased word
+     *
+     * @param word      word
+     * @param lowerCase true if code points of word should be lower-cased
+     * @return hash
+     */
+    protected static int hash(CharSequence word, boolean lowerCase) {
+        int hash = FNV_OFFSET;
+        for (int i = 0; i < word.length(); ) {
+            int codePoint = Character.codePointAt(word, i);
+            i += Character.charCount(codePoint);
+            codePoint = lowerCase(codePoint, lowerCase);
+            int length = utf8Length(codePoint);
+            for (int n = 0; n < length; n++)
+                hash = (hash ^ (utf8Byte(codePoint, length, n) & 0xff)) * FNV_PRIME;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Return FNV-1a hash of UTF-8 bytes
+     *
+     * @param bytes bytes of word
+     * @return hash
+     */
+    protected static int hash(byte[] bytes) {
+        int hash = FNV_OFFSET;
+        for (byte b : bytes)
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Lower-cases code point, unpaired surrogate is replaced by '?' like by String.getBytes
+     */
+    protected static int lowerCase(int codePoint, boolean lowerCase) {
+        if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)
+            return '?';
+        return lowerCase ? Character.toLowerCase(codePoint) : codePoint;
+    }
+
+    /**
+     * Return number of UTF-8 bytes of code point
+     */
+    protected static int utf8Length(int codePoint) {
+        if (codePoint < 0x80)
+            return 1;
+        if (codePoint < 0x800)
+            return 2;
+        if (codePoint < 0x10000)
+            return 3;
+        return 4;
+    }
+
+    /**
+     * Return nth UTF-8 byte of code point
+     */
+    protected static byte utf8Byte(int codePoint, int length, int n) {
+        if (length == 1)
+            return (byte) codePoint;
+        if (n == 0)
+            return (byte) ((0xff00 >> length) | (codePoint >> (6 * (length - 1))));
+        return (byte) (0x80 | ((codePoint >> (6 * (length - 1 - n))) & 0x3f));
+    }
+}
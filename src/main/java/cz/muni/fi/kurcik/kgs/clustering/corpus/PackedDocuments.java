@@ -0,0 +1,166 @@
+package cz.muni.fi.kurcik.kgs.clustering.corpus;
+
+import java.util.Arrays;
+
+/**
+ * Documents of corpus packed into primitive arrays in CSR layout.
+ * Words of all documents are in one array as interleaved word ID and count pairs,
+ * document n has its pairs from offset(n) to end(n) = offset(n + 1). Documents can only be appended,
+ * arrays grow like in ArrayList. Arrays returned by getData and getOffsets are views, that are valid until next change.
+ *
+ * @author Lukáš Kurčík
+ */
+public class PackedDocuments {
+
+    protected int[] offsets;
+    protected int[] data;
+    protected int size = 0;
+
+    /**
+     * Creates empty documents
+     */
+    public PackedDocuments() {
+        this(16, 256);
+    }
+
+    /**
+     * Creates empty documents with initial capacity
+     *
+     * @param documents Expected number of documents
+     * @param pairs     Expected number of word ID and count pairs in all documents
+     */
+    public PackedDocuments(int documents, int pairs) {
+        offsets = new int[Math.max(documents, 1) + 1];
+        data = new int[Math.max(pairs, 1) * 2];
+    }
+
+    /**
+     * Appends document
+     *
+     * @param pairs  Array with interleaved word IDs and counts
+     * @param length Number of used ints in array, i.e. twice the number of words
+     */
+    public void add(int[] pairs, int length) {
+        if (length % 2 != 0)
+            throw new IllegalArgumentException("Document must have count for each word");
+        ensureCapacity(length);
+        System.arraycopy(pairs, 0, data, offsets[size], length);
+        offsets[size + 1] = offsets[size] + length;
+        size++;
+    }
+
+    /**
+     * Return number of documents
+     *
+     * @return number of documents
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return number of unique words in document
+     *
+     * @param document Index of document
+     * @return number of words
+     */
+    public int getLength(int document) {
+        return (end(document) - offset(document)) / 2;
+    }
+
+    /**
+     * Return index of first word ID of document in data
+     *
+     * @param document Index of document
+     * @return offset
+     */
+    public int offset(int document) {
+        checkIndex(document);
+        return offsets[document];
+    }
+
+    /**
+     * Return index after last count of document in data
+     *
+     * @param document Index of document
+     * @return end offset
+     */
+    public int end(int document) {
+        checkIndex(document);
+        return offsets[document + 1];
+    }
+
+    /**
+     * Return interleaved word IDs and counts of all documents, array can be longer than used part
+     *
+     * @return data view
+     */
+    public int[] getData() {
+        return data;
+    }
+
+    /**
+     * Return offsets of documents in data, array has at least size() + 1 items
+     *
+     * @return offsets view
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Return copy of document as interleaved word IDs and counts
+     *
+     * @param document Index of document
+     * @return pairs
+     */
+    public int[] getDocument(int document) {
+        return Arrays.copyOfRange(data, offset(document), end(document));
+    }
+
+    /**
+     * Replaces word IDs by new IDs and removes words without new ID from all documents in one pass.
+     * Order of other words is kept.
+     *
+     * @param translator New ID for each old ID, negative ID if word should be removed
+     */
+    public void remapWords(int[] translator) {
+        int write = 0;
+        int start = 0;
+        for (int d = 0; d < size; d++) {
+            int end = offsets[d + 1];
+            for (int i = start; i < end; i += 2) {
+                int word = data[i] < translator.length ? translator[data[i]] : -1;
+                if (word >= 0) {
+                    data[write++] = word;
+                    data[write++] = data[i + 1];
+                }
+            }
+            start = end;
+            offsets[d + 1] = write;
+        }
+    }
+
+    /**
+     * Makes sure there is space for one more document with given length
+     *
+     * @param length Length of new document in ints
+     */
+    protected void ensureCapacity(int length) {
+        if (size + 2 > offsets.length)
+            offsets = Arrays.copyOf(offsets, offsets.length + (offsets.length >> 1) + 1);
+        int needed = offsets[size] + length;
+        if (needed > data.length)
+            data = Arrays.copyOf(data, Math.max(needed, data.length + (data.length >> 1)));
+    }
+
+    /**
+     * Checks index of document
+     *
+     * @param document Index of document
+     */
+    protected void checkIndex(int document) {
+        if (document < 0 || document >= size)
+            throw new IndexOutOfBoundsException("Document " + document + ", size " + size);
+    }
+}
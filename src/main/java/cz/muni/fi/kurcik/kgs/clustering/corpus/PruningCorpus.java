@@ -8,12 +8,21 @@ import java.nio.file.Path;
 import java.util.*;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * Corpus builder that uses pruning of vocabulary for memory and clustering efficiency
  * Pruning rate specify at which percentage of processed documents will be words with occurrence count equals to 1 removed.
  * Vocabulary size could be larger that wanted size. Words with same occurrence count as last word will be left untouched.
+ * <p>
+ * Removed words are only marked as dead, documents are compacted once when corpus is saved,
+ * together with normalization of word IDs.
+ * <p>
+ * With sketch capacity, words are counted by SpaceSavingCounter instead of exact counters, so memory used by counters
+ * and vocabulary doesn't depend on number of distinct words. Word replaced in sketch is removed from vocabulary.
+ * Sketch counts lower-cased words like vocabulary, so word is not removed while other form of it is still counted.
+ * Both exact counters get the same counts, so one sketch is used instead of them.
+ * <p>
+ * Without sketch, documents can be added by shards built by more threads, see CorpusShard and addShard.
  *
  * @author Lukáš Kurčík
  */
@@ -31,6 +40,16 @@ public class PruningCorpus extends AbstractCorpus {
     final HashMap<String, Long> wordCounter = new HashMap<>();
     final HashMap<String, Long> wordInDocCounter = new HashMap<>();
 
+    /**
+     * IDs of words removed from vocabulary, they are still in documents until normalize
+     */
+    protected final BitSet deadWords = new BitSet();
+
+    /**
+     * Approximate counter used instead of wordCounter and wordInDocCounter, null for exact counting
+     */
+    protected SpaceSavingCounter wordSketch;
+
     /**
      * Constructs new corpus builder. There will be only one pruning at the end of building.
      *
@@ -76,7 +95,6 @@ public class PruningCorpus extends AbstractCorpus {
         this.wantedSize = wantedSize;
         this.redundantPercentage = redundantPercentage;
         vocabulary = new Vocabulary();
-        documents = new ArrayList<>();
     }
 
     /**
@@ -87,6 +105,12 @@ public class PruningCorpus extends AbstractCorpus {
     @Override
     public void addDocument(String[] words) {
         super.addDocument(words);
+        if (wordSketch != null) {
+            countSketched(words);
+            documentsParsed++;
+            prune();
+            return;
+        }
         HashSet<String> countedWords = new HashSet<>();
         for (String word : words) {
             if (!word.isEmpty()) {
@@ -100,6 +124,85 @@ public class PruningCorpus extends AbstractCorpus {
         prune();
     }
 
+    /**
+     * Adds all documents of shard. Words of shard get IDs from vocabulary of corpus in order of their IDs in shard,
+     * which is the order of their first occurrence, so IDs, documents and counts are the same as if documents
+     * were added one by one. Pruning is checked only after whole shard, so shards have to end at bounds
+     * from getShardBounds to get the same result.
+     *
+     * @param shard Shard with documents following documents of corpus
+     */
+    public void addShard(CorpusShard shard) {
+        if (wordSketch != null)
+            throw new IllegalStateException("Shards can't be merged into corpus with word sketch");
+        Vocabulary shardVocabulary = shard.getVocabulary();
+        int[] translator = new int[shardVocabulary.size()];
+        int maxId = -1;
+        for (int id = 0; id < translator.length; id++) {
+            translator[id] = vocabulary.addAndGetId(shardVocabulary.getWord(id));
+            maxId = Math.max(maxId, translator[id]);
+        }
+        if (maxId >= wordCounts.length)
+            wordCounts = Arrays.copyOf(wordCounts, Math.max(maxId + 1, wordCounts.length * 2));
+
+        PackedDocuments shardDocuments = shard.getDocuments();
+        int[] data = shardDocuments.getData();
+        for (int d = 0; d < shardDocuments.size(); d++) {
+            int start = shardDocuments.offset(d);
+            int length = shardDocuments.end(d) - start;
+            if (pairs.length < length)
+                pairs = new int[length];
+            for (int i = 0; i < length; i += 2) {
+                pairs[i] = translator[data[start + i]];
+                pairs[i + 1] = data[start + i + 1];
+            }
+            documents.add(pairs, length);
+        }
+
+        for (Map.Entry<String, Long> e : shard.getWordCounts().entrySet()) {
+            wordCounter.merge(e.getKey(), e.getValue(), Long::sum);
+            wordInDocCounter.merge(e.getKey(), e.getValue(), Long::sum);
+        }
+        documentsParsed += shardDocuments.size();
+        prune();
+    }
+
+    /**
+     * Splits documents, that are left to be added, into shards. Every document after which pruning is done
+     * ends a shard, so merging of shards prunes the same words as adding of documents one by one.
+     * Number of documents has to be set by setDocCount.
+     *
+     * @param shards Wanted number of shards, there can be more shards because of pruning
+     * @return indexes of first documents of shards, counted from the next added document, and number of documents at the end
+     */
+    public int[] getShardBounds(int shards) {
+        int left = (int) (docCount - documentsParsed);
+        TreeSet<Integer> bounds = new TreeSet<>();
+        for (int s = 0; s <= shards; s++)
+            bounds.add((int) ((long) left * s / shards));
+        if (pruningRate > 0) {
+            double last = lastPrune;
+            for (long parsed = documentsParsed + 1; parsed <= docCount; parsed++) {
+                double percentage = (100 * parsed / docCount);
+                if (percentage > last + pruningRate) {
+                    last += pruningRate;
+                    bounds.add((int) (parsed - documentsParsed));
+                }
+            }
+        }
+        return bounds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Check if documents can be added by shards, which is not possible with word sketch,
+     * because replacing of words in sketch depends on order of all words
+     *
+     * @return true if addShard can be used
+     */
+    public boolean canMergeShards() {
+        return wordSketch == null;
+    }
+
     /**
      * Saves corpus into file
      *
@@ -108,37 +211,102 @@ public class PruningCorpus extends AbstractCorpus {
      */
     @Override
     public void save(Path file) throws IOException {
+        if (wordSketch != null)
+            logger.info("Word sketch " + wordSketch);
         removeRedundant();
         resizeVocabulary();
+        if (wordSketch != null)
+            logSketchAccuracy();
         normalize();
         super.save(file);
     }
 
     /**
-     * Normalize vocabulary so that no word id is larger that vocabulary size
+     * Counts lower-cased words of document in sketch, words replaced in sketch are removed from vocabulary
+     *
+     * @param words All words in document
      */
-    protected void normalize() {
-        Vocabulary newVocabulary = new Vocabulary(vocabulary);
-        HashMap<Integer, Integer> translator = new HashMap<>();
-        for (Map.Entry<Integer, String> entry : vocabulary.getPairs().entrySet()) {
-            translator.put(entry.getKey(), newVocabulary.getId(entry.getValue()));
+    protected void countSketched(String[] words) {
+        for (String word : words) {
+            if (word.isEmpty())
+                continue;
+            String evicted = wordSketch.add(Vocabulary.normalize(word));
+            if (evicted != null) {
+                Integer id = vocabulary.getId(evicted);
+                if (id != null) {
+                    vocabulary.remove(evicted);
+                    deadWords.set(id);
+                }
+            }
+        }
+    }
 
+    /**
+     * Logs how precise are counts of words left in vocabulary
+     */
+    protected void logSketchAccuracy() {
+        long exact = 0;
+        long maxError = 0;
+        long kept = 0;
+        for (String word : wordSketch.getCounts().keySet()) {
+            if (vocabulary.getId(word) == null)
+                continue;
+            kept++;
+            long error = wordSketch.getError(word);
+            if (error == 0)
+                exact++;
+            maxError = Math.max(maxError, error);
         }
+        logger.info(exact + " of " + kept
+                + " counted vocabulary words have exact count, maximal overestimation is " + maxError);
+    }
 
-        this.vocabulary = newVocabulary;
+    /**
+     * Return occurrence counts of words used for vocabulary resizing and pruning
+     *
+     * @return word counts
+     */
+    protected Map<String, Long> getWordCounts() {
+        return wordSketch != null ? wordSketch.getCounts() : wordCounter;
+    }
 
-        List<List<Integer>> newDocuments = new ArrayList<>();
+    /**
+     * Return counts used for finding redundant words
+     *
+     * @return word counts
+     */
+    protected Map<String, Long> getWordInDocCounts() {
+        return wordSketch != null ? wordSketch.getCounts() : wordInDocCounter;
+    }
+
+    /**
+     * Removes word from counts used for vocabulary resizing and pruning
+     *
+     * @param word word
+     */
+    protected void forgetWord(String word) {
+        if (wordSketch != null)
+            wordSketch.remove(word);
+        else
+            wordCounter.remove(word);
+    }
 
-        for (List<Integer> document : documents) {
-            newDocuments.add(
-                    IntStream.range(0, document.size()).mapToObj(i -> {
-                        Integer word = document.get(i);
-                        return i % 2 == 0 ? translator.get(word) : word;
-                    }).collect(Collectors.toList())
-            );
+    /**
+     * Normalize vocabulary so that no word id is larger that vocabulary size.
+     * Dead words are removed from documents in the same pass.
+     */
+    protected void normalize() {
+        Vocabulary newVocabulary = new Vocabulary(vocabulary);
+        int[] translator = new int[Math.max(wordCounts.length, deadWords.length())];
+        Arrays.fill(translator, -1);
+        for (Map.Entry<Integer, String> entry : vocabulary.getPairs().entrySet()) {
+            if (!deadWords.get(entry.getKey()))
+                translator[entry.getKey()] = newVocabulary.getId(entry.getValue());
         }
 
-        this.documents = newDocuments;
+        this.vocabulary = newVocabulary;
+        documents.remapWords(translator);
+        deadWords.clear();
     }
 
     /**
@@ -146,7 +314,7 @@ public class PruningCorpus extends AbstractCorpus {
      */
     protected void removeRedundant() {
         logger.info("Removing redundant words with percentage " + (redundantPercentage * 100) + "% and higher, actual size = " + vocabulary.size());
-        LinkedHashMap<String, Long> sortedCounter = wordInDocCounter.entrySet().stream()
+        LinkedHashMap<String, Long> sortedCounter = getWordInDocCounts().entrySet().stream()
                 .sorted((Comparator<Map.Entry<String, Long>> & Serializable) (c1, c2) -> c2.getValue().compareTo(c1.getValue()))
                 .collect(Collectors.toMap(
                         Map.Entry::getKey,
@@ -159,7 +327,7 @@ public class PruningCorpus extends AbstractCorpus {
             if (e.getValue() / documents.size() >= redundantPercentage) {
                 wordToRemove.add(vocabulary.getId(e.getKey()));
                 vocabulary.remove(e.getKey());
-                wordCounter.remove(e.getKey());
+                forgetWord(e.getKey());
             }
         }
 
@@ -175,7 +343,7 @@ public class PruningCorpus extends AbstractCorpus {
     protected void resizeVocabulary() {
         logger.info("Resizing vocabulary, actual size = " + vocabulary.size());
 
-        LinkedHashMap<String, Long> sortedCounter = wordCounter.entrySet().stream()
+        LinkedHashMap<String, Long> sortedCounter = getWordCounts().entrySet().stream()
                 .sorted((Comparator<Map.Entry<String, Long>> & Serializable) (c1, c2) -> c2.getValue().compareTo(c1.getValue()))
                 .collect(Collectors.toMap(
                         Map.Entry::getKey,
@@ -193,7 +361,7 @@ public class PruningCorpus extends AbstractCorpus {
             if (checked > wantedSize && minCount != e.getValue()) {
                 wordToRemove.add(vocabulary.getId(e.getKey()));
                 vocabulary.remove(e.getKey());
-                wordCounter.remove(e.getKey());
+                forgetWord(e.getKey());
             } else if (checked == wantedSize) {
                 minCount = e.getValue();
             }
@@ -204,6 +372,44 @@ public class PruningCorpus extends AbstractCorpus {
         logger.info("Vocabulary resized, actual size = " + vocabulary.size());
     }
 
+    /**
+     * Return words that would be left in vocabulary by save of corpus built without pruning during building.
+     * Words are removed by the same rules as by removeRedundant and resizeVocabulary.
+     *
+     * @param wordCounts    Occurrence counts of words in all documents
+     * @param documentCount Number of documents
+     * @return lower-cased words of vocabulary
+     */
+    public Set<String> selectVocabulary(Map<String, Long> wordCounts, long documentCount) {
+        Set<String> words = new HashSet<>();
+        Set<String> removed = new HashSet<>();
+        HashMap<String, Long> counter = new HashMap<>();
+        for (Map.Entry<String, Long> e : wordCounts.entrySet()) {
+            words.add(Vocabulary.normalize(e.getKey()));
+            if (documentCount > 0 && e.getValue() / documentCount >= redundantPercentage)
+                removed.add(Vocabulary.normalize(e.getKey()));
+            else
+                counter.put(e.getKey(), e.getValue());
+        }
+
+        if (wantedSize < counter.size()) {
+            List<Long> sortedCounts = new ArrayList<>(counter.values());
+            sortedCounts.sort(Comparator.reverseOrder());
+            long minCount = wantedSize > 0 ? sortedCounts.get((int) wantedSize - 1) : Long.MAX_VALUE;
+            for (Map.Entry<String, Long> e : counter.entrySet()) {
+                if (e.getValue() < minCount)
+                    removed.add(Vocabulary.normalize(e.getKey()));
+            }
+        }
+
+        words.removeAll(removed);
+        return words;
+    }
+
+    public double getPruningRate() {
+        return pruningRate;
+    }
+
     /**
      * Check if pruning should be done and prune
      */
@@ -213,14 +419,16 @@ public class PruningCorpus extends AbstractCorpus {
             lastPrune += pruningRate;
             logger.info("Pruning at " + documentsParsed + " documents parsed from " + docCount);
             HashSet<Integer> wordToRemove = new HashSet<>();
+            List<String> removed = new ArrayList<>();
 
-            for (Map.Entry<String, Long> e : wordCounter.entrySet()) {
+            for (Map.Entry<String, Long> e : getWordCounts().entrySet()) {
                 if (e.getValue() == 1) {
                     wordToRemove.add(vocabulary.getId(e.getKey()));
                     vocabulary.remove(e.getKey());
+                    removed.add(e.getKey());
                 }
             }
-            wordCounter.entrySet().removeIf(e -> e.getValue() == 1);
+            removed.forEach(this::forgetWord);
 
             if (wordToRemove.size() == 0) {
                 logger.info("No words removed");
@@ -232,27 +440,31 @@ public class PruningCorpus extends AbstractCorpus {
     }
 
     /**
-     * Removes words from documents
+     * Marks words as dead, they are removed from documents by normalize
      *
-     * @param wordToRemove
+     * @param wordToRemove IDs of removed words
      */
     protected void removeWords(HashSet<Integer> wordToRemove) {
-        List<List<Integer>> newDocuments = new ArrayList<>();
-        documents.forEach(doc -> {
-            ArrayList<Integer> newDoc = new ArrayList<>();
-            for (int i = 0; i < doc.size(); i += 2) {
-                if (!wordToRemove.contains(doc.get(i))) {
-                    newDoc.add(doc.get(i));
-                    newDoc.add(doc.get(i + 1));
-                }
-            }
-            newDocuments.add(newDoc);
-        });
-
-        documents = newDocuments;
+        for (Integer id : wordToRemove) {
+            if (id != null)
+                deadWords.set(id);
+        }
     }
 
     public void setDocCount(long docCount) {
         this.docCount = docCount;
     }
+
+    /**
+     * Sets number of words counted by sketch, must be set before first document is added
+     *
+     * @param capacity Number of counters, 0 for exact counting
+     */
+    public void setSketchCapacity(int capacity) {
+        this.wordSketch = capacity > 0 ? new SpaceSavingCounter(capacity) : null;
+    }
+
+    public int getSketchCapacity() {
+        return wordSketch != null ? wordSketch.getCapacity() : 0;
+    }
 }
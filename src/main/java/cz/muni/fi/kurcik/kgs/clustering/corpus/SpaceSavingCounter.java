@@ -0,0 +1,231 @@
+package cz.muni.fi.kurcik.kgs.clustering.corpus;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Approximate occurrence counter with fixed number of counters using Space-Saving algorithm.
+ * When all counters are used, new word replaces word with the lowest count and gets its count plus one,
+ * so counts are never lower than real counts and they are higher at most by error of the word,
+ * which is at most total / capacity. Every word with real count higher than total / capacity is kept.
+ * <p>
+ * Counters are kept in min-heap by count, so each add takes O(log capacity).
+ *
+ * @author Lukáš Kurčík
+ */
+public class SpaceSavingCounter {
+
+    protected final int capacity;
+    protected final Map<String, Integer> positions;
+    protected final String[] words;
+    protected final long[] counts;
+    protected final long[] errors;
+    protected int size = 0;
+    protected long total = 0;
+    protected long evictions = 0;
+
+    /**
+     * Creates counter
+     *
+     * @param capacity Maximal number of counted words
+     */
+    public SpaceSavingCounter(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity of counter must be positive");
+        this.capacity = capacity;
+        this.positions = new HashMap<>(capacity * 4 / 3 + 1);
+        this.words = new String[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+    }
+
+    /**
+     * Counts one occurrence of word
+     *
+     * @param word word
+     * @return word, that was replaced by this word, or null
+     */
+    public String add(String word) {
+        total++;
+        Integer position = positions.get(word);
+        if (position != null) {
+            counts[position]++;
+            siftDown(position);
+            return null;
+        }
+        if (size < capacity) {
+            words[size] = word;
+            counts[size] = 1;
+            errors[size] = 0;
+            positions.put(word, size);
+            siftUp(size++);
+            return null;
+        }
+
+        String evicted = words[0];
+        positions.remove(evicted);
+        evictions++;
+        errors[0] = counts[0];
+        counts[0]++;
+        words[0] = word;
+        positions.put(word, 0);
+        siftDown(0);
+        return evicted;
+    }
+
+    /**
+     * Removes word from counter
+     *
+     * @param word word
+     * @return true if word was counted
+     */
+    public boolean remove(String word) {
+        Integer position = positions.remove(word);
+        if (position == null)
+            return false;
+        size--;
+        if (position != size) {
+            move(size, position);
+            siftDown(position);
+            siftUp(position);
+        }
+        words[size] = null;
+        return true;
+    }
+
+    /**
+     * Return estimated count of word
+     *
+     * @param word word
+     * @return count, 0 if word isn't counted
+     */
+    public long getCount(String word) {
+        Integer position = positions.get(word);
+        return position == null ? 0 : counts[position];
+    }
+
+    /**
+     * Return maximal overestimation of count of word
+     *
+     * @param word word
+     * @return error, 0 if count is exact or word isn't counted
+     */
+    public long getError(String word) {
+        Integer position = positions.get(word);
+        return position == null ? 0 : errors[position];
+    }
+
+    /**
+     * Return estimated counts of all counted words
+     *
+     * @return map word -> count
+     */
+    public Map<String, Long> getCounts() {
+        Map<String, Long> result = new LinkedHashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++)
+            result.put(words[i], counts[i]);
+        return result;
+    }
+
+    /**
+     * Return lowest count, words that are not counted have real count at most this high
+     *
+     * @return lowest count if all counters are used, otherwise 0
+     */
+    public long getMinCount() {
+        return size < capacity ? 0 : counts[0];
+    }
+
+    /**
+     * Return number of counted words
+     *
+     * @return number of words
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Return number of all added occurrences
+     *
+     * @return number of occurrences
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("words=%d/%d occurrences=%d evictions=%d minCount=%d",
+                size, capacity, total, evictions, getMinCount());
+    }
+
+    /**
+     * Moves counter lower in heap while it has higher count than its children
+     *
+     * @param position Position of counter
+     */
+    protected void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest])
+                smallest = left;
+            if (right < size && counts[right] < counts[smallest])
+                smallest = right;
+            if (smallest == position)
+                return;
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    /**
+     * Moves counter higher in heap while it has lower count than its parent
+     *
+     * @param position Position of counter
+     */
+    protected void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[parent] <= counts[position])
+                return;
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    /**
+     * Swaps two counters in heap
+     */
+    protected void swap(int a, int b) {
+        String word = words[a];
+        long count = counts[a];
+        long error = errors[a];
+        move(b, a);
+        words[b] = word;
+        counts[b] = count;
+        errors[b] = error;
+        positions.put(word, b);
+    }
+
+    /**
+     * Copies counter to other position in heap
+     */
+    protected void move(int from, int to) {
+        words[to] = words[from];
+        counts[to] = counts[from];
+        errors[to] = errors[from];
+        positions.put(words[to], to);
+    }
+}
@@ -66,17 +66,31 @@ public class Vocabulary {
             if (line.isEmpty())
                 return;
             String[] parts = line.split(" ");
-            word2id.put(parts[1], Integer.parseInt(parts[0]));
+            int id = Integer.parseInt(parts[0]);
+            word2id.put(parts[1], id);
+            id2word.put(id, parts[1]);
+            idCounter = Math.max(idCounter, id + 1);
         });
     }
 
+    /**
+     * Lower-cases word the way it is stored in vocabulary.
+     * Root locale is used, so words are the same regardless of default locale.
+     *
+     * @param word word
+     * @return lower-cased word
+     */
+    public static String normalize(String word) {
+        return word.toLowerCase(Locale.ROOT);
+    }
+
     /**
      * Adds new word into vocabulary
      *
      * @param word
      */
     public void addWord(String word) {
-        word = word.toLowerCase();
+        word = normalize(word);
         if (!word2id.containsKey(word)) {
             word2id.put(word, idCounter);
             id2word.put(idCounter++, word);
@@ -90,7 +104,7 @@ public class Vocabulary {
      * @return Id for word or null
      */
     public Integer getId(String word) {
-        word = word.toLowerCase();
+        word = normalize(word);
         return word2id.get(word);
     }
 
@@ -114,7 +128,7 @@ public class Vocabulary {
      * @param word word
      */
     public void remove(String word) {
-        word = word.toLowerCase();
+        word = normalize(word);
         id2word.remove(getId(word));
         word2id.remove(word);
     }
@@ -149,6 +163,15 @@ public class Vocabulary {
                 .map(it -> it.getValue() + " " + it.getKey()).collect(Collectors.toList()));
     }
 
+    /**
+     * Return all words in vocabulary
+     *
+     * @return words
+     */
+    public Set<String> getWords() {
+        return Collections.unmodifiableSet(word2id.keySet());
+    }
+
     /**
      * Return pairs of id and words
      * @return word-id pairing map
@@ -97,6 +97,13 @@ public class OptionsBuilder {
         options.addOption("u", "url", true, "Starting url");
         options.addOption("hops", true, "Number of domain hops. Default: 0");
         options.addOption("depth", true, "Maximum depth for downloader. Default: 1");
+        options.addOption("metrics", true, "Interval in seconds for saving crawl metrics into metrics.txt. 0 means never. Default: 0");
+        options.addOption("workers", true, "Number of worker processes for distributed crawl. Without -worker starts all workers locally and merges their data");
+        options.addOption("worker", true, "Run only worker with this index (from 0) of distributed crawl");
+        options.addOption("merge", false, "Only merge data of finished workers of distributed crawl");
+        options.addOption("seeds", true, "File with starting urls, one on each line. All domains are crawled in one process, each into its own directory");
+        options.addOption("concurrency", true, "Maximal number of domains crawled at the same time with -seeds. Default: number of processors");
+        options.addOption("pipeline", true, "Crawl with staged pipeline using numbers of fetch, parse and detect threads, e.g. 16,4,2");
     }
 
     /**
@@ -106,6 +113,16 @@ public class OptionsBuilder {
         options.addOption("v", "vocabulary", true, "Vocabulary size. Default: 2000");
         options.addOption("redundant", true, "Specify percentage of documents, that contains words for word to be dropped. Default: 0.3");
         options.addOption("pruning", true, "Specify at which percentage of processed documents will be words with occurrence count equals to 1 removed. 0 means never. Default: 0");
+        options.addOption("sketch", true, "Count words approximately with this number of counters instead of counting all words exactly. 0 means exact counting. Default: 0");
+        options.addOption("threads", true, "Number of threads for normalization of documents and building of corpus. Default: 1");
+        options.addOption("nativemajka", false, "Use C++ Majka library for lemmatization instead of Java implementation");
+        options.addOption("global", false, "Lemmatize unique words of all documents at once instead of each document separately");
+        options.addOption("fused", false, "Add normalized documents straight into corpus without writing and reading normalized files");
+        options.addOption("writenormalized", false, "Save normalized files also with -fused");
+        options.addOption("binary", false, "Save normalized files in binary format with shared dictionary of lemmas");
+        options.addOption("annotate", false, "Save sentences, lemmas and tags of documents for keyword generation");
+        options.addOption("incremental", false, "Normalize only new and changed documents and update existing corpus");
+        options.addOption("lemmacache", true, "File with lemma cache, which is loaded before and saved after normalization");
     }
 
     /**
@@ -2,11 +2,15 @@ package cz.muni.fi.kurcik.kgs.download;
 
 import com.drew.lang.Charsets;
 import cz.muni.fi.kurcik.kgs.download.containers.UrlContainer;
+import cz.muni.fi.kurcik.kgs.download.metrics.CrawlMetrics;
+import cz.muni.fi.kurcik.kgs.download.metrics.CrawlStage;
+import cz.muni.fi.kurcik.kgs.download.metrics.MetricsReporter;
 import cz.muni.fi.kurcik.kgs.download.parser.Parser;
 import cz.muni.fi.kurcik.kgs.download.parser.ParserException;
 import cz.muni.fi.kurcik.kgs.download.parser.ParserFactory;
 import cz.muni.fi.kurcik.kgs.download.parser.TikaParser;
 import cz.muni.fi.kurcik.kgs.util.AModule;
+import cz.muni.fi.kurcik.kgs.util.LinkGraphBuilder;
 import cz.muni.fi.kurcik.kgs.util.UrlIndex;
 import edu.stanford.nlp.util.ArraySet;
 import org.apache.commons.io.FileUtils;
@@ -38,11 +42,15 @@ public class BasicDownloader extends AModule implements Downloader {
     protected final ParserFactory parserFactory;
 
     protected UrlContainer urlContainer;
+    protected LinkGraphBuilder linkGraph;
 
     protected int donwloadCount = 0;
     protected int parserRejected = 0;
     protected int languageRejected = 0;
 
+    protected CrawlMetrics metrics;
+    protected int metricsInterval = 0;
+
     /**
      * Create new basic downloader
      *
@@ -66,6 +74,8 @@ public class BasicDownloader extends AModule implements Downloader {
      * Each file have its original content saved into original/ID.extension and parsed content as parsed/ID.txt, where ID is assigned by Downloader.
      * URLs linked from site are put into ID.links file, each URL on separate line.
      * ID and URL pairs are saved into ids.txt in format [ID] [URL], each on separate line.
+     * Links between downloaded documents are saved into LINK_GRAPH_FILE.
+     * If metrics interval is set, snapshots of crawl metrics are periodically appended into METRICS_FILE.
      *
      * @param url   Web page url
      * @param hops  Number of hops to other domains
@@ -74,29 +84,58 @@ public class BasicDownloader extends AModule implements Downloader {
      */
     @Override
     public void downloadPage(URI url, int hops, int depth) throws IOException {
-        urlContainer = new BasicUrlContainer(getLogger());
+        urlContainer = createUrlContainer();
+        linkGraph = new LinkGraphBuilder();
+        metrics = new CrawlMetrics();
+        metrics.setFrontier(urlContainer::size);
 
         urlContainer.setDepth(depth);
         urlContainer.setHops(hops);
         createDownloadFolder();
 
+        MetricsReporter reporter = metricsInterval > 0
+                ? new MetricsReporter(metrics, downloadDir.resolve(METRICS_FILE), metricsInterval, getLogger())
+                : null;
         try {
             getLogger().info("Started parsing domain " + url);
             urlContainer.push(url, 0, 0);
-            while (!urlContainer.isEmpty()) {
-                parse(urlContainer.pop());
-            }
+            crawl();
             getLogger().info("Downloaded URLs:" + donwloadCount);
             getLogger().info("Rejected by parser:" + parserRejected);
             getLogger().info("Rejected by language:" + languageRejected);
             getLogger().info("Saved URLS: " + urlContainer.getParsedUrls().size());
+            getLogger().info("Crawl metrics: " + metrics.snapshot());
         } finally {
+            if (reporter != null)
+                reporter.close();
             getLogger().info("Saving ID -> URL pairs");
             saveIdPairs();
+            getLogger().info("Saving link graph");
+            saveLinkGraph();
             getLogger().info("Finished parsing domain " + url);
         }
     }
 
+    /**
+     * Creates container for URLs of one crawl
+     *
+     * @return empty url container
+     */
+    protected UrlContainer createUrlContainer() {
+        return new BasicUrlContainer(getLogger());
+    }
+
+    /**
+     * Parses URLs from container until it is empty
+     *
+     * @throws IOException when crawl can't continue
+     */
+    protected void crawl() throws IOException {
+        while (!urlContainer.isEmpty()) {
+            parse(urlContainer.pop());
+        }
+    }
+
     /**
      * Parse download url
      *
@@ -108,7 +147,9 @@ public class BasicDownloader extends AModule implements Downloader {
         URI url = durl.getUrl();
         getLogger().info("Parsing " + url + "; depth: " + durl.getDepth() + "; hops: " + durl.getHops());
 
+        long start = System.nanoTime();
         URI newUrl = resolveRedirects(url);
+        metrics.record(CrawlStage.REDIRECT, start);
         if (!url.equals(newUrl)) {
             getLogger().info("Redirect from " + url + " to " + newUrl);
             urlContainer.push(newUrl, durl.getDepth(), durl.getHops());
@@ -117,32 +158,29 @@ public class BasicDownloader extends AModule implements Downloader {
             return;
         }
 
-        String extension = FilenameUtils.getExtension(url.getPath()).replaceAll("\\?.*$", "");
-        if (extension == null || extension.equals("")) {
-            extension = TikaParser.extensionFromMime(getMime(url));
-        } else
-            extension = "." + extension;
-
-
+        start = System.nanoTime();
         getLogger().info("Downloading " + url);
-        String fileName = urlContainer.getNextId() + extension;
+        String fileName = urlContainer.getNextId() + getExtension(url);
         Path originalFile = downloadDir.resolve(ORIGINAL_FILES_DIR).resolve(fileName);
 
         try {
             getLogger().info("Saving " + url + " to " + fileName);
             FileUtils.copyURLToFile(url.toURL(), originalFile.toFile(), 30000, 120000);
             donwloadCount++;
+            metrics.addPage(Files.size(originalFile));
         } catch (IOException e) {
             getLogger().log(Level.SEVERE, "Error while downloading " + url, e);
             return;
+        } finally {
+            metrics.record(CrawlStage.FETCH, start);
         }
 
+        start = System.nanoTime();
         Parser parser = parserFactory.createParser(url, originalFile);
         if (!parser.canBeParsed()) {
+            metrics.record(CrawlStage.PARSE, start);
             getLogger().info("Can' be parsed: " + url);
-            if (!FileUtils.deleteQuietly(originalFile.toFile()))
-                getLogger().warning("Couldn't delete " + originalFile);
-            urlContainer.setAsRejected(url);
+            reject(url, originalFile);
             parserRejected++;
             return;
         }
@@ -154,20 +192,23 @@ public class BasicDownloader extends AModule implements Downloader {
         } catch (ParserException e) {
             getLogger().log(Level.SEVERE, "Problem while parsing " + url, e);
             return;
+        } finally {
+            metrics.record(CrawlStage.PARSE, start);
         }
 
         getLogger().info("Language detection " + url);
+        start = System.nanoTime();
         LanguageResult result = languageDetector.detectAll(content).get(0);
+        metrics.record(CrawlStage.DETECT, start);
         if (!result.getLanguage().equals(language)) {
             getLogger().info("Invalid language " + url);
-            if (!FileUtils.deleteQuietly(originalFile.toFile()))
-                getLogger().warning("Couldn't delete " + originalFile);
-            urlContainer.setAsRejected(url);
+            reject(url, originalFile);
             languageRejected++;
             return;
         }
 
         getLogger().info("Saving parsed " + url);
+        start = System.nanoTime();
         Path parsedFile = downloadDir.resolve(PARSED_FILES_DIR).resolve(urlContainer.getNextId() + PARSED_EXTENSION);
         try {
             FileUtils.writeStringToFile(parsedFile.toFile(), content, Charsets.UTF_8);
@@ -175,15 +216,66 @@ public class BasicDownloader extends AModule implements Downloader {
             getLogger().log(Level.SEVERE, "Couldn't save parsed " + url, e);
         }
 
+        metrics.record(CrawlStage.WRITE, start);
+
         getLogger().info("Linking " + url);
+        start = System.nanoTime();
         Set<URI> links = parser.getLinks();
         urlContainer.push(durl, links);
         saveUrls(downloadDir.resolve(LINKS_FILES_DIR).resolve(urlContainer.getNextId() + LINKS_EXTENSION), links);
+        linkGraph.addLinks(urlContainer.getNextId(), links);
+        linkGraph.setId(url, urlContainer.getNextId());
+        metrics.record(CrawlStage.LINKS, start);
 
         urlContainer.setAsParsed(url);
         getLogger().info("Finished " + url);
     }
 
+    /**
+     * Return extension for file downloaded from URL, including dot.
+     * Uses extension from URL path or content type if path has none.
+     *
+     * @param url URL
+     * @return extension or empty string
+     */
+    protected String getExtension(URI url) {
+        String extension = FilenameUtils.getExtension(url.getPath()).replaceAll("\\?.*$", "");
+        if (extension == null || extension.equals("")) {
+            return TikaParser.extensionFromMime(getMime(url));
+        }
+        return "." + extension;
+    }
+
+    /**
+     * Deletes downloaded file and marks URL as rejected
+     *
+     * @param url          URL
+     * @param originalFile Downloaded file
+     */
+    protected void reject(URI url, Path originalFile) {
+        if (!FileUtils.deleteQuietly(originalFile.toFile()))
+            getLogger().warning("Couldn't delete " + originalFile);
+        urlContainer.setAsRejected(url);
+    }
+
+    /**
+     * Sets interval for saving crawl metrics into METRICS_FILE
+     *
+     * @param metricsInterval interval in seconds, 0 disables saving
+     */
+    public void setMetricsInterval(int metricsInterval) {
+        this.metricsInterval = metricsInterval;
+    }
+
+    /**
+     * Return metrics of last crawl
+     *
+     * @return crawl metrics or null if nothing was crawled
+     */
+    public CrawlMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Get content type from URL
      *
@@ -270,6 +362,18 @@ public class BasicDownloader extends AModule implements Downloader {
         }
     }
 
+    /**
+     * Saves graph of links between downloaded documents into LINK_GRAPH_FILE
+     */
+    protected void saveLinkGraph() throws IOException {
+        try {
+            linkGraph.build().save(downloadDir.resolve(LINK_GRAPH_FILE));
+        } catch (IOException e) {
+            getLogger().log(Level.SEVERE, "Couldn't save link graph into file", e);
+            throw e;
+        }
+    }
+
     /**
      * Save set of urls into file. Each URL on one line.
      *
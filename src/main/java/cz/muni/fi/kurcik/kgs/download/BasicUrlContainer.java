@@ -1,14 +1,13 @@
 package cz.muni.fi.kurcik.kgs.download;
 
 import cz.muni.fi.kurcik.kgs.download.containers.UrlContainer;
-import cz.muni.fi.kurcik.kgs.util.UrlIndex;
+import cz.muni.fi.kurcik.kgs.util.UrlCanonicalizer;
 
 import java.net.URI;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * UrlContainer that ignores #hash part of URLs
@@ -16,17 +15,20 @@ import java.util.regex.Pattern;
 public class BasicUrlContainer implements UrlContainer {
     private final Logger logger;
 
-    final protected Pattern hostPattern = Pattern.compile("(([^.]+\\.)?[a-zA-Z]+)$");
-
     protected int maxDepth = 0;
     protected int maxHops = 0;
 
-    final protected HashSet<URI> parsedUrls = new HashSet<>();
+    final protected HashSet<String> parsedUrls = new HashSet<>();
     final protected HashMap<Long, URI> urlsIds = new HashMap<>();
     final protected PriorityQueue<DownloadURL> queue = new PriorityQueue<>();
 
     protected long idCounter = 1;
 
+    /**
+     * Size of queue, kept in volatile field, so it can be read by metrics reporter while crawler changes queue
+     */
+    protected volatile int queueSize = 0;
+
     public BasicUrlContainer() {
         logger = Logger.getLogger(BasicUrlContainer.class.getName());
     }
@@ -62,7 +64,7 @@ public class BasicUrlContainer implements UrlContainer {
      */
     @Override
     public Set<URI> getParsedUrls() {
-        return Collections.unmodifiableSet(parsedUrls);
+        return parsedUrls.stream().map(URI::create).collect(Collectors.toSet());
     }
 
     /**
@@ -73,7 +75,7 @@ public class BasicUrlContainer implements UrlContainer {
      */
     @Override
     public boolean isParsed(URI url) {
-        return parsedUrls.contains(normalizeUrl(url));
+        return parsedUrls.contains(urlKey(url));
     }
 
     /**
@@ -83,10 +85,10 @@ public class BasicUrlContainer implements UrlContainer {
      */
     @Override
     public void setAsParsed(URI url) {
-        URI normalized = normalizeUrl(url);
-        parsedUrls.add(normalized);
-        logger.info("URL " + normalized + " gets ID " + getNextId());
-        urlsIds.put(getNextId(), normalized);
+        String key = urlKey(url);
+        parsedUrls.add(key);
+        logger.info("URL " + key + " gets ID " + getNextId());
+        urlsIds.put(getNextId(), URI.create(key));
         idCounter++;
     }
 
@@ -97,8 +99,7 @@ public class BasicUrlContainer implements UrlContainer {
      */
     @Override
     public void setAsRejected(URI url) {
-        URI normalized = normalizeUrl(url);
-        parsedUrls.add(normalized);
+        parsedUrls.add(urlKey(url));
     }
 
     /**
@@ -139,6 +140,7 @@ public class BasicUrlContainer implements UrlContainer {
         }
         DownloadURL downloadURL = new DownloadURL(url, hops, depth);
         queue.add(downloadURL);
+        queueSize = queue.size();
     }
 
     /**
@@ -178,7 +180,9 @@ public class BasicUrlContainer implements UrlContainer {
     public DownloadURL pop() {
         if (isEmpty())
             return null;
-        return queue.poll();
+        DownloadURL url = queue.poll();
+        queueSize = queue.size();
+        return url;
     }
 
     /**
@@ -192,6 +196,17 @@ public class BasicUrlContainer implements UrlContainer {
         return queue.isEmpty();
     }
 
+    /**
+     * Return number of URLs waiting in queue. May contain URLs that were parsed after they were queued.
+     * Can be called from other thread than the one changing container.
+     *
+     * @return size of queue
+     */
+    @Override
+    public int size() {
+        return queueSize;
+    }
+
     /**
      * Removes parsed and null URLs from queue
      */
@@ -199,16 +214,17 @@ public class BasicUrlContainer implements UrlContainer {
         while (!queue.isEmpty() && (queue.peek() == null || isParsed(queue.peek().getUrl()))) {
             queue.poll();
         }
+        queueSize = queue.size();
     }
 
     /**
-     * Removes fragment from URI
+     * Return canonical key of URL, without fragment
      *
      * @param uri
-     * @return uri without fragment
+     * @return canonical key
      */
-    protected URI normalizeUrl(URI uri) {
-        return UrlIndex.normalize(uri);
+    protected String urlKey(URI uri) {
+        return UrlCanonicalizer.canonicalize(uri);
     }
 
     /**
@@ -218,11 +234,6 @@ public class BasicUrlContainer implements UrlContainer {
      * @return host or empty string
      */
     protected String getHost(URI url) {
-        Matcher matcher = hostPattern.matcher(normalizeUrl(url).getHost());
-
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return "";
+        return UrlCanonicalizer.registrableHost(url);
     }
 }
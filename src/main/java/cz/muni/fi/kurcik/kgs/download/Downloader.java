@@ -17,6 +17,8 @@ public interface Downloader extends Module {
     String PARSED_EXTENSION = ".txt";
     String LINKS_FILES_DIR = "links";
     String LINKS_EXTENSION = ".txt";
+    String LINK_GRAPH_FILE = "links.graph";
+    String METRICS_FILE = "metrics.txt";
 
     /**
      * Downloads all files with supported formats from this domain. Data will be put into folder named after domain.
@@ -26,6 +28,7 @@ public interface Downloader extends Module {
      * Each file have its original content saved into original/ID.extension and parsed content as parsed/ID.txt, where ID is assigned by Downloader.
      * URLs linked from site are put into links/ID.txt file, each URL on separate line.
      * ID and URL pairs are saved into ids.txt in format [ID] [URL], each on separate line.
+     * Links between downloaded documents are saved into LINK_GRAPH_FILE as LinkGraph.
      *
      * @param url   Web page url
      * @param hops  Number of hops to other domains
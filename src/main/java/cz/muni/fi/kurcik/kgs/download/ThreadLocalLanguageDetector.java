@@ -0,0 +1,121 @@
+package cz.muni.fi.kurcik.kgs.download;
+
+import org.apache.tika.language.detect.LanguageDetector;
+import org.apache.tika.language.detect.LanguageResult;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Language detector that can be shared by multiple threads.
+ * Each thread gets its own detector created by factory, settings of this detector are copied into it.
+ * Models are loaded once for each thread, so settings should be changed before detector is used by other threads.
+ *
+ * @author Lukáš Kurčík
+ */
+public class ThreadLocalLanguageDetector extends LanguageDetector {
+
+    protected final ThreadLocal<LanguageDetector> detectors;
+
+    protected Set<String> languages;
+    protected Map<String, Float> priors;
+
+    /**
+     * Creates new detector
+     *
+     * @param factory Factory for detectors used by each thread
+     */
+    public ThreadLocalLanguageDetector(Supplier<LanguageDetector> factory) {
+        detectors = ThreadLocal.withInitial(() -> {
+            LanguageDetector detector = factory.get();
+            try {
+                if (languages == null)
+                    detector.loadModels();
+                else
+                    detector.loadModels(languages);
+                if (priors != null)
+                    detector.setPriors(priors);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            detector.setMixedLanguages(isMixedLanguages());
+            detector.setShortText(isShortText());
+            return detector;
+        });
+    }
+
+    /**
+     * Return detector of current thread
+     *
+     * @return language detector
+     */
+    protected LanguageDetector get() {
+        return detectors.get();
+    }
+
+    @Override
+    public LanguageDetector loadModels() throws IOException {
+        return loadModels(null);
+    }
+
+    @Override
+    public LanguageDetector loadModels(Set<String> languages) throws IOException {
+        if (!Objects.equals(this.languages, languages)) {
+            this.languages = languages;
+            detectors.remove();
+        }
+        return loadCurrent();
+    }
+
+    @Override
+    public boolean hasModel(String language) {
+        return get().hasModel(language);
+    }
+
+    @Override
+    public LanguageDetector setPriors(Map<String, Float> languageProbabilities) throws IOException {
+        this.priors = languageProbabilities;
+        get().setPriors(languageProbabilities);
+        return this;
+    }
+
+    @Override
+    public void reset() {
+        get().reset();
+    }
+
+    @Override
+    public void addText(char[] cbuf, int off, int len) {
+        get().addText(cbuf, off, len);
+    }
+
+    @Override
+    public boolean hasEnoughText() {
+        return get().hasEnoughText();
+    }
+
+    @Override
+    public List<LanguageResult> detectAll() {
+        return get().detectAll();
+    }
+
+    /**
+     * Loads models for current thread if they weren't loaded yet, so problems with models are found before detectors are used
+     *
+     * @return this detector
+     * @throws IOException when models can't be loaded
+     */
+    protected LanguageDetector loadCurrent() throws IOException {
+        try {
+            get();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return this;
+    }
+}
@@ -0,0 +1,171 @@
+package cz.muni.fi.kurcik.kgs.download.batch;
+
+import cz.muni.fi.kurcik.kgs.download.BasicDownloader;
+import cz.muni.fi.kurcik.kgs.download.ThreadLocalLanguageDetector;
+import cz.muni.fi.kurcik.kgs.download.parser.ParserFactory;
+import cz.muni.fi.kurcik.kgs.util.AModule;
+import org.apache.tika.language.detect.LanguageDetector;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Crawls more domains in one process. Domains are crawled concurrently by fixed number of threads,
+ * which is the cap for number of domains crawled at the same time.
+ * Parser factory and language detector are shared by all crawls, detector models are loaded once for each thread.
+ * Data of each domain are saved into directory named after its host, in the same layout as BasicDownloader uses.
+ * Result of each domain is saved into BATCH_FILE in format [directory] [status] [pages] [url].
+ *
+ * @author Lukáš Kurčík
+ */
+public class BatchDownloader extends AModule {
+
+    public static final String BATCH_FILE = "batch.txt";
+
+    protected final String language;
+    protected final ParserFactory parserFactory;
+    protected final LanguageDetector languageDetector;
+    protected final int threads;
+
+    protected int metricsInterval = 0;
+
+    /**
+     * Create new batch downloader
+     *
+     * @param language      The ISO 639-1 language code for language that should be used for parsing
+     * @param parserFactory Factory for parser used for all files, must be thread-safe
+     * @param detectors     Factory for language detectors, each thread gets its own detector
+     * @param threads       Maximal number of domains crawled at the same time
+     */
+    public BatchDownloader(String language, ParserFactory parserFactory, Supplier<LanguageDetector> detectors, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Batch download needs at least one thread");
+        this.language = language;
+        this.parserFactory = parserFactory;
+        this.languageDetector = new ThreadLocalLanguageDetector(detectors);
+        this.threads = threads;
+    }
+
+    /**
+     * Sets interval for saving crawl metrics of each domain
+     *
+     * @param metricsInterval interval in seconds, 0 disables saving
+     */
+    public void setMetricsInterval(int metricsInterval) {
+        this.metricsInterval = metricsInterval;
+    }
+
+    /**
+     * Downloads all domains
+     *
+     * @param seeds Starting URLs of domains
+     * @param hops  Number of hops to other domains
+     * @param depth Depth of file downloading
+     * @throws IOException when batch file can't be saved
+     */
+    public void download(List<URI> seeds, int hops, int depth) throws IOException {
+        Files.createDirectories(downloadDir);
+        List<String> directories = domainDirectories(seeds);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < seeds.size(); i++) {
+                URI seed = seeds.get(i);
+                Path dir = downloadDir.resolve(directories.get(i));
+                results.add(executor.submit(() -> downloadDomain(seed, dir, hops, depth)));
+            }
+
+            List<String> lines = new ArrayList<>();
+            int failed = 0;
+            for (int i = 0; i < seeds.size(); i++) {
+                String status = "ok";
+                long pages = 0;
+                try {
+                    pages = results.get(i).get();
+                } catch (ExecutionException e) {
+                    getLogger().log(Level.SEVERE, "Crawl of " + seeds.get(i) + " failed", e.getCause());
+                    status = "failed";
+                    failed++;
+                }
+                lines.add(directories.get(i) + " " + status + " " + pages + " " + seeds.get(i));
+            }
+            getLogger().info("Crawled domains: " + (seeds.size() - failed) + ", failed: " + failed);
+            Files.write(downloadDir.resolve(BATCH_FILE), lines, Charset.forName("UTF-8"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch download was interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Crawls one domain
+     *
+     * @param seed  Starting URL
+     * @param dir   Directory for domain data
+     * @param hops  Number of hops to other domains
+     * @param depth Depth of file downloading
+     * @return number of downloaded pages
+     * @throws IOException when there is problem with downloading
+     */
+    protected long downloadDomain(URI seed, Path dir, int hops, int depth) throws IOException {
+        BasicDownloader downloader = new BasicDownloader(language, parserFactory, languageDetector);
+        downloader.setLogger(getLogger());
+        downloader.setDownloadDirectory(dir);
+        downloader.setMetricsInterval(metricsInterval);
+        downloader.downloadPage(seed, hops, depth);
+        return downloader.getMetrics().getPages();
+    }
+
+    /**
+     * Return unique directory name for each seed, based on its host
+     *
+     * @param seeds Starting URLs
+     * @return directory names in the same order as seeds
+     */
+    protected List<String> domainDirectories(List<URI> seeds) {
+        Set<String> used = new HashSet<>();
+        List<String> directories = new ArrayList<>();
+        for (URI seed : seeds) {
+            String base = seed.getHost() == null ? "domain" : seed.getHost().toLowerCase().replaceAll("[^a-z0-9.-]", "_");
+            String name = base;
+            for (int i = 2; !used.add(name); i++)
+                name = base + "-" + i;
+            directories.add(name);
+        }
+        return directories;
+    }
+
+    /**
+     * Loads starting URLs from file, one URL on each line. Empty lines and lines starting with # are skipped.
+     *
+     * @param file File with URLs
+     * @return list of URLs
+     * @throws IOException when file can't be read
+     */
+    public static List<URI> loadSeeds(Path file) throws IOException {
+        List<URI> seeds = new ArrayList<>();
+        for (String line : Files.readAllLines(file, Charset.forName("UTF-8"))) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            seeds.add(URI.create(line));
+        }
+        return seeds;
+    }
+}
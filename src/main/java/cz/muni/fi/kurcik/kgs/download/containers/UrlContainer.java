@@ -96,6 +96,12 @@ public interface UrlContainer {
      */
     boolean isEmpty();
 
+    /**
+     * Return number of URLs waiting in queue
+     * @return size of queue
+     */
+    int size();
+
     /**
      * Return new URL that should be parsed
      *
@@ -0,0 +1,138 @@
+package cz.muni.fi.kurcik.kgs.download.distributed;
+
+import cz.muni.fi.kurcik.kgs.download.Downloader;
+import cz.muni.fi.kurcik.kgs.util.LinkGraphBuilder;
+import cz.muni.fi.kurcik.kgs.util.UrlIndex;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Joins data of all workers of distributed crawl into standard Downloader layout.
+ * Documents get new globally unique IDs, ordered by worker and then by ID assigned by worker.
+ * Files of workers are moved, not copied.
+ *
+ * @author Lukáš Kurčík
+ */
+public class CrawlMerger {
+
+    protected final Path sharedDir;
+    protected final int workers;
+    protected final Logger logger;
+
+    /**
+     * Creates merger
+     *
+     * @param sharedDir Directory shared by all workers
+     * @param workers   Number of workers
+     * @param logger    Logger
+     */
+    public CrawlMerger(Path sharedDir, int workers, Logger logger) {
+        this.sharedDir = sharedDir;
+        this.workers = workers;
+        this.logger = logger;
+    }
+
+    /**
+     * Merges data of all workers into shared directory
+     *
+     * @throws IOException when there is problem with file IO
+     */
+    public void merge() throws IOException {
+        for (String folder : new String[]{Downloader.PARSED_FILES_DIR, Downloader.ORIGINAL_FILES_DIR, Downloader.LINKS_FILES_DIR})
+            Files.createDirectories(sharedDir.resolve(folder));
+
+        Map<Long, URI> idToUrl = new HashMap<>();
+        LinkGraphBuilder linkGraph = new LinkGraphBuilder();
+        Map<Long, List<URI>> links = new TreeMap<>();
+        long nextId = 1;
+
+        for (int worker = 0; worker < workers; worker++) {
+            Path workerDir = DistributedDownloader.workerDirectory(sharedDir, worker);
+            Path ids = workerDir.resolve("ids.txt");
+            if (!Files.exists(ids)) {
+                logger.warning("Worker " + worker + " has no data");
+                continue;
+            }
+            logger.info("Merging data of worker " + worker);
+            UrlIndex workerIndex = new UrlIndex(ids);
+            Map<Long, File> originals = listOriginals(workerDir);
+            for (long id = 1; workerIndex.getUrl(id) != null; id++, nextId++) {
+                URI url = workerIndex.getUrl(id);
+                idToUrl.put(nextId, url);
+                linkGraph.setId(url, nextId);
+
+                move(workerDir.resolve(Downloader.PARSED_FILES_DIR).resolve(id + Downloader.PARSED_EXTENSION),
+                        sharedDir.resolve(Downloader.PARSED_FILES_DIR).resolve(nextId + Downloader.PARSED_EXTENSION));
+                Path workerLinks = workerDir.resolve(Downloader.LINKS_FILES_DIR).resolve(id + Downloader.LINKS_EXTENSION);
+                if (Files.exists(workerLinks)) {
+                    links.put(nextId, Files.readAllLines(workerLinks, Charset.forName("UTF-8")).stream()
+                            .filter(line -> !line.isEmpty())
+                            .map(URI::create)
+                            .collect(Collectors.toList()));
+                }
+                move(workerLinks, sharedDir.resolve(Downloader.LINKS_FILES_DIR).resolve(nextId + Downloader.LINKS_EXTENSION));
+                File original = originals.get(id);
+                if (original != null) {
+                    String extension = FilenameUtils.getExtension(original.getName());
+                    move(original.toPath(), sharedDir.resolve(Downloader.ORIGINAL_FILES_DIR)
+                            .resolve(nextId + (extension.isEmpty() ? "" : "." + extension)));
+                }
+            }
+        }
+
+        links.forEach(linkGraph::addLinks);
+
+        logger.info("Saving merged ID -> URL pairs");
+        new UrlIndex(idToUrl).save(sharedDir.resolve("ids.txt"));
+        logger.info("Saving merged link graph");
+        linkGraph.build().save(sharedDir.resolve(Downloader.LINK_GRAPH_FILE));
+        logger.info("Merged " + (nextId - 1) + " documents from " + workers + " workers");
+    }
+
+    /**
+     * Return original files of worker by their ID
+     *
+     * @param workerDir Directory of worker
+     * @return ID to file map
+     */
+    protected Map<Long, File> listOriginals(Path workerDir) {
+        Map<Long, File> originals = new HashMap<>();
+        File[] files = workerDir.resolve(Downloader.ORIGINAL_FILES_DIR).toFile().listFiles();
+        if (files == null)
+            return originals;
+        for (File file : files) {
+            try {
+                originals.put(Long.parseLong(FilenameUtils.getBaseName(file.getName())), file);
+            } catch (NumberFormatException e) {
+                logger.log(Level.WARNING, "Unknown original file " + file, e);
+            }
+        }
+        return originals;
+    }
+
+    /**
+     * Moves file if it exists
+     *
+     * @param from Source path
+     * @param to   Target path
+     * @throws IOException when file can't be moved
+     */
+    protected void move(Path from, Path to) throws IOException {
+        if (Files.exists(from))
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,127 @@
+package cz.muni.fi.kurcik.kgs.download.distributed;
+
+import cz.muni.fi.kurcik.kgs.download.BasicDownloader;
+import cz.muni.fi.kurcik.kgs.download.DownloadURL;
+import cz.muni.fi.kurcik.kgs.download.containers.UrlContainer;
+import cz.muni.fi.kurcik.kgs.download.parser.ParserFactory;
+import org.apache.tika.language.detect.LanguageDetector;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Downloader working as one worker of distributed crawl.
+ * Downloads only URLs with hosts assigned to this worker and exchanges other URLs with workers through FileCoordinator.
+ * Data are saved into WORKERS_DIR/[worker] inside shared directory, in the same layout as BasicDownloader uses.
+ * Results of all workers can be joined by CrawlMerger.
+ *
+ * @author Lukáš Kurčík
+ */
+public class DistributedDownloader extends BasicDownloader {
+
+    public static final String WORKERS_DIR = "workers";
+
+    protected static final int FLUSH_INTERVAL = 20;
+    protected static final long POLL_INTERVAL = 500;
+
+    protected final int worker;
+    protected final HostPartitioner partitioner;
+
+    protected Path sharedDir;
+    protected FileCoordinator coordinator;
+
+    /**
+     * Create new worker
+     *
+     * @param language         The ISO 639-1 language code for language that should be used for parsing
+     * @param parserFactory    Factory for parser used for all files
+     * @param languageDetector Language detector
+     * @param worker           Index of this worker
+     * @param workers          Number of all workers
+     */
+    public DistributedDownloader(String language, ParserFactory parserFactory, LanguageDetector languageDetector, int worker, int workers) throws IOException {
+        super(language, parserFactory, languageDetector);
+        if (worker < 0 || worker >= workers)
+            throw new IllegalArgumentException("Worker index must be from 0 to " + (workers - 1));
+        this.worker = worker;
+        this.partitioner = new HostPartitioner(workers);
+    }
+
+    /**
+     * Sets directory shared by all workers. This worker will put its data into WORKERS_DIR/[worker]
+     *
+     * @param dir Shared directory
+     */
+    @Override
+    public void setDownloadDirectory(Path dir) {
+        sharedDir = dir;
+        super.setDownloadDirectory(workerDirectory(dir, worker));
+    }
+
+    /**
+     * Return shared directory
+     *
+     * @return directory shared by all workers
+     */
+    @Override
+    public Path getDownloadDirectory() {
+        return sharedDir;
+    }
+
+    /**
+     * Return directory with data of worker
+     *
+     * @param sharedDir Shared directory
+     * @param worker    Worker index
+     * @return worker directory
+     */
+    public static Path workerDirectory(Path sharedDir, int worker) {
+        return sharedDir.resolve(WORKERS_DIR).resolve(String.valueOf(worker));
+    }
+
+    /**
+     * Creates container that sends URLs of other workers to coordinator
+     *
+     * @return empty url container
+     */
+    @Override
+    protected UrlContainer createUrlContainer() {
+        return new PartitionedUrlContainer(partitioner, worker, getLogger());
+    }
+
+    /**
+     * Parses URLs of this worker and exchanges URLs with other workers until whole crawl is finished
+     *
+     * @throws IOException when there is problem with coordinator
+     */
+    @Override
+    protected void crawl() throws IOException {
+        coordinator = new FileCoordinator(sharedDir, worker, partitioner.getWorkers());
+        PartitionedUrlContainer container = (PartitionedUrlContainer) urlContainer;
+        int parsed = 0;
+
+        while (true) {
+            for (DownloadURL received : coordinator.receive())
+                container.pushReceived(received);
+
+            if (!container.isEmpty()) {
+                parse(container.pop());
+                if (++parsed % FLUSH_INTERVAL == 0)
+                    container.flush(coordinator);
+                continue;
+            }
+
+            container.flush(coordinator);
+            coordinator.publishStatus(true);
+            if (coordinator.isFinished())
+                break;
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Worker " + worker + " was interrupted", e);
+            }
+        }
+        getLogger().info("Worker " + worker + " finished");
+    }
+}
@@ -0,0 +1,182 @@
+package cz.muni.fi.kurcik.kgs.download.distributed;
+
+import cz.muni.fi.kurcik.kgs.download.DownloadURL;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Coordinator for distributed crawl using shared directory.
+ * <p>
+ * Each worker has inbox directory COORDINATOR_DIR/inbox/[worker] where other workers put files with URLs.
+ * Each line of message file is in format [depth] [hops] [URL]. Files are written into temporary directory and then
+ * atomically moved into inbox.
+ * <p>
+ * Each worker publishes its state into COORDINATOR_DIR/status/[worker].txt in format [idle] [sent] [received], where
+ * sent and received are numbers of messages. Crawl is finished when all workers are idle and all sent messages were
+ * received, in two consecutive checks.
+ *
+ * @author Lukáš Kurčík
+ */
+public class FileCoordinator {
+
+    public static final String COORDINATOR_DIR = "coordinator";
+    protected static final String INBOX_DIR = "inbox";
+    protected static final String STATUS_DIR = "status";
+    protected static final String TMP_DIR = "tmp";
+    protected static final String MESSAGE_EXTENSION = ".msg";
+
+    protected final Path dir;
+    protected final int worker;
+    protected final int workers;
+
+    protected long sent = 0;
+    protected long received = 0;
+
+    /**
+     * Creates coordinator for worker
+     *
+     * @param sharedDir Directory shared by all workers
+     * @param worker    Index of this worker
+     * @param workers   Number of workers
+     * @throws IOException when coordinator directories can't be created
+     */
+    public FileCoordinator(Path sharedDir, int worker, int workers) throws IOException {
+        this.dir = sharedDir.resolve(COORDINATOR_DIR);
+        this.worker = worker;
+        this.workers = workers;
+        Files.createDirectories(dir.resolve(TMP_DIR));
+        Files.createDirectories(dir.resolve(STATUS_DIR));
+        for (int i = 0; i < workers; i++)
+            Files.createDirectories(dir.resolve(INBOX_DIR).resolve(String.valueOf(i)));
+    }
+
+    /**
+     * Removes all coordinator data from shared directory. Should be called before workers are started.
+     *
+     * @param sharedDir Directory shared by all workers
+     * @throws IOException when files can't be deleted
+     */
+    public static void clean(Path sharedDir) throws IOException {
+        Path dir = sharedDir.resolve(COORDINATOR_DIR);
+        if (!Files.exists(dir))
+            return;
+        List<Path> paths = Files.walk(dir).sorted(Collections.reverseOrder()).collect(Collectors.toList());
+        for (Path path : paths)
+            Files.delete(path);
+    }
+
+    /**
+     * Sends URLs to other worker
+     *
+     * @param target Index of target worker
+     * @param urls   URLs for target worker
+     * @throws IOException when message can't be written
+     */
+    public void send(int target, Collection<DownloadURL> urls) throws IOException {
+        if (urls.isEmpty())
+            return;
+        List<String> lines = urls.stream()
+                .map(url -> url.getDepth() + " " + url.getHops() + " " + url.getUrl())
+                .collect(Collectors.toList());
+        String name = worker + "-" + sent + MESSAGE_EXTENSION;
+        Path tmp = dir.resolve(TMP_DIR).resolve(target + "-" + name);
+        Files.write(tmp, lines, Charset.forName("UTF-8"));
+        Files.move(tmp, dir.resolve(INBOX_DIR).resolve(String.valueOf(target)).resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        sent++;
+    }
+
+    /**
+     * Takes all URLs that other workers sent to this worker. Marks this worker as busy if there were any.
+     *
+     * @return list of received URLs
+     * @throws IOException when messages can't be read
+     */
+    public List<DownloadURL> receive() throws IOException {
+        File[] messages = dir.resolve(INBOX_DIR).resolve(String.valueOf(worker)).toFile()
+                .listFiles((File d, String name) -> name.endsWith(MESSAGE_EXTENSION));
+        if (messages == null || messages.length == 0)
+            return Collections.emptyList();
+
+        List<DownloadURL> result = new ArrayList<>();
+        for (File message : messages) {
+            for (String line : Files.readAllLines(message.toPath(), Charset.forName("UTF-8"))) {
+                if (line.isEmpty())
+                    continue;
+                String[] parts = line.split(" ", 3);
+                result.add(new DownloadURL(URI.create(parts[2]), Integer.parseInt(parts[1]), Integer.parseInt(parts[0])));
+            }
+            Files.delete(message.toPath());
+            received++;
+        }
+        publishStatus(false);
+        return result;
+    }
+
+    /**
+     * Publishes state of this worker
+     *
+     * @param idle true if worker has nothing to do
+     * @throws IOException when status can't be written
+     */
+    public void publishStatus(boolean idle) throws IOException {
+        Path tmp = dir.resolve(TMP_DIR).resolve("status-" + worker);
+        Files.write(tmp, Collections.singletonList((idle ? 1 : 0) + " " + sent + " " + received), Charset.forName("UTF-8"));
+        Files.move(tmp, dir.resolve(STATUS_DIR).resolve(worker + ".txt"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Check if whole crawl is finished
+     *
+     * @return true if all workers are idle and there are no messages between them
+     * @throws IOException when statuses can't be read
+     */
+    public boolean isFinished() throws IOException {
+        long[] first = readStatuses();
+        if (first == null)
+            return false;
+        long[] second = readStatuses();
+        return Arrays.equals(first, second);
+    }
+
+    /**
+     * Reads statuses of all workers
+     *
+     * @return array with all statuses or null if some worker is busy, didn't publish status or messages are pending
+     * @throws IOException when statuses can't be read
+     */
+    protected long[] readStatuses() throws IOException {
+        long[] statuses = new long[workers * 2];
+        long totalSent = 0, totalReceived = 0;
+        for (int i = 0; i < workers; i++) {
+            List<String> lines;
+            try {
+                lines = Files.readAllLines(dir.resolve(STATUS_DIR).resolve(i + ".txt"), Charset.forName("UTF-8"));
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+            if (lines.isEmpty())
+                return null;
+            String[] parts = lines.get(0).split(" ");
+            if (!parts[0].equals("1"))
+                return null;
+            statuses[2 * i] = Long.parseLong(parts[1]);
+            statuses[2 * i + 1] = Long.parseLong(parts[2]);
+            totalSent += statuses[2 * i];
+            totalReceived += statuses[2 * i + 1];
+        }
+        return totalSent == totalReceived ? statuses : null;
+    }
+}
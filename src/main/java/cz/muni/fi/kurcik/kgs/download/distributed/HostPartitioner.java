@@ -0,0 +1,46 @@
+package cz.muni.fi.kurcik.kgs.download.distributed;
+
+import java.net.URI;
+
+/**
+ * Assigns URLs to crawl workers based on hash of their host
+ *
+ * @author Lukáš Kurčík
+ */
+public class HostPartitioner {
+
+    protected final int workers;
+
+    /**
+     * Creates new partitioner
+     *
+     * @param workers Number of workers
+     */
+    public HostPartitioner(int workers) {
+        if (workers < 1)
+            throw new IllegalArgumentException("Number of workers must be positive");
+        this.workers = workers;
+    }
+
+    /**
+     * Return worker responsible for URL
+     *
+     * @param url URL
+     * @return worker index from 0 to workers - 1
+     */
+    public int partition(URI url) {
+        String host = url.getHost();
+        if (host == null)
+            return 0;
+        return Math.floorMod(host.toLowerCase().hashCode(), workers);
+    }
+
+    /**
+     * Return number of workers
+     *
+     * @return number of workers
+     */
+    public int getWorkers() {
+        return workers;
+    }
+}
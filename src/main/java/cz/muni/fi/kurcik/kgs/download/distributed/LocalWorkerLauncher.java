@@ -0,0 +1,82 @@
+package cz.muni.fi.kurcik.kgs.download.distributed;
+
+import cz.muni.fi.kurcik.kgs.Main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Starts workers of distributed crawl as local processes of this application and waits for them
+ *
+ * @author Lukáš Kurčík
+ */
+public class LocalWorkerLauncher {
+
+    protected final Path sharedDir;
+    protected final int workers;
+    protected final Logger logger;
+
+    /**
+     * Creates launcher
+     *
+     * @param sharedDir Directory shared by all workers
+     * @param workers   Number of workers
+     * @param logger    Logger
+     */
+    public LocalWorkerLauncher(Path sharedDir, int workers, Logger logger) {
+        this.sharedDir = sharedDir;
+        this.workers = workers;
+        this.logger = logger;
+    }
+
+    /**
+     * Runs all workers and waits for them. Each worker gets provided arguments and -worker [index].
+     *
+     * @param arguments Command line arguments for workers
+     * @throws IOException when some worker can't be started or fails
+     */
+    public void run(List<String> arguments) throws IOException {
+        FileCoordinator.clean(sharedDir);
+
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        try {
+            for (int worker = 0; worker < workers; worker++) {
+                List<String> command = new ArrayList<>();
+                command.add(java);
+                if (System.getProperty("java.library.path") != null)
+                    command.add("-Djava.library.path=" + System.getProperty("java.library.path"));
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(Main.class.getName());
+                command.addAll(arguments);
+                command.add("-worker");
+                command.add(String.valueOf(worker));
+
+                logger.info("Starting worker " + worker);
+                File log = sharedDir.resolve("worker-" + worker + ".log").toFile();
+                processes.add(new ProcessBuilder(command)
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+                        .start());
+            }
+
+            for (int worker = 0; worker < workers; worker++) {
+                int status = processes.get(worker).waitFor();
+                if (status != 0)
+                    throw new IOException("Worker " + worker + " failed with exit code " + status);
+                logger.info("Worker " + worker + " finished");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for workers", e);
+        } finally {
+            processes.forEach(Process::destroy);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package cz.muni.fi.kurcik.kgs.download.distributed;
+
+import cz.muni.fi.kurcik.kgs.download.BasicUrlContainer;
+import cz.muni.fi.kurcik.kgs.download.DownloadURL;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * UrlContainer for one worker of distributed crawl.
+ * URLs that belong to other workers are buffered and sent through coordinator instead of being queued.
+ *
+ * @author Lukáš Kurčík
+ */
+public class PartitionedUrlContainer extends BasicUrlContainer {
+
+    protected final HostPartitioner partitioner;
+    protected final int worker;
+
+    /**
+     * URLs waiting to be sent for each worker
+     */
+    protected final Map<Integer, List<DownloadURL>> outgoing = new HashMap<>();
+
+    /**
+     * Smallest depth with which URL was already sent to other worker
+     */
+    protected final Map<String, Integer> forwarded = new HashMap<>();
+
+    /**
+     * Creates container
+     *
+     * @param partitioner Partitioner of URLs
+     * @param worker      Index of this worker
+     * @param logger      Logger
+     */
+    public PartitionedUrlContainer(HostPartitioner partitioner, int worker, Logger logger) {
+        super(logger);
+        this.partitioner = partitioner;
+        this.worker = worker;
+    }
+
+    /**
+     * Adds new url to queue if it belongs to this worker, otherwise prepares it for sending to its worker
+     *
+     * @param url   Url
+     * @param depth Actual depth for this URL
+     * @param hops  Actual number of hops for this URL
+     */
+    @Override
+    public void push(URI url, int depth, int hops) {
+        int target = partitioner.partition(url);
+        if (target == worker) {
+            super.push(url, depth, hops);
+            return;
+        }
+        if (depth > maxDepth || hops > maxHops)
+            return;
+
+        String key = urlKey(url);
+        Integer sentDepth = forwarded.get(key);
+        if (sentDepth != null && sentDepth <= depth)
+            return;
+        forwarded.put(key, depth);
+        outgoing.computeIfAbsent(target, k -> new ArrayList<>()).add(new DownloadURL(url, hops, depth));
+    }
+
+    /**
+     * Adds URL received from other worker into queue
+     *
+     * @param url Received URL
+     */
+    public void pushReceived(DownloadURL url) {
+        super.push(url.getUrl(), url.getDepth(), url.getHops());
+    }
+
+    /**
+     * Sends all buffered URLs to their workers
+     *
+     * @param coordinator Coordinator
+     * @throws IOException when URLs can't be sent
+     */
+    public void flush(FileCoordinator coordinator) throws IOException {
+        for (Map.Entry<Integer, List<DownloadURL>> entry : outgoing.entrySet()) {
+            coordinator.send(entry.getKey(), entry.getValue());
+        }
+        outgoing.clear();
+    }
+
+    /**
+     * Return number of URLs waiting for sending
+     *
+     * @return number of buffered URLs
+     */
+    public int getOutgoingCount() {
+        return outgoing.values().stream().mapToInt(List::size).sum();
+    }
+}
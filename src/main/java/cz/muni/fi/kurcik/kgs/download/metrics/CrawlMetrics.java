@@ -0,0 +1,138 @@
+package cz.muni.fi.kurcik.kgs.download.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Metrics collected while crawling: latencies of each stage, throughput and size of frontier
+ *
+ * @author Lukáš Kurčík
+ */
+public class CrawlMetrics {
+
+    protected final Map<CrawlStage, LatencyHistogram> latencies = new EnumMap<>(CrawlStage.class);
+    protected final LongAdder bytes = new LongAdder();
+    protected final LongAdder pages = new LongAdder();
+    protected final long started = System.nanoTime();
+    protected final Map<String, Supplier<?>> gauges = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    protected IntSupplier frontier = () -> 0;
+
+    /**
+     * Creates new empty metrics
+     */
+    public CrawlMetrics() {
+        for (CrawlStage stage : CrawlStage.values())
+            latencies.put(stage, new LatencyHistogram());
+    }
+
+    /**
+     * Records latency of stage that started at specified time
+     *
+     * @param stage Crawl stage
+     * @param start Value of System.nanoTime() at the start of stage
+     */
+    public void record(CrawlStage stage, long start) {
+        latencies.get(stage).record(System.nanoTime() - start);
+    }
+
+    /**
+     * Records downloaded page
+     *
+     * @param size Size of page in bytes
+     */
+    public void addPage(long size) {
+        pages.increment();
+        bytes.add(size);
+    }
+
+    /**
+     * Sets source for actual size of frontier
+     *
+     * @param frontier Supplier of number of queued URLs
+     */
+    public void setFrontier(IntSupplier frontier) {
+        this.frontier = frontier;
+    }
+
+    /**
+     * Adds named value that is included in snapshots, e.g. state of downloader parts
+     *
+     * @param name  Name of value
+     * @param gauge Supplier of actual value
+     */
+    public void addGauge(String name, Supplier<?> gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Return latency histogram for stage
+     *
+     * @param stage Crawl stage
+     * @return histogram
+     */
+    public LatencyHistogram getLatency(CrawlStage stage) {
+        return latencies.get(stage);
+    }
+
+    /**
+     * Return number of downloaded pages
+     *
+     * @return number of pages
+     */
+    public long getPages() {
+        return pages.sum();
+    }
+
+    /**
+     * Return number of downloaded bytes
+     *
+     * @return number of bytes
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * Return actual size of frontier
+     *
+     * @return number of queued URLs
+     */
+    public int getFrontierSize() {
+        return frontier.getAsInt();
+    }
+
+    /**
+     * Return time since metrics were created
+     *
+     * @return elapsed time in seconds
+     */
+    public double getElapsed() {
+        return (System.nanoTime() - started) / 1e9;
+    }
+
+    /**
+     * Return snapshot of all metrics as one line
+     *
+     * @return text snapshot
+     */
+    public String snapshot() {
+        double elapsed = getElapsed();
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("elapsed=%.1fs pages=%d bytes=%d pages/s=%.2f bytes/s=%.0f frontier=%d",
+                elapsed, getPages(), getBytes(), getPages() / elapsed, getBytes() / elapsed, getFrontierSize()));
+        for (CrawlStage stage : CrawlStage.values()) {
+            builder.append(" ").append(stage.name().toLowerCase()).append("[").append(latencies.get(stage)).append("]");
+        }
+        synchronized (gauges) {
+            for (Map.Entry<String, Supplier<?>> gauge : gauges.entrySet())
+                builder.append(" ").append(gauge.getKey()).append("[").append(gauge.getValue().get()).append("]");
+        }
+        return builder.toString();
+    }
+}
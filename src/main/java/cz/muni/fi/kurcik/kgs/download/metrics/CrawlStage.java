@@ -0,0 +1,33 @@
+package cz.muni.fi.kurcik.kgs.download.metrics;
+
+/**
+ * Stages of processing one URL by downloader
+ *
+ * @author Lukáš Kurčík
+ */
+public enum CrawlStage {
+    /**
+     * Resolving redirects of URL
+     */
+    REDIRECT,
+    /**
+     * Downloading content of URL
+     */
+    FETCH,
+    /**
+     * Parsing downloaded file
+     */
+    PARSE,
+    /**
+     * Detecting language of parsed content
+     */
+    DETECT,
+    /**
+     * Saving parsed content
+     */
+    WRITE,
+    /**
+     * Extracting links from parsed file, queueing and saving them
+     */
+    LINKS;
+}
@@ -0,0 +1,103 @@
+package cz.muni.fi.kurcik.kgs.download.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of latencies with exponential buckets.
+ * Bucket n contains latencies from 2^n to 2^(n+1) microseconds, so percentiles are precise to a factor of two.
+ *
+ * @author Lukáš Kurčík
+ */
+public class LatencyHistogram {
+
+    protected static final int BUCKETS = 40;
+
+    protected final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    protected final LongAdder count = new LongAdder();
+    protected final LongAdder total = new LongAdder();
+    protected final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one latency
+     *
+     * @param nanos Latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(nanos / 1000, 0);
+        int bucket = Math.min(63 - Long.numberOfLeadingZeros(micros | 1), BUCKETS - 1);
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        total.add(micros);
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Return number of recorded latencies
+     *
+     * @return number of records
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Return sum of all recorded latencies
+     *
+     * @return sum in milliseconds
+     */
+    public double getTotal() {
+        return total.sum() / 1000.0;
+    }
+
+    /**
+     * Return mean latency
+     *
+     * @return mean in milliseconds
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : total.sum() / 1000.0 / n;
+    }
+
+    /**
+     * Return maximal recorded latency
+     *
+     * @return max in milliseconds
+     */
+    public double getMax() {
+        return max.get() / 1000.0;
+    }
+
+    /**
+     * Return upper bound of bucket containing percentile
+     *
+     * @param percentile Percentile from 0 to 1
+     * @return latency in milliseconds
+     */
+    public double getPercentile(double percentile) {
+        long n = count.sum();
+        if (n == 0)
+            return 0;
+        long wanted = (long) Math.ceil(percentile * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= wanted)
+                return Math.min((2L << i) / 1000.0, getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Return text summary of histogram
+     *
+     * @return summary
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.2fms p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+                getCount(), getMean(), getPercentile(0.5), getPercentile(0.95), getPercentile(0.99), getMax());
+    }
+}
@@ -0,0 +1,81 @@
+package cz.muni.fi.kurcik.kgs.download.metrics;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically appends snapshots of crawl metrics into file
+ *
+ * @author Lukáš Kurčík
+ */
+public class MetricsReporter implements AutoCloseable {
+
+    protected final CrawlMetrics metrics;
+    protected final Path file;
+    protected final Logger logger;
+    protected final ScheduledExecutorService executor;
+
+    protected long lastPages = 0;
+    protected long lastBytes = 0;
+    protected long lastTime = System.nanoTime();
+
+    /**
+     * Starts reporting metrics
+     *
+     * @param metrics  Crawl metrics
+     * @param file     File for snapshots
+     * @param interval Interval between snapshots in seconds
+     * @param logger   Logger
+     */
+    public MetricsReporter(CrawlMetrics metrics, Path file, int interval, Logger logger) {
+        this.metrics = metrics;
+        this.file = file;
+        this.logger = logger;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kgs-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::report, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Appends actual snapshot into file. Contains also throughput since previous snapshot.
+     */
+    public synchronized void report() {
+        long now = System.nanoTime();
+        long pages = metrics.getPages();
+        long bytes = metrics.getBytes();
+        double seconds = Math.max((now - lastTime) / 1e9, 1e-9);
+        String line = String.format("%s recent_pages/s=%.2f recent_bytes/s=%.0f",
+                metrics.snapshot(), (pages - lastPages) / seconds, (bytes - lastBytes) / seconds);
+        lastTime = now;
+        lastPages = pages;
+        lastBytes = bytes;
+
+        try {
+            Files.write(file, Collections.singletonList(line), Charset.forName("UTF-8"),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Couldn't save metrics into " + file, e);
+        }
+    }
+
+    /**
+     * Stops reporting and saves final snapshot
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        report();
+    }
+}
@@ -97,14 +97,14 @@ public class TikaParser implements Parser {
         LinkContentHandler linkHandler = new LinkContentHandler();
         try {
             parse(linkHandler);
+            // Relative links are resolved against root of the site, root is shared for all links
+            URI root = url.resolve("/");
             return linkHandler.getLinks().stream().map(link -> {
                 try {
                     URI linkUri = URI.create(link.getUri());
-                    if (linkUri.isAbsolute())
+                    if (linkUri.isAbsolute() || linkUri.getRawPath() == null || linkUri.getRawPath().startsWith("/"))
                         return url.resolve(linkUri);
-                    else {
-                        return url.resolve((!linkUri.toString().startsWith("/") ? "/" : "") + linkUri);
-                    }
+                    return root.resolve(linkUri);
                 } catch (IllegalArgumentException e) {
                     return url;
                 }
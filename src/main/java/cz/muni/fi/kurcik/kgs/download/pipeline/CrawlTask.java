@@ -0,0 +1,60 @@
+package cz.muni.fi.kurcik.kgs.download.pipeline;
+
+import cz.muni.fi.kurcik.kgs.download.DownloadURL;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * One URL passing through stages of crawl pipeline
+ *
+ * @author Lukáš Kurčík
+ */
+public class CrawlTask {
+    protected final DownloadURL url;
+    protected final String key;
+
+    protected String extension;
+    protected Path file;
+    protected String content;
+    protected Set<URI> links;
+
+    /**
+     * Creates task for URL
+     *
+     * @param url URL from container
+     * @param key Canonical key of URL
+     */
+    public CrawlTask(DownloadURL url, String key) {
+        this.url = url;
+        this.key = key;
+    }
+
+    /**
+     * Return URL from container
+     *
+     * @return download URL
+     */
+    public DownloadURL getDownloadUrl() {
+        return url;
+    }
+
+    /**
+     * Return URL of task
+     *
+     * @return URL
+     */
+    public URI getUrl() {
+        return url.getUrl();
+    }
+
+    /**
+     * Return canonical key of URL
+     *
+     * @return canonical key
+     */
+    public String getKey() {
+        return key;
+    }
+}
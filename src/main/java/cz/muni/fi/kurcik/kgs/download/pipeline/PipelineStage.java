@@ -0,0 +1,231 @@
+package cz.muni.fi.kurcik.kgs.download.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stage of pipeline with its own pool of worker threads and bounded input queue.
+ * Workers take items from queue, process them and put results into next stage. When next stage is full, workers wait,
+ * so slow stages slow down stages before them instead of filling memory.
+ * Items that are dropped or leave the last stage are passed to finished callback.
+ *
+ * @param <T> Type of processed items
+ * @author Lukáš Kurčík
+ */
+public class PipelineStage<T> {
+    protected final String name;
+    protected final int threads;
+    protected final BlockingQueue<T> queue;
+    protected final StageTask<T> task;
+
+    protected final List<Thread> workers = new ArrayList<>();
+    protected final LongAdder processed = new LongAdder();
+    protected final LongAdder busy = new LongAdder();
+    protected final LongAdder blocked = new LongAdder();
+
+    protected PipelineStage<T> next;
+    protected Consumer<T> finished = item -> {
+    };
+    protected Logger logger = Logger.getLogger(PipelineStage.class.getName());
+
+    protected long started;
+    protected long stopped;
+
+    /**
+     * Creates new stage
+     *
+     * @param name     Name of stage, used for threads and statistics
+     * @param threads  Number of worker threads
+     * @param capacity Capacity of input queue
+     * @param task     Work done for each item
+     */
+    public PipelineStage(String name, int threads, int capacity, StageTask<T> task) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Stage " + name + " needs at least one thread");
+        this.name = name;
+        this.threads = threads;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.task = task;
+    }
+
+    /**
+     * Sets stage that gets processed items
+     *
+     * @param next Next stage or null for last stage
+     */
+    public void setNext(PipelineStage<T> next) {
+        this.next = next;
+    }
+
+    /**
+     * Sets callback for items that leave pipeline in this stage
+     *
+     * @param finished Callback
+     */
+    public void setFinished(Consumer<T> finished) {
+        this.finished = finished;
+    }
+
+    /**
+     * Sets logger for unexpected errors
+     *
+     * @param logger Logger
+     */
+    public void setLogger(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Puts item into stage queue, waits while queue is full
+     *
+     * @param item Item
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public void put(T item) throws InterruptedException {
+        queue.put(item);
+    }
+
+    /**
+     * Starts worker threads
+     */
+    public void start() {
+        started = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(this::work, "kgs-" + name + "-" + i);
+            thread.setDaemon(true);
+            workers.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops worker threads. Items still waiting in queue are not processed.
+     *
+     * @throws InterruptedException when interrupted while waiting for workers
+     */
+    public void stop() throws InterruptedException {
+        for (Thread thread : workers)
+            thread.interrupt();
+        for (Thread thread : workers)
+            thread.join();
+        stopped = System.nanoTime();
+    }
+
+    /**
+     * Worker loop
+     */
+    protected void work() {
+        while (true) {
+            T item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            T result = null;
+            try {
+                result = task.process(item);
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Unexpected error in " + name + " stage", e);
+            }
+            busy.add(System.nanoTime() - start);
+            processed.increment();
+
+            if (result == null || next == null) {
+                finished.accept(item);
+                continue;
+            }
+
+            start = System.nanoTime();
+            try {
+                next.put(result);
+            } catch (InterruptedException e) {
+                finished.accept(item);
+                return;
+            } finally {
+                blocked.add(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Return name of stage
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return number of worker threads
+     *
+     * @return number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Return number of processed items
+     *
+     * @return number of items
+     */
+    public long getProcessed() {
+        return processed.sum();
+    }
+
+    /**
+     * Return number of items waiting in queue
+     *
+     * @return queue size
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Return part of worker time spent processing items
+     *
+     * @return utilization from 0 to 1
+     */
+    public double getUtilization() {
+        return ratio(busy.sum());
+    }
+
+    /**
+     * Return part of worker time spent waiting for full next stage
+     *
+     * @return blocked time from 0 to 1
+     */
+    public double getBlocked() {
+        return ratio(blocked.sum());
+    }
+
+    /**
+     * Return part of available worker time
+     *
+     * @param nanos Time in nanoseconds
+     * @return ratio of time
+     */
+    protected double ratio(long nanos) {
+        if (started == 0)
+            return 0;
+        long elapsed = (stopped == 0 ? System.nanoTime() : stopped) - started;
+        return elapsed == 0 ? 0 : (double) nanos / ((double) elapsed * threads);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("threads=%d processed=%d queue=%d util=%.1f%% blocked=%.1f%%",
+                threads, getProcessed(), getQueueSize(), getUtilization() * 100, getBlocked() * 100);
+    }
+}
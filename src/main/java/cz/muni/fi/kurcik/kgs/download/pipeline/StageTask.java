@@ -0,0 +1,18 @@
+package cz.muni.fi.kurcik.kgs.download.pipeline;
+
+/**
+ * Work done by one stage of pipeline
+ *
+ * @param <T> Type of processed items
+ * @author Lukáš Kurčík
+ */
+public interface StageTask<T> {
+
+    /**
+     * Processes item
+     *
+     * @param item Item from stage queue
+     * @return item for next stage or null if item shouldn't continue
+     */
+    T process(T item);
+}
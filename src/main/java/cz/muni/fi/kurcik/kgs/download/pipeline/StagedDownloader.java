@@ -0,0 +1,354 @@
+package cz.muni.fi.kurcik.kgs.download.pipeline;
+
+import com.drew.lang.Charsets;
+import cz.muni.fi.kurcik.kgs.download.BasicDownloader;
+import cz.muni.fi.kurcik.kgs.download.DownloadURL;
+import cz.muni.fi.kurcik.kgs.download.ThreadLocalLanguageDetector;
+import cz.muni.fi.kurcik.kgs.download.containers.UrlContainer;
+import cz.muni.fi.kurcik.kgs.download.metrics.CrawlStage;
+import cz.muni.fi.kurcik.kgs.download.parser.Parser;
+import cz.muni.fi.kurcik.kgs.download.parser.ParserException;
+import cz.muni.fi.kurcik.kgs.download.parser.ParserFactory;
+import cz.muni.fi.kurcik.kgs.util.UrlCanonicalizer;
+import org.apache.commons.io.FileUtils;
+import org.apache.tika.language.detect.LanguageDetector;
+import org.apache.tika.language.detect.LanguageResult;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Downloader that runs crawl as pipeline of fetch, parse, detect and write stages.
+ * Each stage has its own pool of threads and bounded queue, so network, CPU and disk are used at the same time.
+ * Write stage has only one thread, it assigns IDs to documents and updates links, so output is the same as from BasicDownloader.
+ * Documents get IDs in order in which they finished, not in order in which they were queued.
+ * Utilization of each stage is added to crawl metrics.
+ *
+ * @author Lukáš Kurčík
+ */
+public class StagedDownloader extends BasicDownloader {
+
+    protected static final String TEMP_PREFIX = "fetch-";
+    protected static final long POLL_INTERVAL = 100;
+
+    protected int fetchThreads = 8;
+    protected int parseThreads = Runtime.getRuntime().availableProcessors();
+    protected int detectThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    protected int queueCapacity = 32;
+
+    protected List<PipelineStage<CrawlTask>> stages;
+    protected final Set<String> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    protected final AtomicInteger pending = new AtomicInteger();
+    protected final Object idle = new Object();
+    protected final AtomicLong tempCounter = new AtomicLong();
+
+    protected final AtomicInteger downloaded = new AtomicInteger();
+    protected final AtomicInteger rejectedByParser = new AtomicInteger();
+    protected final AtomicInteger rejectedByLanguage = new AtomicInteger();
+
+    /**
+     * Create new staged downloader
+     *
+     * @param language      The ISO 639-1 language code for language that should be used for parsing
+     * @param parserFactory Factory for parser used for all files, must be thread-safe
+     * @param detectors     Factory for language detectors, each detect thread gets its own detector
+     */
+    public StagedDownloader(String language, ParserFactory parserFactory, Supplier<LanguageDetector> detectors) throws IOException {
+        super(language, parserFactory, new ThreadLocalLanguageDetector(detectors));
+    }
+
+    /**
+     * Sets number of threads downloading pages
+     *
+     * @param fetchThreads number of threads
+     */
+    public void setFetchThreads(int fetchThreads) {
+        this.fetchThreads = fetchThreads;
+    }
+
+    /**
+     * Sets number of threads parsing pages
+     *
+     * @param parseThreads number of threads
+     */
+    public void setParseThreads(int parseThreads) {
+        this.parseThreads = parseThreads;
+    }
+
+    /**
+     * Sets number of threads detecting language
+     *
+     * @param detectThreads number of threads
+     */
+    public void setDetectThreads(int detectThreads) {
+        this.detectThreads = detectThreads;
+    }
+
+    /**
+     * Sets capacity of queue before each stage
+     *
+     * @param queueCapacity number of pages
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Creates thread-safe container for URLs of one crawl
+     *
+     * @return empty url container
+     */
+    @Override
+    protected UrlContainer createUrlContainer() {
+        return new SynchronizedUrlContainer(super.createUrlContainer());
+    }
+
+    /**
+     * Feeds URLs from container into pipeline until container is empty and no page is in pipeline
+     *
+     * @throws IOException when crawl is interrupted
+     */
+    @Override
+    protected void crawl() throws IOException {
+        stages = createStages();
+        for (PipelineStage<CrawlTask> stage : stages) {
+            metrics.addGauge(stage.getName() + "-stage", stage::toString);
+            stage.start();
+        }
+
+        try {
+            while (true) {
+                DownloadURL durl;
+                synchronized (urlContainer) {
+                    durl = urlContainer.isEmpty() ? null : urlContainer.pop();
+                }
+                if (durl != null) {
+                    dispatch(durl);
+                    continue;
+                }
+                synchronized (idle) {
+                    if (pending.get() == 0 && urlContainer.isEmpty())
+                        break;
+                    idle.wait(POLL_INTERVAL);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Crawl was interrupted", e);
+        } finally {
+            try {
+                for (PipelineStage<CrawlTask> stage : stages)
+                    stage.stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (PipelineStage<CrawlTask> stage : stages)
+                getLogger().info("Stage " + stage.getName() + ": " + stage);
+            donwloadCount = downloaded.get();
+            parserRejected = rejectedByParser.get();
+            languageRejected = rejectedByLanguage.get();
+        }
+    }
+
+    /**
+     * Creates connected stages of pipeline
+     *
+     * @return list of stages, first stage gets new URLs
+     */
+    protected List<PipelineStage<CrawlTask>> createStages() {
+        List<PipelineStage<CrawlTask>> stages = Arrays.asList(
+                new PipelineStage<>("fetch", fetchThreads, queueCapacity, this::fetchPage),
+                new PipelineStage<>("parse", parseThreads, queueCapacity, this::parsePage),
+                new PipelineStage<>("detect", detectThreads, queueCapacity, this::detectPage),
+                new PipelineStage<>("write", 1, queueCapacity, this::writePage)
+        );
+        for (int i = 0; i < stages.size(); i++) {
+            PipelineStage<CrawlTask> stage = stages.get(i);
+            stage.setLogger(getLogger());
+            stage.setFinished(this::finished);
+            if (i + 1 < stages.size())
+                stage.setNext(stages.get(i + 1));
+        }
+        return stages;
+    }
+
+    /**
+     * Puts URL into first stage, waits while stage is full.
+     * URL that is already in pipeline is skipped.
+     *
+     * @param durl URL from container
+     * @throws InterruptedException when interrupted while waiting
+     */
+    protected void dispatch(DownloadURL durl) throws InterruptedException {
+        String key = UrlCanonicalizer.canonicalize(durl.getUrl());
+        if (!inFlight.add(key))
+            return;
+        pending.incrementAndGet();
+        stages.get(0).put(new CrawlTask(durl, key));
+    }
+
+    /**
+     * Called when task leaves pipeline
+     *
+     * @param task Task
+     */
+    protected void finished(CrawlTask task) {
+        if (task.file != null && task.file.getFileName().toString().startsWith(TEMP_PREFIX))
+            FileUtils.deleteQuietly(task.file.toFile());
+        inFlight.remove(task.getKey());
+        pending.decrementAndGet();
+        synchronized (idle) {
+            idle.notifyAll();
+        }
+    }
+
+    /**
+     * Resolves redirects and downloads page into temporary file
+     *
+     * @param task Task
+     * @return task or null if page wasn't downloaded
+     */
+    protected CrawlTask fetchPage(CrawlTask task) {
+        DownloadURL durl = task.getDownloadUrl();
+        URI url = durl.getUrl();
+        getLogger().info("Parsing " + url + "; depth: " + durl.getDepth() + "; hops: " + durl.getHops());
+
+        long start = System.nanoTime();
+        URI newUrl = resolveRedirects(url);
+        metrics.record(CrawlStage.REDIRECT, start);
+        if (!url.equals(newUrl)) {
+            getLogger().info("Redirect from " + url + " to " + newUrl);
+            synchronized (urlContainer) {
+                urlContainer.push(newUrl, durl.getDepth(), durl.getHops());
+                if (newUrl.getScheme().equals(url.getScheme()))
+                    urlContainer.setAsRejected(url);
+            }
+            return null;
+        }
+
+        start = System.nanoTime();
+        getLogger().info("Downloading " + url);
+        task.extension = getExtension(url);
+        task.file = downloadDir.resolve(ORIGINAL_FILES_DIR).resolve(TEMP_PREFIX + tempCounter.incrementAndGet() + task.extension);
+        try {
+            FileUtils.copyURLToFile(url.toURL(), task.file.toFile(), 30000, 120000);
+            downloaded.incrementAndGet();
+            metrics.addPage(Files.size(task.file));
+        } catch (IOException e) {
+            getLogger().log(Level.SEVERE, "Error while downloading " + url, e);
+            return null;
+        } finally {
+            metrics.record(CrawlStage.FETCH, start);
+        }
+        return task;
+    }
+
+    /**
+     * Parses content and links of downloaded page
+     *
+     * @param task Task
+     * @return task or null if page can't be parsed
+     */
+    protected CrawlTask parsePage(CrawlTask task) {
+        URI url = task.getUrl();
+        long start = System.nanoTime();
+        Parser parser = parserFactory.createParser(url, task.file);
+        if (!parser.canBeParsed()) {
+            metrics.record(CrawlStage.PARSE, start);
+            getLogger().info("Can' be parsed: " + url);
+            reject(url, task.file);
+            rejectedByParser.incrementAndGet();
+            return null;
+        }
+
+        getLogger().info("Parsing " + url);
+        try {
+            task.content = parser.getContent();
+        } catch (ParserException e) {
+            getLogger().log(Level.SEVERE, "Problem while parsing " + url, e);
+            return null;
+        } finally {
+            metrics.record(CrawlStage.PARSE, start);
+        }
+
+        start = System.nanoTime();
+        task.links = parser.getLinks();
+        metrics.record(CrawlStage.LINKS, start);
+        return task;
+    }
+
+    /**
+     * Checks language of parsed page
+     *
+     * @param task Task
+     * @return task or null if page is in other language
+     */
+    protected CrawlTask detectPage(CrawlTask task) {
+        URI url = task.getUrl();
+        getLogger().info("Language detection " + url);
+        long start = System.nanoTime();
+        LanguageResult result = languageDetector.detectAll(task.content).get(0);
+        metrics.record(CrawlStage.DETECT, start);
+        if (!result.getLanguage().equals(language)) {
+            getLogger().info("Invalid language " + url);
+            reject(url, task.file);
+            rejectedByLanguage.incrementAndGet();
+            return null;
+        }
+        return task;
+    }
+
+    /**
+     * Assigns ID to page, saves its files and queues its links.
+     * Link extraction is measured in parse stage, so whole work of this stage is recorded as write
+     *
+     * @param task Task
+     * @return task
+     */
+    protected CrawlTask writePage(CrawlTask task) {
+        URI url = task.getUrl();
+        getLogger().info("Saving parsed " + url);
+        long start = System.nanoTime();
+        long id = urlContainer.getNextId();
+
+        Path originalFile = downloadDir.resolve(ORIGINAL_FILES_DIR).resolve(id + task.extension);
+        try {
+            Files.move(task.file, originalFile, StandardCopyOption.REPLACE_EXISTING);
+            task.file = originalFile;
+        } catch (IOException e) {
+            getLogger().log(Level.SEVERE, "Couldn't move " + task.file + " to " + originalFile, e);
+        }
+
+        Path parsedFile = downloadDir.resolve(PARSED_FILES_DIR).resolve(id + PARSED_EXTENSION);
+        try {
+            FileUtils.writeStringToFile(parsedFile.toFile(), task.content, Charsets.UTF_8);
+        } catch (IOException e) {
+            getLogger().log(Level.SEVERE, "Couldn't save parsed " + url, e);
+        }
+
+        getLogger().info("Linking " + url);
+        saveUrls(downloadDir.resolve(LINKS_FILES_DIR).resolve(id + LINKS_EXTENSION), task.links);
+        linkGraph.addLinks(id, task.links);
+        linkGraph.setId(url, id);
+        synchronized (urlContainer) {
+            urlContainer.push(task.getDownloadUrl(), task.links);
+            urlContainer.setAsParsed(url);
+        }
+        metrics.record(CrawlStage.WRITE, start);
+
+        getLogger().info("Finished " + url);
+        return task;
+    }
+}
@@ -0,0 +1,97 @@
+package cz.muni.fi.kurcik.kgs.download.pipeline;
+
+import cz.muni.fi.kurcik.kgs.download.DownloadURL;
+import cz.muni.fi.kurcik.kgs.download.containers.UrlContainer;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Thread-safe wrapper of url container. All calls are synchronized on this object,
+ * so more calls can be done atomically inside synchronized block on container.
+ *
+ * @author Lukáš Kurčík
+ */
+public class SynchronizedUrlContainer implements UrlContainer {
+    protected final UrlContainer container;
+
+    /**
+     * Creates wrapper for container
+     *
+     * @param container Wrapped container
+     */
+    public SynchronizedUrlContainer(UrlContainer container) {
+        this.container = container;
+    }
+
+    @Override
+    public synchronized void setDepth(int dept) {
+        container.setDepth(dept);
+    }
+
+    @Override
+    public synchronized void setHops(int hops) {
+        container.setHops(hops);
+    }
+
+    @Override
+    public synchronized Set<URI> getParsedUrls() {
+        return container.getParsedUrls();
+    }
+
+    @Override
+    public synchronized boolean isParsed(URI url) {
+        return container.isParsed(url);
+    }
+
+    @Override
+    public synchronized void setAsParsed(URI url) {
+        container.setAsParsed(url);
+    }
+
+    @Override
+    public synchronized void setAsRejected(URI url) {
+        container.setAsRejected(url);
+    }
+
+    @Override
+    public synchronized long getNextId() {
+        return container.getNextId();
+    }
+
+    @Override
+    public synchronized Map<Long, URI> getIdUrlPairs() {
+        return container.getIdUrlPairs();
+    }
+
+    @Override
+    public synchronized void push(URI url, int depth, int hops) {
+        container.push(url, depth, hops);
+    }
+
+    @Override
+    public synchronized void push(DownloadURL parent, URI url) {
+        container.push(parent, url);
+    }
+
+    @Override
+    public synchronized void push(DownloadURL parent, Set<URI> list) {
+        container.push(parent, list);
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return container.isEmpty();
+    }
+
+    @Override
+    public synchronized int size() {
+        return container.size();
+    }
+
+    @Override
+    public synchronized DownloadURL pop() {
+        return container.pop();
+    }
+}
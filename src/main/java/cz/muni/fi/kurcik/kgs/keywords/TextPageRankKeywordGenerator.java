@@ -7,9 +7,13 @@ import cz.muni.fi.kurcik.kgs.download.Downloader;
 import cz.muni.fi.kurcik.kgs.keywords.TextRank.LanguageCzech;
 import cz.muni.fi.kurcik.kgs.keywords.TextRank.TextRank;
 import cz.muni.fi.kurcik.kgs.linkmining.Mapper.LinkMapper;
+import cz.muni.fi.kurcik.kgs.preprocessing.DocumentAnnotation;
+import cz.muni.fi.kurcik.kgs.preprocessing.Preprocessor;
 import cz.muni.fi.kurcik.kgs.util.AModule;
-import cz.muni.fi.kurcik.kgs.util.UrlIndex;
+import cz.muni.fi.kurcik.kgs.util.LinkGraph;
+import cz.muni.fi.kurcik.kgs.util.Majka;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 import org.jgrapht.Graph;
 import org.jgrapht.alg.scoring.PageRank;
 import org.jgrapht.graph.DefaultDirectedGraph;
@@ -35,6 +39,7 @@ public class TextPageRankKeywordGenerator extends AModule implements KeywordGene
 
     protected int maxNGramLength;
     protected boolean runTextRank = true;
+    protected Majka majka; // Shared by TextRank of all documents, so dictionary is loaded only once
 
     /**
      * Create new generator
@@ -83,8 +88,7 @@ public class TextPageRankKeywordGenerator extends AModule implements KeywordGene
 
         // Load link map
         LinkMapper linkMapper = new LinkMapper(downloadDir, getLogger());
-        Map<Integer, List<String>> links = linkMapper.getLinks();
-        UrlIndex urlIndex = linkMapper.getUrlIndex();
+        LinkGraph linkGraph = linkMapper.getLinkGraph();
 
         // Load clusters
         ClusterLoader clusterLoader = new ClusterLoader(clusteringFile, getLogger());
@@ -101,13 +105,12 @@ public class TextPageRankKeywordGenerator extends AModule implements KeywordGene
             getLogger().info("Building graph for cluster " + clusterId);
             for (Integer document : documents) {
                 wordGraph.addVertex(document);
-                for (String link : links.get(document)) {
-                    Long id = urlIndex.getId(link);
-                    if (id == null || !docToKeywords.containsKey(id.intValue())) {
+                for (int id : linkGraph.getOutLinks(document)) {
+                    if (!docToKeywords.containsKey(id)) {
                         continue;
                     }
-                    wordGraph.addVertex(id.intValue());
-                    wordGraph.addEdge(document, id.intValue());
+                    wordGraph.addVertex(id);
+                    wordGraph.addEdge(document, id);
                 }
             }
 
@@ -173,15 +176,21 @@ public class TextPageRankKeywordGenerator extends AModule implements KeywordGene
                 .listFiles((File dir, String name) -> name.endsWith(Downloader.PARSED_EXTENSION));
         int finishedDocuments = 0;
 
-        for (File parsed : parsedDocuments) {
-            getLogger().info("Document " + parsed.getName() + " "
-                    + (finishedDocuments + 1) + "/" + parsedDocuments.length);
+        majka = new Majka();
+        try {
+            for (File parsed : parsedDocuments) {
+                getLogger().info("Document " + parsed.getName() + " "
+                        + (finishedDocuments + 1) + "/" + parsedDocuments.length);
 
-            Map<String, Double> keyWords = generateDocumentKeywords(parsed);
-            FileUtils.writeLines(downloadDir.resolve(KEYWORDS_FILES_DIR).resolve(DOC_KEYWORDS_DIR).resolve(parsed.getName()).toFile(),
-                    keyWords.entrySet().stream().map(e -> e.getValue() + " " + e.getKey()).collect(Collectors.toList()), "\n");
+                Map<String, Double> keyWords = generateDocumentKeywords(parsed);
+                FileUtils.writeLines(downloadDir.resolve(KEYWORDS_FILES_DIR).resolve(DOC_KEYWORDS_DIR).resolve(parsed.getName()).toFile(),
+                        keyWords.entrySet().stream().map(e -> e.getValue() + " " + e.getKey()).collect(Collectors.toList()), "\n");
 
-            finishedDocuments++;
+                finishedDocuments++;
+            }
+        } finally {
+            majka.close();
+            majka = null;
         }
         getLogger().info("Document keywords generated");
     }
@@ -195,7 +204,7 @@ public class TextPageRankKeywordGenerator extends AModule implements KeywordGene
     protected Map<String, Double> generateDocumentKeywords(File file) throws IOException {
         try {
             final String documentText = FileUtils.readFileToString(file, Charsets.UTF_8);
-            final TextRank textRank = prepareTextRank();
+            final TextRank textRank = prepareTextRank(loadAnnotation(file));
             textRank.prepCall(documentText, false);
 
             Collection<MetricVector> result = textRank.call();
@@ -218,12 +227,48 @@ public class TextPageRankKeywordGenerator extends AModule implements KeywordGene
      * @return TextRank object
      */
     protected TextRank prepareTextRank() throws Exception {
+        return prepareTextRank(null);
+    }
+
+    /**
+     * Prepare TextRank instance. Uses Majka shared by all documents, so it can be called only
+     * while keywords of documents are generated.
+     *
+     * @param annotation Annotation of document from preprocessing or null if document should be processed from text
+     * @return TextRank object
+     * @throws IllegalStateException when shared Majka is not created
+     */
+    protected TextRank prepareTextRank(DocumentAnnotation annotation) throws Exception {
+        if (majka == null)
+            throw new IllegalStateException("TextRank can be prepared only while document keywords are generated");
         TextRank textRank;
-        textRank = new TextRank(new LanguageCzech(false));
+        if (annotation != null)
+            textRank = new TextRank(new LanguageCzech(false, majka, annotation));
+        else
+            textRank = new TextRank(new LanguageCzech(false, majka));
         textRank.setMaxNgramLength(maxNGramLength);
         return textRank;
     }
 
+    /**
+     * Loads annotation of parsed document saved by preprocessing, if it exists and it isn't older than document
+     *
+     * @param parsed Parsed document
+     * @return annotation or null
+     */
+    protected DocumentAnnotation loadAnnotation(File parsed) {
+        File annotationFile = downloadDir.resolve(Preprocessor.ANNOTATED_FILES_DIR)
+                .resolve(FilenameUtils.removeExtension(parsed.getName()) + DocumentAnnotation.EXTENSION).toFile();
+        if (!annotationFile.exists() || annotationFile.lastModified() < parsed.lastModified())
+            return null;
+        try {
+            return DocumentAnnotation.load(annotationFile.toPath());
+        } catch (IOException e) {
+            getLogger().log(Level.WARNING, "Couldn't load annotation " + annotationFile + ", document will be processed from text", e);
+            return null;
+        }
+    }
+
     /**
      * Creates folder for keywords
      *
@@ -1,6 +1,7 @@
 package cz.muni.fi.kurcik.kgs.keywords.TextRank;
 
 import com.sharethis.textrank.LanguageModel;
+import cz.muni.fi.kurcik.kgs.preprocessing.DocumentAnnotation;
 import cz.muni.fi.kurcik.kgs.util.Majka;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
@@ -16,32 +17,69 @@ import java.util.logging.Logger;
 /**
  * Implementation of Czech-specific tools for NLP
  * Uses Majka
+ * <p>
+ * If document annotation from preprocessing is set, sentences, lemmas and tags are taken from it
+ * and CoreNLP pipeline is not created at all.
+ * <p>
+ * Language should be closed after use, which closes Majka created by it. Shared Majka is not closed.
  *
  * @author Lukáš Kurčík
  */
-public class LanguageCzech extends LanguageModel {
+public class LanguageCzech extends LanguageModel implements AutoCloseable {
 
     private static final Logger logger = Logger.getLogger(LanguageCzech.class.getName());
     public static final String TAG_REGEX = "^.*:";
 
     protected final Majka majka;
+    protected boolean ownsMajka = false;
     protected boolean allowUnknownWords;
     protected StanfordCoreNLP pipeline;
+    protected DocumentAnnotation annotation;
 
     protected final HashMap<String, List<String>> tokensCache = new HashMap<>();
+    protected final HashMap<String, String[]> lemmasCache = new HashMap<>();
+    protected final HashMap<String, String> lemmaTags = new HashMap<>();
 
     /**
-     * Default constructor
+     * Create language with its own Majka, which is closed by close
      *
      * @param allowUnknownWords Specify if words that majka didn't tagged should be used
      */
     public LanguageCzech(boolean allowUnknownWords) {
-        majka = new Majka();
+        this(allowUnknownWords, new Majka());
+        ownsMajka = true;
+    }
+
+    /**
+     * Create language using shared Majka, which is not closed by this class
+     *
+     * @param allowUnknownWords Specify if words that majka didn't tagged should be used
+     * @param majka             Majka with loaded dictionary
+     */
+    public LanguageCzech(boolean allowUnknownWords, Majka majka) {
+        this.majka = majka;
         this.allowUnknownWords = allowUnknownWords;
+    }
 
-        Properties props = new Properties();
-        props.put("annotators", "tokenize, ssplit");
-        pipeline = new StanfordCoreNLP(props);
+    /**
+     * Create language using shared Majka and annotation of document from preprocessing
+     *
+     * @param allowUnknownWords Specify if words that majka didn't tagged should be used
+     * @param majka             Majka with loaded dictionary, used only for words missing in annotation
+     * @param annotation        Annotation of document, that will be processed
+     */
+    public LanguageCzech(boolean allowUnknownWords, Majka majka, DocumentAnnotation annotation) {
+        this(allowUnknownWords, majka);
+        this.annotation = annotation;
+    }
+
+    /**
+     * Closes Majka if it was created by this language
+     */
+    @Override
+    public void close() {
+        if (ownsMajka)
+            majka.close();
     }
 
     /**
@@ -57,8 +95,11 @@ public class LanguageCzech extends LanguageModel {
      */
     @Override
     public String[] splitParagraph(final String text) {
+        if (annotation != null)
+            return splitAnnotation();
+
         Annotation paragraph = new Annotation(text);
-        pipeline.annotate(paragraph);
+        getPipeline().annotate(paragraph);
 
 
         // Lemmatize tokens
@@ -92,11 +133,36 @@ public class LanguageCzech extends LanguageModel {
         return sentenceList.toArray(new String[0]);
     }
 
+    /**
+     * Return sentences of annotation in the same form as splitParagraph, lemmas and tags are prepared for later calls
+     *
+     * @return sentences
+     */
+    protected String[] splitAnnotation() {
+        String[] sentenceList = new String[annotation.getSentenceCount()];
+        for (int s = 0; s < sentenceList.length; s++) {
+            String[] words = annotation.getWords(s);
+            String[] lemmas = annotation.getLemmas(s);
+            String[] tags = annotation.getTags(s);
+            StringBuilder sentenceBuilder = new StringBuilder();
+            for (int i = 0; i < words.length; i++) {
+                sentenceBuilder.append(words[i].toLowerCase()).append(" ");
+                lemmaTags.put(lemmas[i], tags[i]);
+            }
+            sentenceList[s] = sentenceBuilder.toString().trim();
+            lemmasCache.put(sentenceList[s], lemmas);
+        }
+        return sentenceList;
+    }
+
     /**
      * Tokenize the sentence text into an array of tokens.
      */
     @Override
     public String[] tokenizeSentence(String text) {
+        String[] annotated = lemmasCache.get(text);
+        if (annotated != null)
+            return annotated.clone();
         try {
             Map<String, String> lemmas = majka.findAll(tokensCache.get(text), Majka.IGNORE_CASE, false);
             String[] result = new String[tokensCache.get(text).size()];
@@ -116,6 +182,12 @@ public class LanguageCzech extends LanguageModel {
      */
     @Override
     public String[] tagTokens(final String[] token_list) {
+        if (lemmaTags.keySet().containsAll(Arrays.asList(token_list))) {
+            String[] result = new String[token_list.length];
+            for (int i = 0; i < token_list.length; i++)
+                result[i] = lemmaTags.get(token_list[i]);
+            return result;
+        }
         try {
             Map<String, String> tags = majka.findAll(Arrays.asList(token_list), Majka.IGNORE_CASE, true);
             String[] result = new String[token_list.length];
@@ -168,6 +240,28 @@ public class LanguageCzech extends LanguageModel {
      */
     @Override
     public String stemToken(String s) {
-        return majka.getCache().get(s).replaceAll(TAG_REGEX, "");
+        String tag = lemmaTags.get(s);
+        if (tag != null)
+            return tag;
+        try {
+            return majka.lemma(s, Majka.IGNORE_CASE, true).replaceAll(TAG_REGEX, "");
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Problem while tagging tokens", e);
+        }
+        return s;
+    }
+
+    /**
+     * Return CoreNLP pipeline, creates it on first call
+     *
+     * @return pipeline
+     */
+    protected StanfordCoreNLP getPipeline() {
+        if (pipeline == null) {
+            Properties props = new Properties();
+            props.put("annotators", "tokenize, ssplit");
+            pipeline = new StanfordCoreNLP(props);
+        }
+        return pipeline;
     }
 }
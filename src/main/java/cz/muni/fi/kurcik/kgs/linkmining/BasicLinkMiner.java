@@ -9,6 +9,7 @@ import cz.muni.fi.kurcik.kgs.linkmining.Mapper.LinkMapper;
 import cz.muni.fi.kurcik.kgs.linkmining.ranking.Ranking;
 import cz.muni.fi.kurcik.kgs.linkmining.util.LinkMiningModel;
 import cz.muni.fi.kurcik.kgs.util.AModule;
+import cz.muni.fi.kurcik.kgs.util.LinkGraph;
 import cz.muni.fi.kurcik.kgs.util.UrlIndex;
 import org.apache.commons.io.FileUtils;
 
@@ -31,7 +32,7 @@ public class BasicLinkMiner extends AModule implements LinkMiner {
 
     protected UrlIndex urlIndex;
 
-    protected Map<Integer, List<String>> links;
+    protected LinkGraph linkGraph;
     protected Map<Integer, Integer> inLinks;
     protected Map<Integer, Integer> outLinks;
 
@@ -89,7 +90,6 @@ public class BasicLinkMiner extends AModule implements LinkMiner {
      */
     protected LinkMiningModel computeModel(DistanceModel distanceModel, Ranking ranking, LinkMiningStrategy strategy) {
         rankingMap = new double[docToCluster.size()][clusters];
-        List<String> docLinks;
 
         for (int doc = 0; doc < docToCluster.size(); doc++) {
             int docCluster = docToCluster.get(doc);
@@ -97,13 +97,9 @@ public class BasicLinkMiner extends AModule implements LinkMiner {
             rankingMap[doc][docCluster] += ranking.clusterRank();
             long in = inLinks.get(doc + 1);
             long out = outLinks.get(doc + 1);
-            docLinks = links.get(doc + 1);
 
-            for (String link : docLinks) {
-                Long id = urlIndex.getId(link);
-                if (id == null)
-                    continue;
-                int linkId = id.intValue() - 1;
+            for (int id : linkGraph.getOutLinks(doc + 1)) {
+                int linkId = id - 1;
 
                 rankingMap[linkId][docCluster] += ranking.haveLinkRank();
                 rankingMap[linkId][docCluster] += ranking.linkRank(in, out);
@@ -190,7 +186,7 @@ public class BasicLinkMiner extends AModule implements LinkMiner {
 
         inLinks = linkMapper.getInLinks();
         outLinks = linkMapper.getOutLinks();
-        links = linkMapper.getLinks();
+        linkGraph = linkMapper.getLinkGraph();
         urlIndex = linkMapper.getUrlIndex();
     }
 
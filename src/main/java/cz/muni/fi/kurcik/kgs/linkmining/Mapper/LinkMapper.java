@@ -2,12 +2,16 @@ package cz.muni.fi.kurcik.kgs.linkmining.Mapper;
 
 import com.drew.lang.Charsets;
 import cz.muni.fi.kurcik.kgs.download.Downloader;
+import cz.muni.fi.kurcik.kgs.util.LinkGraph;
+import cz.muni.fi.kurcik.kgs.util.LinkGraphBuilder;
 import cz.muni.fi.kurcik.kgs.util.UrlIndex;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
@@ -28,7 +32,8 @@ public class LinkMapper {
     protected Map<Integer, List<String>> links;
     protected Map<Integer, Integer> inLinks;
     protected Map<Integer, Integer> outLinks;
-    
+    protected LinkGraph linkGraph;
+
     /**
      * Creates link mapper
      * @param downloadDir
@@ -40,44 +45,94 @@ public class LinkMapper {
     }
 
     /**
-     * Compute number of outgoing and ingoing links for each url and load list of outgoing links.
+     * Load list of outgoing links for each document.
      *
      * @throws IOException when there is problem with file IO
      */
     protected void loadLinks() throws IOException {
-        if (links != null && inLinks != null && outLinks != null)
+        if (links != null)
             return;
         logger.info("Loading link info");
         links = new HashMap<>();
+
+        for (File file : listLinkFiles()) {
+            Integer fileId = Integer.parseInt(FilenameUtils.getBaseName(file.toString()));
+            links.put(fileId, FileUtils.readLines(file, Charsets.UTF_8));
+        }
+    }
+
+    /**
+     * Compute number of outgoing and ingoing links for each document from link graph.
+     *
+     * @throws IOException when there is problem with file IO
+     */
+    protected void loadLinkCounts() throws IOException {
+        if (inLinks != null && outLinks != null)
+            return;
+        getLinkGraph();
         inLinks = new HashMap<>();
         outLinks = new HashMap<>();
+        for (int id = 1; id <= linkGraph.getNodeCount(); id++) {
+            outLinks.put(id, linkGraph.getLinkCount(id));
+            inLinks.put(id, linkGraph.getInDegree(id));
+        }
+    }
+
+    /**
+     * Return graph of links between documents.
+     * Graph is loaded from Downloader.LINK_GRAPH_FILE. If there is no such file, graph is built from link files and saved.
+     *
+     * @return link graph
+     * @throws IOException when there is problem with file IO
+     */
+    public LinkGraph getLinkGraph() throws IOException {
+        if (linkGraph != null)
+            return linkGraph;
+        Path graphFile = downloadDir.resolve(Downloader.LINK_GRAPH_FILE);
+        if (Files.exists(graphFile)) {
+            logger.info("Loading link graph");
+            try {
+                linkGraph = LinkGraph.load(graphFile);
+                return linkGraph;
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Couldn't load link graph, rebuilding it from link files", e);
+            }
+        }
+
+        logger.info("Building link graph from link files");
         getUrlIndex();
+        LinkGraphBuilder builder = new LinkGraphBuilder();
+        for (File file : listLinkFiles()) {
+            long fileId = Long.parseLong(FilenameUtils.getBaseName(file.toString()));
+            URI url = urlIndex.getUrl(fileId);
+            if (url != null)
+                builder.setId(url, fileId);
+            builder.addRawLinks(fileId, FileUtils.readLines(file, Charsets.UTF_8));
+        }
+        linkGraph = builder.build();
+
+        try {
+            linkGraph.save(graphFile);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Couldn't save link graph", e);
+        }
+        return linkGraph;
+    }
 
+    /**
+     * Return all link files from Downloader.LINKS_FILES_DIR
+     *
+     * @return array of link files
+     * @throws IOException when link directory can't be read
+     */
+    protected File[] listLinkFiles() throws IOException {
         File[] linkFiles = downloadDir.resolve(Downloader.LINKS_FILES_DIR).toFile().listFiles((File dir, String name) -> name.endsWith(Downloader.LINKS_EXTENSION));
         if (linkFiles == null) {
             IOException e = new IOException("Problem while loading clustering");
             logger.log(Level.SEVERE, e.getMessage(), e);
             throw e;
         }
-        List<String> links;
-        for (File file : linkFiles) {
-            links = FileUtils.readLines(file, Charsets.UTF_8);
-            Integer fileId = Integer.parseInt(FilenameUtils.getBaseName(file.toString()));
-
-            this.links.put(fileId, links);
-            outLinks.put(fileId, links.size());
-            inLinks.putIfAbsent(fileId, 0);
-
-            for (String link : links) {
-                Long id = urlIndex.getId(link);
-                if (id == null) //@todo Decrease number of outgoing links when pointing to not processed url?
-                    continue;
-                Integer inId = id.intValue();
-                Integer newIn = inLinks.get(inId);
-                newIn = newIn == null ? 1 : newIn + 1;
-                inLinks.put(inId, newIn);
-            }
-        }
+        return linkFiles;
     }
 
     /**
@@ -96,7 +151,7 @@ public class LinkMapper {
      * @throws IOException  when there is problem with file IO
      */
     public Map<Integer, Integer> getInLinks() throws IOException {
-        loadLinks();
+        loadLinkCounts();
         return inLinks;
     }
 
@@ -106,7 +161,7 @@ public class LinkMapper {
      * @throws IOException  when there is problem with file IO
      */
     public Map<Integer, Integer> getOutLinks() throws IOException {
-        loadLinks();
+        loadLinkCounts();
         return outLinks;
     }
 
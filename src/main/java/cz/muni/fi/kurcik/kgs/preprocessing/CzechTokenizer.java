@@ -0,0 +1,205 @@
+package cz.muni.fi.kurcik.kgs.preprocessing;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.util.CoreMap;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Tokenizer for Czech texts used by preprocessing.
+ * Tokenization pipeline is created once and can be used by more threads at the same time.
+ * <p>
+ * Tokens are filtered in one pass: punctuation (tokens without any of characters a-z, A-Z, 0-9 and _),
+ * tokens shorter than 4 or longer than 29 characters, tokens with digits and stop words are removed.
+ * Pipeline with sentence splitting is created only if sentences are needed.
+ *
+ * @author Lukáš Kurčík
+ */
+public class CzechTokenizer {
+
+    public static final String STOP_WORDS_FILE = "majka/stop_words.txt";
+
+    protected static final int MIN_LENGTH = 4;
+    protected static final int MAX_LENGTH = 29;
+
+    protected final StanfordCoreNLP pipeline;
+    protected final Set<String> stopWords;
+    protected volatile StanfordCoreNLP sentencePipeline;
+
+    /**
+     * Creates tokenizer with stop words from STOP_WORDS_FILE
+     *
+     * @throws IOException when stop words can't be loaded
+     */
+    public CzechTokenizer() throws IOException {
+        this(loadStopWords());
+    }
+
+    /**
+     * Creates tokenizer
+     *
+     * @param stopWords Lower-cased stop words
+     */
+    public CzechTokenizer(Set<String> stopWords) {
+        Properties props = new Properties();
+        props.put("annotators", "tokenize");
+        this.pipeline = new StanfordCoreNLP(props);
+        this.stopWords = stopWords;
+    }
+
+    /**
+     * Return tokens of text without punctuation
+     *
+     * @param content Text
+     * @return List of word tokens
+     */
+    public List<String> tokenize(String content) {
+        List<String> result = new ArrayList<>();
+        for (CoreLabel label : annotate(content)) {
+            String token = label.value();
+            if (!isPunctuation(token))
+                result.add(token);
+        }
+        return result;
+    }
+
+    /**
+     * Return tokens of text without punctuation, numbers, short and long words and stop words
+     *
+     * @param content Text
+     * @return List of word tokens
+     */
+    public List<String> tokenizeFiltered(String content) {
+        List<CoreLabel> labels = annotate(content);
+        List<String> result = new ArrayList<>(labels.size());
+        for (CoreLabel label : labels) {
+            String token = label.value();
+            if (accept(token))
+                result.add(token);
+        }
+        return result;
+    }
+
+    /**
+     * Return all tokens of text split into sentences, including punctuation
+     *
+     * @param content Text
+     * @return tokens of each sentence
+     */
+    public List<List<CoreLabel>> tokenizeSentences(String content) {
+        Annotation document = new Annotation(content);
+        getSentencePipeline().annotate(document);
+        List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
+        List<List<CoreLabel>> result = new ArrayList<>(sentences.size());
+        for (CoreMap sentence : sentences)
+            result.add(sentence.get(CoreAnnotations.TokensAnnotation.class));
+        return result;
+    }
+
+    /**
+     * Check if token should be kept
+     *
+     * @param token Token
+     * @return false for punctuation, numbers, short and long words and stop words
+     */
+    public boolean accept(String token) {
+        int length = token.length();
+        if (length < MIN_LENGTH || length > MAX_LENGTH)
+            return false;
+        boolean word = false;
+        for (int i = 0; i < length; i++) {
+            char c = token.charAt(i);
+            if (c >= '0' && c <= '9')
+                return false;
+            if (!word && isWordChar(c))
+                word = true;
+        }
+        return word && !stopWords.contains(token.toLowerCase());
+    }
+
+    /**
+     * Check if token contains only punctuation, i.e. it matches ^\W+$
+     *
+     * @param token Token
+     * @return true for punctuation
+     */
+    public static boolean isPunctuation(String token) {
+        if (token.isEmpty())
+            return false;
+        for (int i = 0; i < token.length(); i++) {
+            if (isWordChar(token.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check if character is word character of regular expressions (\w)
+     *
+     * @param c Character
+     * @return true for a-z, A-Z, 0-9 and _
+     */
+    protected static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /**
+     * Runs tokenization pipeline
+     *
+     * @param content Text
+     * @return tokens
+     */
+    protected List<CoreLabel> annotate(String content) {
+        Annotation document = new Annotation(content);
+        pipeline.annotate(document);
+        return document.get(CoreAnnotations.TokensAnnotation.class);
+    }
+
+    /**
+     * Return pipeline with tokenization and sentence splitting, creates it on first call
+     *
+     * @return pipeline
+     */
+    protected StanfordCoreNLP getSentencePipeline() {
+        if (sentencePipeline == null) {
+            synchronized (this) {
+                if (sentencePipeline == null) {
+                    Properties props = new Properties();
+                    props.put("annotators", "tokenize, ssplit");
+                    sentencePipeline = new StanfordCoreNLP(props);
+                }
+            }
+        }
+        return sentencePipeline;
+    }
+
+    /**
+     * Load list of stopwords
+     *
+     * @return HashSet of stopwords
+     * @throws IOException when there is problem with file IO
+     */
+    public static Set<String> loadStopWords() throws IOException {
+        Set<String> stopWords = new HashSet<>();
+        try (InputStream inputStream = CzechTokenizer.class.getClassLoader().getResourceAsStream(STOP_WORDS_FILE);
+             InputStreamReader inputStreamReader = new InputStreamReader(inputStream);
+             BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                stopWords.add(line);
+            }
+        }
+        return stopWords;
+    }
+}
@@ -0,0 +1,172 @@
+package cz.muni.fi.kurcik.kgs.preprocessing;
+
+import cz.muni.fi.kurcik.kgs.util.Varint;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of NLP processing of one document, saved by preprocessing and used by keyword generation,
+ * so document doesn't need to be tokenized and lemmatized again.
+ * Document is split into sentences, each token of sentence has its word, lemma and tag.
+ * Tag is Majka tag of the lemma, which is what TextRank uses as part of speech.
+ * <p>
+ * File format:
+ * [version] as one byte, table of strings as varint count and each string as varint length and UTF-8 bytes,
+ * varint count of sentences and for each sentence varint count of tokens and for each token
+ * varint indexes of word, lemma and tag in table of strings.
+ *
+ * @author Lukáš Kurčík
+ */
+public class DocumentAnnotation {
+
+    public static final String EXTENSION = ".ann";
+    public static final int VERSION = 1;
+
+    protected final List<String[]> words = new ArrayList<>();
+    protected final List<String[]> lemmas = new ArrayList<>();
+    protected final List<String[]> tags = new ArrayList<>();
+
+    /**
+     * Adds sentence, all arrays have length equal to number of tokens
+     *
+     * @param words  Words of tokens
+     * @param lemmas Lemmas of tokens
+     * @param tags   Tags of lemmas
+     */
+    public void addSentence(String[] words, String[] lemmas, String[] tags) {
+        if (words.length != lemmas.length || words.length != tags.length)
+            throw new IllegalArgumentException("Sentence needs word, lemma and tag for each token");
+        this.words.add(words);
+        this.lemmas.add(lemmas);
+        this.tags.add(tags);
+    }
+
+    /**
+     * Return number of sentences
+     *
+     * @return number of sentences
+     */
+    public int getSentenceCount() {
+        return words.size();
+    }
+
+    /**
+     * Return words of sentence
+     *
+     * @param sentence Index of sentence
+     * @return words
+     */
+    public String[] getWords(int sentence) {
+        return words.get(sentence);
+    }
+
+    /**
+     * Return lemmas of sentence
+     *
+     * @param sentence Index of sentence
+     * @return lemmas
+     */
+    public String[] getLemmas(int sentence) {
+        return lemmas.get(sentence);
+    }
+
+    /**
+     * Return tags of lemmas of sentence
+     *
+     * @param sentence Index of sentence
+     * @return tags
+     */
+    public String[] getTags(int sentence) {
+        return tags.get(sentence);
+    }
+
+    /**
+     * Saves annotation into file
+     *
+     * @param file Annotation file
+     * @throws IOException when file can't be written
+     */
+    public void save(Path file) throws IOException {
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        Varint.write(body, words.size());
+        for (int s = 0; s < words.size(); s++) {
+            String[] sentenceWords = words.get(s);
+            Varint.write(body, sentenceWords.length);
+            for (int t = 0; t < sentenceWords.length; t++) {
+                for (String string : new String[]{sentenceWords[t], lemmas.get(s)[t], tags.get(s)[t]}) {
+                    Integer index = indexes.get(string);
+                    if (index == null) {
+                        index = strings.size();
+                        indexes.put(string, index);
+                        strings.add(string);
+                    }
+                    Varint.write(body, index);
+                }
+            }
+        }
+
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(file))) {
+            output.write(VERSION);
+            Varint.write(output, strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                Varint.write(output, bytes.length);
+                output.write(bytes);
+            }
+            body.writeTo(output);
+        }
+    }
+
+    /**
+     * Loads annotation from file
+     *
+     * @param file Annotation file
+     * @return annotation
+     * @throws IOException when file can't be read or it has wrong format
+     */
+    public static DocumentAnnotation load(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            int version = buffer.get();
+            if (version != VERSION)
+                throw new IOException("Unsupported version of annotation " + file + ": " + version);
+            String[] strings = new String[Varint.read(buffer)];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[Varint.read(buffer)];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            DocumentAnnotation annotation = new DocumentAnnotation();
+            int sentences = Varint.read(buffer);
+            for (int s = 0; s < sentences; s++) {
+                int tokens = Varint.read(buffer);
+                String[] words = new String[tokens];
+                String[] lemmas = new String[tokens];
+                String[] tags = new String[tokens];
+                for (int t = 0; t < tokens; t++) {
+                    words[t] = strings[Varint.read(buffer)];
+                    lemmas[t] = strings[Varint.read(buffer)];
+                    tags[t] = strings[Varint.read(buffer)];
+                }
+                annotation.addSentence(words, lemmas, tags);
+            }
+            return annotation;
+        } catch (RuntimeException e) {
+            throw new IOException("File " + file + " is corrupted", e);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package cz.muni.fi.kurcik.kgs.preprocessing;
+
+import cz.muni.fi.kurcik.kgs.util.AtomicFiles;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Manifest of normalized documents, used by incremental preprocessing to find new, changed and removed documents.
+ * For each document ID it keeps SHA-1 hash of parsed file, from which normalized file was created.
+ * <p>
+ * File format:
+ * Each line contains [id] [hash], lines are sorted by ID.
+ *
+ * @author Lukáš Kurčík
+ */
+public class DocumentManifest {
+
+    public static final String MANIFEST_FILE = "manifest.dat";
+
+    protected static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    protected final Map<Long, String> hashes = new TreeMap<>();
+
+    /**
+     * Loads manifest from file
+     *
+     * @param file Manifest file
+     * @return manifest, empty if file doesn't exist
+     * @throws IOException when file can't be read
+     */
+    public static DocumentManifest load(Path file) throws IOException {
+        DocumentManifest manifest = new DocumentManifest();
+        if (!Files.exists(file))
+            return manifest;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isEmpty())
+                continue;
+            String[] parts = line.split(" ");
+            if (parts.length != 2)
+                throw new IOException("Invalid line in manifest " + file + ": " + line);
+            manifest.put(Long.parseLong(parts[0]), parts[1]);
+        }
+        return manifest;
+    }
+
+    /**
+     * Saves manifest into file
+     *
+     * @param file Manifest file
+     * @throws IOException when file can't be written
+     */
+    public void save(Path file) throws IOException {
+        AtomicFiles.writeAtomically(file, output -> {
+            Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            for (Map.Entry<Long, String> entry : hashes.entrySet()) {
+                writer.write(entry.getKey() + " " + entry.getValue());
+                writer.write(System.lineSeparator());
+            }
+            writer.flush();
+        });
+    }
+
+    /**
+     * Sets hash of document
+     *
+     * @param id   Document ID
+     * @param hash Hash of parsed file
+     */
+    public void put(long id, String hash) {
+        hashes.put(id, hash);
+    }
+
+    /**
+     * Return hash of document
+     *
+     * @param id Document ID
+     * @return hash or null if document isn't in manifest
+     */
+    public String get(long id) {
+        return hashes.get(id);
+    }
+
+    /**
+     * Check if document is in manifest
+     *
+     * @param id Document ID
+     * @return true if manifest contains document
+     */
+    public boolean contains(long id) {
+        return hashes.containsKey(id);
+    }
+
+    /**
+     * Return IDs of all documents in ascending order
+     *
+     * @return sorted document IDs
+     */
+    public Set<Long> getIds() {
+        return Collections.unmodifiableSet(hashes.keySet());
+    }
+
+    /**
+     * Return number of documents
+     *
+     * @return number of documents
+     */
+    public int size() {
+        return hashes.size();
+    }
+
+    /**
+     * Return SHA-1 hash of file content as hexadecimal string
+     *
+     * @param file File
+     * @return hash
+     * @throws IOException when file can't be read
+     */
+    public static String hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported", e);
+        }
+        byte[] buffer = new byte[8192];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) > 0)
+                digest.update(buffer, 0, read);
+        }
+        byte[] bytes = digest.digest();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,128 @@
+package cz.muni.fi.kurcik.kgs.preprocessing;
+
+import cz.muni.fi.kurcik.kgs.util.AtomicFiles;
+import cz.muni.fi.kurcik.kgs.util.Varint;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of lemmas shared by all binary normalized documents. Each lemma gets ID when it is seen first time,
+ * IDs are never changed, so documents written earlier stay valid when new lemmas are added.
+ * Dictionary can be used by more threads at the same time. Lemma for ID is the same String instance for all tokens,
+ * so its hash is computed only once.
+ * <p>
+ * File format:
+ * [magic] [version] [count] as 4 byte integers, then each lemma as varint length and UTF-8 bytes, in order of IDs.
+ *
+ * @author Lukáš Kurčík
+ */
+public class LemmaDictionary {
+
+    public static final String DICTIONARY_FILE = "lemmas.dat";
+
+    protected static final int MAGIC = 0x4b475344; // KGSD
+    protected static final int VERSION = 1;
+
+    protected final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    protected String[] lemmas = new String[1024];
+    protected volatile int size = 0;
+
+    /**
+     * Return ID of lemma, lemma is added if it isn't in dictionary
+     *
+     * @param lemma lemma
+     * @return ID
+     */
+    public int getId(String lemma) {
+        Integer id = ids.get(lemma);
+        if (id != null)
+            return id;
+        synchronized (ids) {
+            id = ids.get(lemma);
+            if (id != null)
+                return id;
+            if (size == lemmas.length)
+                lemmas = Arrays.copyOf(lemmas, lemmas.length * 2);
+            lemmas[size] = lemma;
+            ids.put(lemma, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Return lemma for ID
+     *
+     * @param id ID
+     * @return lemma
+     * @throws IllegalArgumentException if there is no lemma with this ID
+     */
+    public String getLemma(int id) {
+        if (id < 0 || id >= size)
+            throw new IllegalArgumentException("Unknown lemma ID " + id);
+        return lemmas[id];
+    }
+
+    /**
+     * Return number of lemmas
+     *
+     * @return number of lemmas
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Loads dictionary from file
+     *
+     * @param file Dictionary file
+     * @return dictionary
+     * @throws IOException when file can't be read or it has wrong format
+     */
+    public static LemmaDictionary load(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                throw new IOException("File " + file + " is not lemma dictionary");
+            int count = buffer.getInt();
+            LemmaDictionary dictionary = new LemmaDictionary();
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = new byte[Varint.read(buffer)];
+                buffer.get(bytes);
+                dictionary.getId(new String(bytes, StandardCharsets.UTF_8));
+            }
+            return dictionary;
+        } catch (RuntimeException e) {
+            throw new IOException("File " + file + " is corrupted", e);
+        }
+    }
+
+    /**
+     * Saves dictionary into file
+     *
+     * @param file Dictionary file
+     * @throws IOException when file can't be written
+     */
+    public void save(Path file) throws IOException {
+        AtomicFiles.writeAtomically(file, stream -> {
+            DataOutputStream output = new DataOutputStream(stream);
+            synchronized (ids) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                    byte[] bytes = lemmas[i].getBytes(StandardCharsets.UTF_8);
+                    Varint.write(output, bytes.length);
+                    output.write(bytes);
+                }
+            }
+        });
+    }
+}
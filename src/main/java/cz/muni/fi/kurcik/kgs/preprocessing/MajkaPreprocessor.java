@@ -1,25 +1,32 @@
 package cz.muni.fi.kurcik.kgs.preprocessing;
 
 import com.drew.lang.Charsets;
+import cz.muni.fi.kurcik.kgs.clustering.corpus.BinaryCorpus;
 import cz.muni.fi.kurcik.kgs.clustering.corpus.Corpus;
+import cz.muni.fi.kurcik.kgs.clustering.corpus.CorpusShard;
+import cz.muni.fi.kurcik.kgs.clustering.corpus.FrozenVocabulary;
 import cz.muni.fi.kurcik.kgs.clustering.corpus.PruningCorpus;
 import cz.muni.fi.kurcik.kgs.download.Downloader;
+import cz.muni.fi.kurcik.kgs.keywords.TextRank.LanguageCzech;
 import cz.muni.fi.kurcik.kgs.util.AModule;
+import cz.muni.fi.kurcik.kgs.util.LemmaCache;
 import cz.muni.fi.kurcik.kgs.util.Majka;
-import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
-import edu.stanford.nlp.pipeline.Annotation;
-import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import static cz.muni.fi.kurcik.kgs.clustering.Clustering.*;
 
@@ -30,12 +37,22 @@ import static cz.muni.fi.kurcik.kgs.clustering.Clustering.*;
  */
 public class MajkaPreprocessor extends AModule implements Preprocessor {
 
-    protected static final String STOP_WORDS_FILE = "majka/stop_words.txt";
+    /**
+     * Maximal number of documents in one shard of corpus built by more threads
+     */
+    protected static final int SHARD_SIZE = 1000;
 
     protected Path downloadDir;
 
-    protected Set<String> stopWords;
-    protected Pattern numberPattern = Pattern.compile("[0-9]");
+    protected CzechTokenizer tokenizer;
+    protected int threads = 1;
+    protected boolean nativeMajka = false;
+    protected Path lemmaCacheFile = null;
+    protected boolean globalLemmatization = false;
+    protected boolean annotate = false;
+    protected boolean writeNormalizedFiles = true;
+    protected boolean binaryNormalized = false;
+    protected volatile LemmaDictionary lemmaDictionary; // Dictionary of binary normalized files, null if it isn't loaded
 
     /**
      * Create new majka preprocessor
@@ -52,38 +69,828 @@ public class MajkaPreprocessor extends AModule implements Preprocessor {
     public void normalizeParsedFiles() throws IOException {
         getLogger().log(Level.INFO, "Normalizing parsed files");
         createProcessedFolder();
+        invalidateIncrementalState();
+
+        Path parsedDir = downloadDir.resolve(Downloader.PARSED_FILES_DIR);
+
+        File[] parsedFiles = parsedDir.toFile().listFiles((File dir, String name) -> name.endsWith(Downloader.PARSED_EXTENSION));
+        deleteStaleBinaryFiles(parsedFiles);
+        lemmaDictionary = new LemmaDictionary();
+        normalizeFiles(parsedFiles);
+        saveLemmaDictionary();
+
+        getLogger().log(Level.INFO, "Normalization finished");
+    }
+
+    /**
+     * Normalizes parsed files and saves them into NORMALIZED_FILES_DIR
+     *
+     * @param parsedFiles Parsed files
+     * @throws IOException when there is problem with file IO
+     */
+    protected void normalizeFiles(File[] parsedFiles) throws IOException {
+        if (annotate)
+            createAnnotatedFolder();
+        CzechTokenizer tokenizer = getTokenizer();
+        try (Majka majka = new Majka(nativeMajka)) {
+            majka.setCache(loadLemmaCache());
+            if (threads > 1)
+                getLogger().log(Level.INFO, "Normalizing with " + threads + " threads");
+            if (globalLemmatization && !annotate) {
+                normalizeGlobal(parsedFiles, tokenizer, majka,
+                        (i, words) -> writeNormalized(documentId(parsedFiles[i]), words), false);
+            } else {
+                runParallel(parsedFiles.length, i -> normalizeFile(parsedFiles[i], tokenizer, majka));
+            }
+            saveLemmaCache(majka.getCache());
+        }
+    }
+
+    /**
+     * Updates normalized files and clustering files after changes of parsed files.
+     * Manifest with hashes of parsed files is kept in NORMALIZED_FILES_DIR, only new and changed files are normalized
+     * and normalized files of removed documents are deleted. Occurrence counts of words are kept in CLUSTERING_FILES_DIR.
+     * If vocabulary selected from updated counts is the same as current vocabulary, lines of changed documents
+     * in corpus are replaced, new ones are added and removed ones are dropped. Otherwise, or when corpus uses pruning
+     * during building, corpus is built again from all normalized files. Result is the same as from full preprocessing,
+     * only IDs of words can differ. Full preprocessing deletes manifest and word counts, so the first incremental run
+     * after it normalizes all files and builds corpus again.
+     *
+     * @param corpus Corpus builder used if corpus has to be built again
+     * @throws IOException when there is problem with file IO
+     */
+    public void preprocessIncrementally(PruningCorpus corpus) throws IOException {
+        getLogger().log(Level.INFO, "Preprocessing parsed files incrementally");
+        createProcessedFolder();
+        createCorpusFolder();
 
         Path parsedDir = downloadDir.resolve(Downloader.PARSED_FILES_DIR);
         Path processedDir = downloadDir.resolve(NORMALIZED_FILES_DIR);
+        Path clusteringDir = downloadDir.resolve(CLUSTERING_FILES_DIR);
+        Path manifestFile = processedDir.resolve(DocumentManifest.MANIFEST_FILE);
+        Path statisticsFile = clusteringDir.resolve(WordStatistics.STATISTICS_FILE);
+
+        DocumentManifest previous = DocumentManifest.load(manifestFile);
+        DocumentManifest manifest = new DocumentManifest();
+        boolean dictionaryLoaded = loadLemmaDictionary();
+        List<File> changed = new ArrayList<>();
+        Set<Long> changedIds = new HashSet<>();
+        for (File f : parsedDir.toFile().listFiles((File dir, String name) -> name.endsWith(Downloader.PARSED_EXTENSION))) {
+            long id = documentId(f);
+            String hash = DocumentManifest.hash(f.toPath());
+            manifest.put(id, hash);
+            if (!hash.equals(previous.get(id)) || !Files.exists(normalizedFile(id)) || !dictionaryLoaded) {
+                changed.add(f);
+                changedIds.add(id);
+            }
+        }
+        List<Long> removed = new ArrayList<>();
+        for (long id : previous.getIds()) {
+            if (!manifest.contains(id))
+                removed.add(id);
+        }
+        getLogger().log(Level.INFO, "New or changed documents: " + changed.size() + ", removed: " + removed.size()
+                + ", unchanged: " + (manifest.size() - changed.size()));
+
+        WordStatistics statistics = null;
+        if (dictionaryLoaded && Files.exists(statisticsFile)
+                && Files.exists(clusteringDir.resolve(CORPUS_FILE)) && Files.exists(clusteringDir.resolve(VOCAB_FILE))) {
+            try {
+                statistics = WordStatistics.load(statisticsFile);
+            } catch (IOException e) {
+                getLogger().log(Level.WARNING, "Couldn't load word counts, corpus will be built again", e);
+            }
+        }
+        // Counts are saved again only when corpus is consistent with them
+        Files.deleteIfExists(statisticsFile);
+
+        List<Long> outdated = new ArrayList<>(removed);
+        for (long id : changedIds) {
+            if (previous.contains(id))
+                outdated.add(id);
+        }
+        for (long id : outdated) {
+            if (statistics != null) {
+                if (Files.exists(normalizedFile(id)))
+                    statistics.remove(readNormalized(id));
+                else
+                    statistics = null;
+            }
+        }
+        for (long id : removed) {
+            Files.deleteIfExists(normalizedFile(id));
+            Files.deleteIfExists(annotationFile(id));
+        }
+
+        if (!changed.isEmpty()) {
+            normalizeFiles(changed.toArray(new File[changed.size()]));
+            saveLemmaDictionary();
+        }
+        if (statistics != null) {
+            for (long id : changedIds)
+                statistics.add(readNormalized(id));
+        }
+
+        boolean updated = false;
+        if (statistics != null && corpus.getPruningRate() == 0 && corpus.getSketchCapacity() == 0) {
+            FrozenVocabulary vocabulary = FrozenVocabulary.load(clusteringDir.resolve(FROZEN_VOCAB_FILE), clusteringDir.resolve(VOCAB_FILE));
+            Set<String> selected = corpus.selectVocabulary(statistics.getCounts(), statistics.getDocuments());
+            if (selected.size() == vocabulary.size() && vocabulary.containsAll(selected)) {
+                try {
+                    updateCorpusFile(previous, manifest, changedIds, vocabulary);
+                    updated = true;
+                    getLogger().log(Level.INFO, "Vocabulary is unchanged, corpus was updated");
+                } catch (IOException e) {
+                    getLogger().log(Level.WARNING, "Couldn't update corpus, it will be built again", e);
+                }
+            } else {
+                getLogger().log(Level.INFO, "Vocabulary was changed, corpus will be built again");
+            }
+        }
+        if (!updated)
+            statistics = rebuildCorpus(corpus, manifest);
+
+        statistics.save(statisticsFile);
+        manifest.save(manifestFile);
+        getLogger().log(Level.INFO, "Finished preparing clustering files.");
+    }
+
+    /**
+     * Builds corpus from all normalized files in manifest and saves it
+     *
+     * @param corpus   Corpus builder
+     * @param manifest Manifest of normalized files
+     * @return occurrence counts of words
+     * @throws IOException when there is problem with file IO
+     */
+    protected WordStatistics rebuildCorpus(PruningCorpus corpus, DocumentManifest manifest) throws IOException {
+        corpus.setDocCount(manifest.size());
+        WordStatistics statistics = new WordStatistics();
+        for (long id : manifest.getIds()) {
+            String[] words = readNormalized(id);
+            corpus.addDocument(words);
+            statistics.add(words);
+        }
+        saveCorpus(corpus);
+        return statistics;
+    }
+
+    /**
+     * Deletes manifest of normalized files and word counts, which are used by incremental preprocessing.
+     * Full preprocessing rewrites normalized files or corpus without them, so next incremental run
+     * has to build corpus again instead of updating corpus file, that doesn't match manifest.
+     *
+     * @throws IOException when files can't be deleted
+     */
+    protected void invalidateIncrementalState() throws IOException {
+        Files.deleteIfExists(downloadDir.resolve(NORMALIZED_FILES_DIR).resolve(DocumentManifest.MANIFEST_FILE));
+        Files.deleteIfExists(downloadDir.resolve(CLUSTERING_FILES_DIR).resolve(WordStatistics.STATISTICS_FILE));
+    }
+
+    /**
+     * Writes corpus file with lines of unchanged documents copied from current corpus file and lines of changed
+     * documents created from their normalized files. Documents are in order of their IDs.
+     * Binary corpus file is created again from updated corpus file.
+     *
+     * @param previous   Manifest of current corpus file
+     * @param manifest   Manifest of updated documents
+     * @param changedIds IDs of new and changed documents
+     * @param vocabulary Vocabulary of corpus
+     * @throws IOException when files can't be read or corpus file doesn't match previous manifest
+     */
+    protected void updateCorpusFile(DocumentManifest previous, DocumentManifest manifest, Set<Long> changedIds,
+                                    FrozenVocabulary vocabulary) throws IOException {
+        Path clusteringDir = downloadDir.resolve(CLUSTERING_FILES_DIR);
+        Path corpusFile = clusteringDir.resolve(CORPUS_FILE);
+        Path temp = Files.createTempFile(clusteringDir, "corpus-", ".tmp");
+        try (BufferedReader reader = Files.newBufferedReader(corpusFile, Charsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(temp, Charsets.UTF_8)) {
+            Iterator<Long> previousIds = previous.getIds().iterator();
+            for (long id : manifest.getIds()) {
+                String line = null;
+                if (changedIds.contains(id)) {
+                    line = corpusLine(readNormalized(id), vocabulary);
+                } else {
+                    while (line == null && previousIds.hasNext()) {
+                        long previousId = previousIds.next();
+                        String previousLine = reader.readLine();
+                        if (previousLine == null)
+                            throw new IOException("Corpus file has less documents than manifest");
+                        if (previousId == id)
+                            line = previousLine;
+                    }
+                    if (line == null)
+                        throw new IOException("Document " + id + " is missing in corpus file");
+                }
+                writer.write(line);
+                writer.write('\n');
+            }
+            while (previousIds.hasNext()) {
+                previousIds.next();
+                if (reader.readLine() == null)
+                    throw new IOException("Corpus file has less documents than manifest");
+            }
+            if (reader.readLine() != null)
+                throw new IOException("Corpus file has more documents than manifest");
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, corpusFile, StandardCopyOption.REPLACE_EXISTING);
+        BinaryCorpus.convert(corpusFile, clusteringDir.resolve(BINARY_CORPUS_FILE));
+    }
+
+    /**
+     * Return line of corpus file for document, format is described in Corpus
+     *
+     * @param words      Words of document
+     * @param vocabulary Vocabulary of corpus
+     * @return line without line separator
+     */
+    protected String corpusLine(String[] words, FrozenVocabulary vocabulary) {
+        Map<Integer, Integer> counter = new LinkedHashMap<>();
+        for (String word : words) {
+            if (word.isEmpty())
+                continue;
+            int id = vocabulary.getId(word);
+            if (id >= 0)
+                counter.merge(id, 1, Integer::sum);
+        }
+        StringBuilder line = new StringBuilder().append(counter.size()).append(" ");
+        boolean first = true;
+        for (Map.Entry<Integer, Integer> entry : counter.entrySet()) {
+            if (!first)
+                line.append(" ");
+            line.append(entry.getKey()).append(":").append(entry.getValue());
+            first = false;
+        }
+        return line.toString();
+    }
+
+    /**
+     * Return words of normalized document
+     *
+     * @param id Document ID
+     * @return words
+     * @throws IOException when file can't be read
+     */
+    protected String[] readNormalized(long id) throws IOException {
+        if (binaryNormalized) {
+            try (TokenStreamReader reader = new TokenStreamReader(normalizedFile(id), getLemmaDictionary())) {
+                return reader.readAll();
+            }
+        }
+        List<String> lines = FileUtils.readLines(normalizedFile(id).toFile(), Charsets.UTF_8);
+        return lines.isEmpty() ? new String[0] : lines.get(0).split("\\s+");
+    }
+
+    /**
+     * Saves normalized document. Words are separated by spaces in text format.
+     *
+     * @param id    Document ID
+     * @param words Lemmas
+     * @throws IOException when file can't be written
+     */
+    protected void writeNormalized(long id, String[] words) throws IOException {
+        if (binaryNormalized) {
+            try (TokenStreamWriter writer = new TokenStreamWriter(normalizedFile(id), getLemmaDictionary())) {
+                writer.writeAll(words);
+            }
+        } else {
+            FileUtils.writeLines(normalizedFile(id).toFile(), Arrays.asList(words), " ");
+        }
+    }
+
+    /**
+     * Return path of normalized document in current format
+     *
+     * @param id Document ID
+     * @return path in NORMALIZED_FILES_DIR
+     */
+    protected Path normalizedFile(long id) {
+        return downloadDir.resolve(NORMALIZED_FILES_DIR).resolve(id + normalizedExtension());
+    }
+
+    /**
+     * Return extension of normalized files in current format
+     *
+     * @return extension
+     */
+    protected String normalizedExtension() {
+        return binaryNormalized ? TokenStreamWriter.EXTENSION : NORMALIZED_FILE_EXTENSION;
+    }
+
+    /**
+     * Return dictionary of binary normalized files, loads it on first call.
+     * Dictionary is loaded only once even if more threads read normalized files.
+     *
+     * @return lemma dictionary
+     * @throws IOException when dictionary can't be loaded
+     */
+    protected LemmaDictionary getLemmaDictionary() throws IOException {
+        LemmaDictionary current = lemmaDictionary;
+        if (current != null)
+            return current;
+        synchronized (this) {
+            if (lemmaDictionary == null) {
+                Path file = downloadDir.resolve(NORMALIZED_FILES_DIR).resolve(LemmaDictionary.DICTIONARY_FILE);
+                lemmaDictionary = Files.exists(file) ? LemmaDictionary.load(file) : new LemmaDictionary();
+            }
+            return lemmaDictionary;
+        }
+    }
+
+    /**
+     * Loads dictionary of binary normalized files before they are updated
+     *
+     * @return false if binary files are used and dictionary can't be loaded, so existing files can't be read
+     */
+    protected boolean loadLemmaDictionary() {
+        if (!binaryNormalized)
+            return true;
+        lemmaDictionary = null;
+        try {
+            getLemmaDictionary();
+            return Files.exists(downloadDir.resolve(NORMALIZED_FILES_DIR).resolve(LemmaDictionary.DICTIONARY_FILE));
+        } catch (IOException e) {
+            getLogger().log(Level.WARNING, "Couldn't load lemma dictionary, all documents will be normalized again", e);
+            lemmaDictionary = new LemmaDictionary();
+            return false;
+        }
+    }
+
+    /**
+     * Saves dictionary of binary normalized files
+     *
+     * @throws IOException when dictionary can't be saved
+     */
+    protected void saveLemmaDictionary() throws IOException {
+        if (binaryNormalized && lemmaDictionary != null) {
+            lemmaDictionary.save(downloadDir.resolve(NORMALIZED_FILES_DIR).resolve(LemmaDictionary.DICTIONARY_FILE));
+            getLogger().log(Level.INFO, "Lemma dictionary with " + lemmaDictionary.size() + " lemmas saved");
+        }
+    }
+
+    /**
+     * Deletes binary normalized files of documents, that are not parsed anymore. They are not rewritten
+     * by normalization and couldn't be read with new lemma dictionary, that replaces the old one.
+     *
+     * @param parsedFiles Parsed files
+     * @throws IOException when files can't be deleted
+     */
+    protected void deleteStaleBinaryFiles(File[] parsedFiles) throws IOException {
+        if (!binaryNormalized)
+            return;
+        Set<Long> parsedIds = new HashSet<>();
+        for (File f : parsedFiles)
+            parsedIds.add(documentId(f));
+        File[] binaryFiles = downloadDir.resolve(NORMALIZED_FILES_DIR).toFile()
+                .listFiles((File dir, String name) -> name.endsWith(TokenStreamWriter.EXTENSION));
+        int deleted = 0;
+        for (File f : binaryFiles) {
+            if (!parsedIds.contains(documentId(f))) {
+                Files.delete(f.toPath());
+                deleted++;
+            }
+        }
+        if (deleted > 0)
+            getLogger().log(Level.INFO, "Deleted " + deleted + " binary normalized files of documents, that are not parsed anymore");
+    }
 
-        stopWords = loadStopWords();
+    /**
+     * Return ID of document from name of its file
+     *
+     * @param file Parsed or normalized file
+     * @return document ID
+     */
+    protected long documentId(File file) {
+        return Long.parseLong(FilenameUtils.removeExtension(file.getName()));
+    }
+
+    /**
+     * Normalizes parsed files and adds them straight into corpus in order of document IDs, then saves corpus and vocabulary
+     * the same way as prepareClusteringFiles. Normalized files are written only if writeNormalizedFiles is set,
+     * so corpus is built without writing and reading all documents again.
+     *
+     * @param corpus Corpus builder
+     * @throws IOException when there is problem with file IO
+     */
+    public void normalizeIntoCorpus(Corpus corpus) throws IOException {
+        getLogger().log(Level.INFO, "Normalizing parsed files into corpus");
+        createCorpusFolder();
+        if (writeNormalizedFiles)
+            createProcessedFolder();
+        invalidateIncrementalState();
+        if (annotate)
+            createAnnotatedFolder();
+
+        Path parsedDir = downloadDir.resolve(Downloader.PARSED_FILES_DIR);
+
+        CzechTokenizer tokenizer = getTokenizer();
         File[] parsedFiles = parsedDir.toFile().listFiles((File dir, String name) -> name.endsWith(Downloader.PARSED_EXTENSION));
-        Majka majka = new Majka();
-        for (File parsed : parsedFiles) {
-            Path result = processedDir.resolve(parsed.getName());
-            String content = FileUtils.readFileToString(parsed, Charsets.UTF_8);
-            List<String> tokens = tokenize(content);
-            tokens = filterTokens(tokens);
+        Arrays.sort(parsedFiles, Comparator.comparingInt(a -> Integer.parseInt(FilenameUtils.removeExtension(a.getName()))));
+
+        if (corpus instanceof PruningCorpus)
+            ((PruningCorpus) corpus).setDocCount(parsedFiles.length);
 
-            Map<String, String> lemmas = majka.findAll(tokens, Majka.IGNORE_CASE, false);
-            FileUtils.writeLines(result.toFile(), tokens.stream().map(lemmas::get).collect(Collectors.toList()), " ");
+        if (writeNormalizedFiles)
+            deleteStaleBinaryFiles(parsedFiles);
+        lemmaDictionary = new LemmaDictionary();
+        DocumentConsumer consumer = (i, words) -> {
+            if (writeNormalizedFiles)
+                writeNormalized(documentId(parsedFiles[i]), words);
+            corpus.addDocument(words);
+        };
+        try (Majka majka = new Majka(nativeMajka)) {
+            majka.setCache(loadLemmaCache());
+            if (threads > 1)
+                getLogger().log(Level.INFO, "Normalizing with " + threads + " threads");
+            if (globalLemmatization && !annotate)
+                normalizeGlobal(parsedFiles, tokenizer, majka, consumer, true);
+            else
+                runOrdered(parsedFiles.length, i -> normalizeDocument(parsedFiles[i], tokenizer, majka), consumer);
+            saveLemmaCache(majka.getCache());
         }
+        if (writeNormalizedFiles)
+            saveLemmaDictionary();
 
-        getLogger().log(Level.INFO, "Normalization finished");
+        saveCorpus(corpus);
+        getLogger().log(Level.INFO, "Finished preparing clustering files.");
+    }
+
+    /**
+     * Normalizes files in two passes. First pass tokenizes all files and collects unique word forms,
+     * then all forms are lemmatized at once in shards by all threads. Second pass passes documents translated
+     * by table of lemmas to consumer. Result is the same as from normalization of each file separately.
+     *
+     * @param parsedFiles Parsed files
+     * @param tokenizer   Tokenizer
+     * @param majka       Majka shared by threads
+     * @param consumer    Consumer of normalized documents
+     * @param ordered     true if consumer has to get documents sequentially in order of parsedFiles
+     * @throws IOException when there is problem with file IO
+     */
+    protected void normalizeGlobal(File[] parsedFiles, CzechTokenizer tokenizer, Majka majka,
+                                   DocumentConsumer consumer, boolean ordered) throws IOException {
+        Map<String, Integer> formIds = new ConcurrentHashMap<>();
+        AtomicInteger nextId = new AtomicInteger();
+        int[][] documents = new int[parsedFiles.length][];
+        runParallel(parsedFiles.length, i -> {
+            String content = FileUtils.readFileToString(parsedFiles[i], Charsets.UTF_8);
+            List<String> tokens = tokenizer.tokenizeFiltered(content);
+            int[] ids = new int[tokens.size()];
+            for (int t = 0; t < ids.length; t++)
+                ids[t] = formIds.computeIfAbsent(tokens.get(t), form -> nextId.getAndIncrement());
+            documents[i] = ids;
+        });
+
+        String[] forms = new String[nextId.get()];
+        formIds.forEach((form, id) -> forms[id] = form);
+        long tokenCount = Arrays.stream(documents).mapToLong(d -> d.length).sum();
+        getLogger().log(Level.INFO, "Lemmatizing " + forms.length + " unique forms of " + tokenCount + " tokens");
+
+        String[] lemmas = new String[forms.length];
+        int shards = Math.max(1, threads);
+        int shardSize = (forms.length + shards - 1) / shards;
+        runParallel(shards, shard -> {
+            int from = Math.min(forms.length, shard * shardSize);
+            int to = Math.min(forms.length, from + shardSize);
+            List<String> shardForms = Arrays.asList(forms).subList(from, to);
+            Map<String, String> shardLemmas = majka.findAll(shardForms, Majka.IGNORE_CASE, false);
+            for (int f = from; f < to; f++)
+                lemmas[f] = shardLemmas.get(forms[f]);
+        });
+
+        IndexedTask output = i -> {
+            String[] words = new String[documents[i].length];
+            for (int t = 0; t < words.length; t++)
+                words[t] = lemmas[documents[i][t]];
+            documents[i] = null;
+            consumer.accept(i, words);
+        };
+        if (ordered) {
+            for (int i = 0; i < parsedFiles.length; i++)
+                output.run(i);
+        } else {
+            runParallel(parsedFiles.length, output);
+        }
+    }
+
+    /**
+     * Runs task for indexes from 0 to count - 1 by pool of threads, or sequentially if only one thread is used.
+     *
+     * @param count number of tasks
+     * @param task  task
+     * @throws IOException when some task fails
+     */
+    protected void runParallel(int count, IndexedTask task) throws IOException {
+        if (threads <= 1) {
+            for (int i = 0; i < count; i++)
+                task.run(i);
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    task.run(index);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Normalization was interrupted", e);
+        } catch (ExecutionException e) {
+            throw normalizationFailure(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Normalizes documents by pool of threads and passes them to consumer sequentially in order of indexes.
+     * Only few documents ahead of consumer are normalized at the same time, so memory usage doesn't grow with number of documents.
+     *
+     * @param count    number of documents
+     * @param task     normalization of document with index
+     * @param consumer consumer called from this thread
+     * @throws IOException when normalization or consumer fails
+     */
+    protected void runOrdered(int count, DocumentTask task, DocumentConsumer consumer) throws IOException {
+        if (threads <= 1) {
+            for (int i = 0; i < count; i++)
+                consumer.accept(i, task.run(i));
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            int window = threads * 4;
+            Deque<Future<String[]>> pending = new ArrayDeque<>(window);
+            int submitted = 0;
+            for (int i = 0; i < count; i++) {
+                while (submitted < count && submitted < i + window) {
+                    int index = submitted++;
+                    pending.add(executor.submit(() -> task.run(index)));
+                }
+                consumer.accept(i, pending.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Normalization was interrupted", e);
+        } catch (ExecutionException e) {
+            throw normalizationFailure(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Return IOException for failed task, original exception if it was IOException
+     *
+     * @param e exception from task
+     * @return IOException
+     */
+    protected IOException normalizationFailure(ExecutionException e) {
+        if (e.getCause() instanceof IOException)
+            return (IOException) e.getCause();
+        return new IOException("Normalization failed", e.getCause());
+    }
+
+    /**
+     * Normalizes one parsed file
+     *
+     * @param parsed    Parsed file
+     * @param tokenizer Tokenizer
+     * @param majka     Majka
+     * @throws IOException when there is problem with file IO
+     */
+    protected void normalizeFile(File parsed, CzechTokenizer tokenizer, Majka majka) throws IOException {
+        writeNormalized(documentId(parsed), normalizeDocument(parsed, tokenizer, majka));
+    }
+
+    /**
+     * Return lemmas of words in parsed file
+     *
+     * @param parsed    Parsed file
+     * @param tokenizer Tokenizer
+     * @param majka     Majka
+     * @return lemmas in order of words
+     * @throws IOException when file can't be read
+     */
+    protected String[] normalizeDocument(File parsed, CzechTokenizer tokenizer, Majka majka) throws IOException {
+        String content = FileUtils.readFileToString(parsed, Charsets.UTF_8);
+        if (annotate)
+            return annotateDocument(documentId(parsed), content, tokenizer, majka);
+        List<String> tokens = tokenizer.tokenizeFiltered(content);
+
+        Map<String, String> lemmas = majka.findAll(tokens, Majka.IGNORE_CASE, false);
+        String[] words = new String[tokens.size()];
+        for (int i = 0; i < words.length; i++)
+            words[i] = lemmas.get(tokens.get(i));
+        return words;
+    }
+
+    /**
+     * Splits document into sentences, tags all its tokens and saves annotation into ANNOTATED_FILES_DIR.
+     * Return the same lemmas as normalization without annotation, they are taken from the same tokens.
+     *
+     * @param id        Document ID
+     * @param content   Text of document
+     * @param tokenizer Tokenizer
+     * @param majka     Majka
+     * @return lemmas of filtered words in order of words
+     * @throws IOException when annotation can't be saved
+     */
+    protected String[] annotateDocument(long id, String content, CzechTokenizer tokenizer, Majka majka) throws IOException {
+        List<List<CoreLabel>> sentences = tokenizer.tokenizeSentences(content);
+        Set<String> words = new HashSet<>();
+        for (List<CoreLabel> sentence : sentences) {
+            for (CoreLabel label : sentence) {
+                words.add(label.word());
+                words.add(label.value());
+            }
+        }
+        Map<String, String> lemmas = majka.findAll(new ArrayList<>(words), Majka.IGNORE_CASE, false);
+        Map<String, String> lemmaTags = majka.findAll(new ArrayList<>(new HashSet<>(lemmas.values())), Majka.IGNORE_CASE, true);
+
+        DocumentAnnotation annotation = new DocumentAnnotation();
+        List<String> normalized = new ArrayList<>();
+        for (List<CoreLabel> sentence : sentences) {
+            String[] sentenceWords = new String[sentence.size()];
+            String[] sentenceLemmas = new String[sentence.size()];
+            String[] sentenceTags = new String[sentence.size()];
+            for (int i = 0; i < sentenceWords.length; i++) {
+                CoreLabel label = sentence.get(i);
+                sentenceWords[i] = label.word();
+                sentenceLemmas[i] = lemmas.get(label.word());
+                sentenceTags[i] = lemmaTags.get(sentenceLemmas[i]).replaceAll(LanguageCzech.TAG_REGEX, "");
+                if (tokenizer.accept(label.value()))
+                    normalized.add(lemmas.get(label.value()));
+            }
+            annotation.addSentence(sentenceWords, sentenceLemmas, sentenceTags);
+        }
+        annotation.save(annotationFile(id));
+        return normalized.toArray(new String[normalized.size()]);
+    }
+
+    /**
+     * Return path of annotation of document
+     *
+     * @param id Document ID
+     * @return path in ANNOTATED_FILES_DIR
+     */
+    protected Path annotationFile(long id) {
+        return downloadDir.resolve(ANNOTATED_FILES_DIR).resolve(id + DocumentAnnotation.EXTENSION);
+    }
+
+    /**
+     * Sets number of threads used for normalization
+     *
+     * @param threads number of threads, 1 means sequential normalization
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Creates lemma cache, loads it from lemmaCacheFile if it exists
+     *
+     * @return lemma cache
+     */
+    protected LemmaCache loadLemmaCache() {
+        LemmaCache cache = new LemmaCache();
+        if (lemmaCacheFile != null && Files.exists(lemmaCacheFile)) {
+            try {
+                int loaded = cache.load(lemmaCacheFile);
+                getLogger().log(Level.INFO, "Loaded " + loaded + " lemmas from " + lemmaCacheFile);
+            } catch (IOException e) {
+                getLogger().log(Level.WARNING, "Couldn't load lemma cache, starting with empty cache", e);
+                cache = new LemmaCache();
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Saves lemma cache into lemmaCacheFile if it is set
+     *
+     * @param cache lemma cache
+     * @throws IOException when cache can't be saved
+     */
+    protected void saveLemmaCache(LemmaCache cache) throws IOException {
+        getLogger().log(Level.INFO, "Lemma cache: " + cache);
+        if (lemmaCacheFile != null) {
+            cache.save(lemmaCacheFile);
+            getLogger().log(Level.INFO, "Lemma cache saved into " + lemmaCacheFile);
+        }
+    }
+
+    /**
+     * Sets file for lemma cache, which is loaded before normalization and saved after it
+     *
+     * @param lemmaCacheFile file for cache, null means cache isn't saved
+     */
+    public void setLemmaCacheFile(Path lemmaCacheFile) {
+        this.lemmaCacheFile = lemmaCacheFile;
+    }
+
+    /**
+     * Sets if all files should be lemmatized at once, using table of unique word forms
+     *
+     * @param globalLemmatization true for two-pass lemmatization
+     */
+    public void setGlobalLemmatization(boolean globalLemmatization) {
+        this.globalLemmatization = globalLemmatization;
+    }
+
+    /**
+     * Sets if normalizeIntoCorpus should also save normalized files into NORMALIZED_FILES_DIR
+     *
+     * @param writeNormalizedFiles true for saving normalized files
+     */
+    public void setWriteNormalizedFiles(boolean writeNormalizedFiles) {
+        this.writeNormalizedFiles = writeNormalizedFiles;
+    }
+
+    /**
+     * Sets if normalized files should be saved in binary format, as IDs of lemmas from shared dictionary
+     *
+     * @param binaryNormalized true for binary format, false for text files
+     */
+    public void setBinaryNormalized(boolean binaryNormalized) {
+        this.binaryNormalized = binaryNormalized;
+    }
+
+    /**
+     * Sets if annotations of documents (sentences, tokens, lemmas and tags) should be saved for keyword generation.
+     * Two-pass global lemmatization is not used with annotations.
+     *
+     * @param annotate true for saving annotations
+     */
+    public void setAnnotate(boolean annotate) {
+        this.annotate = annotate;
+    }
+
+    /**
+     * Sets if C++ library should be used for lemmatization instead of pure Java dictionary reader
+     *
+     * @param nativeMajka true for C++ library
+     */
+    public void setNativeMajka(boolean nativeMajka) {
+        this.nativeMajka = nativeMajka;
+    }
+
+    /**
+     * Task for one index, used by runParallel
+     */
+    protected interface IndexedTask {
+        void run(int index) throws IOException;
+    }
+
+    /**
+     * Normalization of document with index, used by runOrdered
+     */
+    protected interface DocumentTask {
+        String[] run(int index) throws IOException;
+    }
+
+    /**
+     * Consumer of normalized document with index
+     */
+    protected interface DocumentConsumer {
+        void accept(int index, String[] words) throws IOException;
+    }
+
+    /**
+     * Return tokenizer, creates it on first call
+     *
+     * @return tokenizer
+     * @throws IOException when stop words can't be loaded
+     */
+    protected CzechTokenizer getTokenizer() throws IOException {
+        if (tokenizer == null)
+            tokenizer = new CzechTokenizer(loadStopWords());
+        return tokenizer;
     }
 
     /**
      * Remove stop words, numbers and short words from tokens
      * @param tokens tokens to be filtered
      * @return filtered tokens
+     * @throws IOException when stop words can't be loaded
      */
-    protected List<String> filterTokens(List<String> tokens) {
-        return tokens.stream()
-                .filter(token -> !stopWords.contains(token.toLowerCase()))
-                .filter(token -> token.length() > 3)
-                .filter(token ->token.length() < 30)
-                .filter(token -> !numberPattern.matcher(token).find())
-                .collect(Collectors.toList());
+    protected List<String> filterTokens(List<String> tokens) throws IOException {
+        CzechTokenizer tokenizer = getTokenizer();
+        List<String> result = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            if (tokenizer.accept(token))
+                result.add(token);
+        }
+        return result;
     }
 
     /**
@@ -91,21 +898,10 @@ public class MajkaPreprocessor extends AModule implements Preprocessor {
      *
      * @param content Content of file
      * @return List of word tokens
+     * @throws IOException when stop words can't be loaded
      */
-    protected List<String> tokenize(String content) {
-        Properties props = new Properties();
-        props.put("annotators", "tokenize");
-        StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
-        Annotation document = new Annotation(content);
-        pipeline.annotate(document);
-        List<CoreLabel> labels = document.get(CoreAnnotations.TokensAnnotation.class);
-        List<String> result = new ArrayList<>();
-        for (CoreLabel l : labels) {
-            if (!l.toString().matches("^\\W+$")) {
-                result.add(l.toString());
-            }
-        }
-        return result;
+    protected List<String> tokenize(String content) throws IOException {
+        return getTokenizer().tokenize(content);
     }
 
     /**
@@ -115,16 +911,7 @@ public class MajkaPreprocessor extends AModule implements Preprocessor {
      * @throws IOException when there is problem with file IO
      */
     protected Set<String> loadStopWords() throws IOException {
-        Set<String> stopWords = new HashSet<>();
-        try (InputStream inputStream = MajkaPreprocessor.class.getClassLoader().getResourceAsStream(STOP_WORDS_FILE);
-             InputStreamReader inputStreamReader = new InputStreamReader(inputStream);
-             BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-            String line;
-            while ((line = bufferedReader.readLine()) != null) {
-                stopWords.add(line);
-            }
-        }
-        return stopWords;
+        return CzechTokenizer.loadStopWords();
     }
 
     /**
@@ -139,22 +926,92 @@ public class MajkaPreprocessor extends AModule implements Preprocessor {
     public void prepareClusteringFiles(Corpus corpus) throws IOException {
         getLogger().log(Level.INFO, "Preparing clustering files.");
         createCorpusFolder();
+        invalidateIncrementalState();
 
         Path processedDir = downloadDir.resolve(NORMALIZED_FILES_DIR);
-        File[] parsedFiles = processedDir.toFile().listFiles((File dir, String name) -> name.endsWith(Downloader.PARSED_EXTENSION));
+        String extension = normalizedExtension();
+        File[] parsedFiles = processedDir.toFile().listFiles((File dir, String name) -> name.endsWith(extension));
         Arrays.sort(parsedFiles, Comparator.comparingInt(a -> Integer.parseInt(FilenameUtils.removeExtension(a.getName()))));
 
         if (corpus instanceof PruningCorpus)
             ((PruningCorpus) corpus).setDocCount(parsedFiles.length);
 
-        for (File f : parsedFiles) {
-            String[] words = FileUtils.readLines(f, Charsets.UTF_8).get(0).split("\\s+");
-            corpus.addDocument(words);
+        if (threads > 1 && corpus instanceof PruningCorpus && ((PruningCorpus) corpus).canMergeShards()) {
+            addSharded((PruningCorpus) corpus, parsedFiles);
+        } else {
+            for (File f : parsedFiles)
+                corpus.addDocument(readNormalized(documentId(f)));
+        }
+
+        saveCorpus(corpus);
+        getLogger().log(Level.INFO, "Finished preparing clustering files.");
+    }
+
+    /**
+     * Adds normalized files into corpus by shards. Shards are read and encoded by pool of threads and each shard
+     * is merged into corpus as soon as it and all shards before it are built, so corpus is the same as from adding
+     * files one by one. Only few shards with at most SHARD_SIZE documents are built at the same time,
+     * so memory used by vocabularies of shards doesn't grow with number of documents.
+     *
+     * @param corpus Corpus builder with set number of documents
+     * @param files  Normalized files in order of document IDs
+     * @throws IOException when there is problem with file IO
+     */
+    protected void addSharded(PruningCorpus corpus, File[] files) throws IOException {
+        int[] bounds = corpus.getShardBounds(Math.max(threads, (files.length + SHARD_SIZE - 1) / SHARD_SIZE));
+        int count = bounds.length - 1;
+        getLogger().log(Level.INFO, "Building corpus in " + count + " shards with " + threads + " threads");
+        if (binaryNormalized)
+            getLemmaDictionary(); // Loaded before shards, so threads only read it
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            int window = threads * 2;
+            Deque<Future<CorpusShard>> pending = new ArrayDeque<>(window);
+            int submitted = 0;
+            for (int s = 0; s < count; s++) {
+                while (submitted < count && submitted < s + window) {
+                    int shard = submitted++;
+                    pending.add(executor.submit(() -> buildShard(files, bounds[shard], bounds[shard + 1])));
+                }
+                corpus.addShard(pending.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Building of corpus was interrupted", e);
+        } catch (ExecutionException e) {
+            throw normalizationFailure(e);
+        } finally {
+            executor.shutdownNow();
         }
+    }
 
+    /**
+     * Reads normalized files into new shard of corpus
+     *
+     * @param files Normalized files
+     * @param from  Index of first file of shard
+     * @param to    Index after last file of shard
+     * @return shard
+     * @throws IOException when file can't be read
+     */
+    protected CorpusShard buildShard(File[] files, int from, int to) throws IOException {
+        CorpusShard shard = new CorpusShard();
+        for (int i = from; i < to; i++)
+            shard.addDocument(readNormalized(documentId(files[i])));
+        return shard;
+    }
+
+    /**
+     * Saves corpus and its vocabulary in text and binary format into CLUSTERING_FILES_DIR
+     *
+     * @param corpus Corpus builder
+     * @throws IOException when there is problem with file IO
+     */
+    protected void saveCorpus(Corpus corpus) throws IOException {
         corpus.save(downloadDir.resolve(CLUSTERING_FILES_DIR).resolve(CORPUS_FILE));
+        corpus.saveBinary(downloadDir.resolve(CLUSTERING_FILES_DIR).resolve(BINARY_CORPUS_FILE));
         corpus.getVocabulary().save(downloadDir.resolve(CLUSTERING_FILES_DIR).resolve(VOCAB_FILE));
-        getLogger().log(Level.INFO, "Finished preparing clustering files.");
+        FrozenVocabulary.freeze(corpus.getVocabulary()).save(downloadDir.resolve(CLUSTERING_FILES_DIR).resolve(FROZEN_VOCAB_FILE));
     }
 
     /**
@@ -171,6 +1028,20 @@ public class MajkaPreprocessor extends AModule implements Preprocessor {
         }
     }
 
+    /**
+     * Creates folder for annotations of documents
+     *
+     * @throws IOException if there is problem with creating folder
+     */
+    protected void createAnnotatedFolder() throws IOException {
+        try {
+            Files.createDirectories(downloadDir.resolve(ANNOTATED_FILES_DIR));
+        } catch (IOException e) {
+            getLogger().severe("Couldn't create folder '" + downloadDir.resolve(ANNOTATED_FILES_DIR).toAbsolutePath().toString() + "' for annotations");
+            throw e;
+        }
+    }
+
     /**
      * Creates folder for corpus files
      *
@@ -17,6 +17,7 @@ public interface Preprocessor extends Module {
 
     String NORMALIZED_FILES_DIR = "normalized";
     String NORMALIZED_FILE_EXTENSION = ".txt";
+    String ANNOTATED_FILES_DIR = "annotated";
 
     /**
      * Takes all files from Downloader.PARSED_FILES_DIR, takes words from them, normalizes them and saves them into NORMALIZED_FILES_DIR.
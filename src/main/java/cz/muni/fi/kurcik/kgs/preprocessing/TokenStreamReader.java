@@ -0,0 +1,101 @@
+package cz.muni.fi.kurcik.kgs.preprocessing;
+
+import cz.muni.fi.kurcik.kgs.util.Varint;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reader of binary normalized document written by TokenStreamWriter.
+ * Tokens are read one by one in their order, so document doesn't need to be loaded whole.
+ *
+ * @author Lukáš Kurčík
+ */
+public class TokenStreamReader implements Closeable {
+
+    protected final InputStream input;
+    protected final LemmaDictionary dictionary;
+
+    /**
+     * Creates reader and checks header of document
+     *
+     * @param input      Input stream, it is closed with reader
+     * @param dictionary Lemma dictionary used for writing
+     * @throws IOException when header is invalid
+     */
+    public TokenStreamReader(InputStream input, LemmaDictionary dictionary) throws IOException {
+        this.input = input;
+        this.dictionary = dictionary;
+        int version = input.read();
+        if (version != TokenStreamWriter.VERSION) {
+            input.close();
+            throw new IOException("Unsupported version of token stream: " + version);
+        }
+    }
+
+    /**
+     * Creates reader of file
+     *
+     * @param file       Document file
+     * @param dictionary Lemma dictionary used for writing
+     * @throws IOException when file can't be opened
+     */
+    public TokenStreamReader(Path file, LemmaDictionary dictionary) throws IOException {
+        this(new BufferedInputStream(Files.newInputStream(file)), dictionary);
+    }
+
+    /**
+     * Reads lemma ID of next token
+     *
+     * @return lemma ID or -1 at the end of document
+     * @throws IOException when there is problem with reading
+     */
+    public int nextId() throws IOException {
+        return Varint.read(input);
+    }
+
+    /**
+     * Reads lemma of next token
+     *
+     * @return lemma or null at the end of document
+     * @throws IOException when there is problem with reading or ID is not in dictionary
+     */
+    public String next() throws IOException {
+        int id = nextId();
+        if (id < 0)
+            return null;
+        try {
+            return dictionary.getLemma(id);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Token stream doesn't match lemma dictionary", e);
+        }
+    }
+
+    /**
+     * Reads all remaining tokens
+     *
+     * @return lemmas of tokens
+     * @throws IOException when there is problem with reading
+     */
+    public String[] readAll() throws IOException {
+        String[] lemmas = new String[64];
+        int count = 0;
+        String lemma;
+        while ((lemma = next()) != null) {
+            if (count == lemmas.length)
+                lemmas = Arrays.copyOf(lemmas, count * 2);
+            lemmas[count++] = lemma;
+        }
+        return Arrays.copyOf(lemmas, count);
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
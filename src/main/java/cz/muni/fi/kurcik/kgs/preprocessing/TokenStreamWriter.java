@@ -0,0 +1,77 @@
+package cz.muni.fi.kurcik.kgs.preprocessing;
+
+import cz.muni.fi.kurcik.kgs.util.Varint;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writer of binary normalized document. Document is sequence of lemma IDs from LemmaDictionary in order of tokens.
+ * <p>
+ * File format:
+ * [version] as one byte, then each token as varint ID of its lemma, until end of file.
+ *
+ * @author Lukáš Kurčík
+ */
+public class TokenStreamWriter implements Closeable {
+
+    public static final String EXTENSION = ".bin";
+    public static final int VERSION = 1;
+
+    protected final OutputStream output;
+    protected final LemmaDictionary dictionary;
+
+    /**
+     * Creates writer and writes header of document
+     *
+     * @param output     Output stream, it is closed with writer
+     * @param dictionary Lemma dictionary
+     * @throws IOException when there is problem with writing
+     */
+    public TokenStreamWriter(OutputStream output, LemmaDictionary dictionary) throws IOException {
+        this.output = output;
+        this.dictionary = dictionary;
+        output.write(VERSION);
+    }
+
+    /**
+     * Creates writer of file
+     *
+     * @param file       Document file
+     * @param dictionary Lemma dictionary
+     * @throws IOException when file can't be created
+     */
+    public TokenStreamWriter(Path file, LemmaDictionary dictionary) throws IOException {
+        this(new BufferedOutputStream(Files.newOutputStream(file)), dictionary);
+    }
+
+    /**
+     * Writes one token
+     *
+     * @param lemma Lemma of token
+     * @throws IOException when there is problem with writing
+     */
+    public void write(String lemma) throws IOException {
+        Varint.write(output, dictionary.getId(lemma));
+    }
+
+    /**
+     * Writes tokens
+     *
+     * @param lemmas Lemmas of tokens
+     * @throws IOException when there is problem with writing
+     */
+    public void writeAll(String[] lemmas) throws IOException {
+        for (String lemma : lemmas)
+            write(lemma);
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+}
@@ -0,0 +1,120 @@
+package cz.muni.fi.kurcik.kgs.preprocessing;
+
+import cz.muni.fi.kurcik.kgs.util.AtomicFiles;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Occurrence counts of words in all documents of corpus, kept between incremental preprocessing runs.
+ * Counts are the same as counts collected by PruningCorpus, so vocabulary can be selected without reading all documents.
+ * <p>
+ * File format:
+ * First line contains number of documents, each other line contains [count] [word].
+ *
+ * @author Lukáš Kurčík
+ */
+public class WordStatistics {
+
+    public static final String STATISTICS_FILE = "word_counts.dat";
+
+    protected final Map<String, Long> counts = new HashMap<>();
+    protected long documents = 0;
+
+    /**
+     * Loads statistics from file
+     *
+     * @param file Statistics file
+     * @return statistics
+     * @throws IOException when file can't be read
+     */
+    public static WordStatistics load(Path file) throws IOException {
+        WordStatistics statistics = new WordStatistics();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (line == null)
+                throw new IOException("File " + file + " is empty");
+            statistics.documents = Long.parseLong(line);
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space < 0)
+                    throw new IOException("Invalid line in " + file + ": " + line);
+                statistics.counts.put(line.substring(space + 1), Long.parseLong(line.substring(0, space)));
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("File " + file + " is corrupted", e);
+        }
+        return statistics;
+    }
+
+    /**
+     * Saves statistics into file
+     *
+     * @param file Statistics file
+     * @throws IOException when file can't be written
+     */
+    public void save(Path file) throws IOException {
+        AtomicFiles.writeAtomically(file, output -> {
+            Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            writer.write(Long.toString(documents));
+            writer.write(System.lineSeparator());
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                writer.write(entry.getValue() + " " + entry.getKey());
+                writer.write(System.lineSeparator());
+            }
+            writer.flush();
+        });
+    }
+
+    /**
+     * Adds words of new document
+     *
+     * @param words All words in document
+     */
+    public void add(String[] words) {
+        for (String word : words) {
+            if (!word.isEmpty())
+                counts.merge(word, 1L, Long::sum);
+        }
+        documents++;
+    }
+
+    /**
+     * Removes words of document, that was added before
+     *
+     * @param words All words in document
+     */
+    public void remove(String[] words) {
+        for (String word : words) {
+            if (!word.isEmpty())
+                counts.computeIfPresent(word, (k, v) -> v > 1 ? v - 1 : null);
+        }
+        documents--;
+    }
+
+    /**
+     * Return occurrence counts of words
+     *
+     * @return word counts
+     */
+    public Map<String, Long> getCounts() {
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Return number of documents
+     *
+     * @return number of documents
+     */
+    public long getDocuments() {
+        return documents;
+    }
+}
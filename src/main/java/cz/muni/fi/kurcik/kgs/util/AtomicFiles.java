@@ -0,0 +1,53 @@
+package cz.muni.fi.kurcik.kgs.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Helper class for saving files, that are read again by next runs
+ *
+ * @author Lukáš Kurčík
+ */
+public class AtomicFiles {
+
+    protected static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Writes file through temporary file in the same directory, which then replaces the file.
+     * File is replaced atomically, so it is never left half-written.
+     *
+     * @param file   File
+     * @param writer Writer of content into buffered stream
+     * @throws IOException when file can't be written
+     */
+    public static void writeAtomically(Path file, IOConsumer<OutputStream> writer) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName() + "-", ".tmp");
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE)) {
+            writer.accept(output);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Consumer that can throw IOException
+     *
+     * @param <T> Type of consumed value
+     */
+    public interface IOConsumer<T> {
+        void accept(T value) throws IOException;
+    }
+}
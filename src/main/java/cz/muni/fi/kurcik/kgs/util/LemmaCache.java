@@ -0,0 +1,263 @@
+package cz.muni.fi.kurcik.kgs.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of word -> lemma:tag results shared by threads.
+ * Reads don't lock, they only mark entry as recently used. When cache is full, entry is evicted by CLOCK algorithm,
+ * i.e. hand goes around entries, clears their marks and evicts first entry without mark.
+ * <p>
+ * Cache can be saved into compact file and loaded from it on next run. Entries are sorted by word,
+ * each word is saved as length of prefix shared with previous word and rest of the word,
+ * each lemma as length of prefix shared with its word and rest of the lemma. Lengths are varints, strings are UTF-8.
+ *
+ * @author Lukáš Kurčík
+ */
+public class LemmaCache {
+
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    protected static final int MAGIC = 0x4b47534c; // KGSL
+    protected static final int VERSION = 1;
+
+    protected final int capacity;
+    protected final Map<String, Entry> entries;
+    protected final Entry[] clock;
+    protected int size = 0;
+    protected int hand = 0;
+
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+    protected final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates cache with DEFAULT_CAPACITY
+     */
+    public LemmaCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates cache
+     *
+     * @param capacity maximal number of entries
+     */
+    public LemmaCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity of cache must be positive");
+        this.capacity = capacity;
+        this.entries = new ConcurrentHashMap<>(Math.min(capacity, 1 << 16));
+        this.clock = new Entry[capacity];
+    }
+
+    /**
+     * Return cached lemma:tag for word
+     *
+     * @param word word
+     * @return lemma:tag or null if word isn't cached
+     */
+    public String get(String word) {
+        Entry entry = entries.get(word);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        entry.referenced = true;
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Saves lemma:tag for word, evicts other entry if cache is full
+     *
+     * @param word  word
+     * @param value lemma:tag
+     */
+    public void put(String word, String value) {
+        Entry current = entries.get(word);
+        if (current != null) {
+            current.value = value;
+            return;
+        }
+        synchronized (clock) {
+            if (entries.containsKey(word))
+                return;
+            Entry entry = new Entry(word, value);
+            if (size < capacity) {
+                clock[size++] = entry;
+            } else {
+                while (clock[hand].referenced) {
+                    clock[hand].referenced = false;
+                    hand = (hand + 1) % capacity;
+                }
+                entries.remove(clock[hand].word);
+                evictions.increment();
+                clock[hand] = entry;
+                hand = (hand + 1) % capacity;
+            }
+            entries.put(word, entry);
+        }
+    }
+
+    /**
+     * Return number of cached entries
+     *
+     * @return number of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Return ratio of hits to all reads
+     *
+     * @return hit rate from 0 to 1, 0 if there were no reads
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Saves all entries into file
+     *
+     * @param file file
+     * @throws IOException when file can't be written
+     */
+    public void save(Path file) throws IOException {
+        List<Entry> sorted;
+        synchronized (clock) {
+            sorted = new ArrayList<>(entries.values());
+        }
+        Collections.sort(sorted, (a, b) -> a.word.compareTo(b.word));
+
+        AtomicFiles.writeAtomically(file, stream -> {
+            DataOutputStream output = new DataOutputStream(stream);
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(sorted.size());
+            byte[] previous = new byte[0];
+            for (Entry entry : sorted) {
+                byte[] word = entry.word.getBytes(StandardCharsets.UTF_8);
+                byte[] value = entry.value.getBytes(StandardCharsets.UTF_8);
+                writePrefixed(output, previous, word);
+                writePrefixed(output, word, value);
+                previous = word;
+            }
+        });
+    }
+
+    /**
+     * Loads entries from file saved by save method. File is memory-mapped and read in one pass.
+     * If file has more entries than capacity, only first entries are loaded.
+     *
+     * @param file file
+     * @return number of loaded entries
+     * @throws IOException when file can't be read or it has wrong format
+     */
+    public int load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                throw new IOException("File " + file + " is not lemma cache");
+            int count = buffer.getInt();
+            byte[] previous = new byte[0];
+            int loaded = 0;
+            for (int i = 0; i < count && loaded < capacity; i++) {
+                byte[] word = readPrefixed(buffer, previous);
+                byte[] value = readPrefixed(buffer, word);
+                put(new String(word, StandardCharsets.UTF_8), new String(value, StandardCharsets.UTF_8));
+                previous = word;
+                loaded++;
+            }
+            return loaded;
+        } catch (RuntimeException e) {
+            throw new IOException("File " + file + " is corrupted", e);
+        }
+    }
+
+    /**
+     * Writes bytes as length of prefix shared with base and rest of bytes
+     *
+     * @param output output
+     * @param base   base bytes
+     * @param bytes  bytes
+     * @throws IOException when there is problem with writing
+     */
+    protected static void writePrefixed(OutputStream output, byte[] base, byte[] bytes) throws IOException {
+        int shared = 0;
+        int max = Math.min(base.length, bytes.length);
+        while (shared < max && base[shared] == bytes[shared])
+            shared++;
+        Varint.write(output, shared);
+        Varint.write(output, bytes.length - shared);
+        output.write(bytes, shared, bytes.length - shared);
+    }
+
+    /**
+     * Reads bytes written by writePrefixed
+     *
+     * @param buffer buffer
+     * @param base   base bytes
+     * @return bytes
+     */
+    protected static byte[] readPrefixed(ByteBuffer buffer, byte[] base) {
+        int shared = Varint.read(buffer);
+        int rest = Varint.read(buffer);
+        byte[] bytes = new byte[shared + rest];
+        System.arraycopy(base, 0, bytes, 0, shared);
+        buffer.get(bytes, shared, rest);
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("entries=%d/%d hits=%d misses=%d evictions=%d hitRate=%.1f%%",
+                size(), capacity, getHits(), getMisses(), getEvictions(), 100 * getHitRate());
+    }
+
+    /**
+     * Cached result
+     */
+    protected static class Entry {
+        protected final String word;
+        protected volatile String value;
+        protected volatile boolean referenced = false;
+
+        protected Entry(String word, String value) {
+            this.word = word;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package cz.muni.fi.kurcik.kgs.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Link graph between downloaded documents stored in compressed sparse row format.
+ * Documents are identified by IDs assigned by Downloader, numbered from 1.
+ * <p>
+ * File format (all numbers are big-endian 32 bit integers):
+ * [MAGIC] [VERSION] [N] [E]
+ * [link count]{N}
+ * [out offset]{N+1} [out target]{E}
+ * [in offset]{N+1} [in source]{E}
+ * where N is number of documents and E is number of links between documents.
+ * Link count is number of all links on the page, including links that are not pointing to downloaded documents.
+ *
+ * @author Lukáš Kurčík
+ */
+public class LinkGraph {
+
+    protected static final int MAGIC = 0x4B47534C;
+    protected static final int VERSION = 1;
+
+    protected final int nodes;
+    protected final int[] linkCounts;
+    protected final int[] outOffsets;
+    protected final int[] outTargets;
+    protected final int[] inOffsets;
+    protected final int[] inSources;
+
+    /**
+     * Creates graph from CSR arrays
+     *
+     * @param linkCounts Number of all links for each document
+     * @param outOffsets Offsets of outgoing links for each document
+     * @param outTargets Targets of outgoing links
+     * @param inOffsets  Offsets of ingoing links for each document
+     * @param inSources  Sources of ingoing links
+     */
+    protected LinkGraph(int[] linkCounts, int[] outOffsets, int[] outTargets, int[] inOffsets, int[] inSources) {
+        this.nodes = linkCounts.length;
+        this.linkCounts = linkCounts;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+    }
+
+    /**
+     * Creates graph from list of edges
+     *
+     * @param nodes      Number of documents
+     * @param sources    Source document IDs
+     * @param targets    Target document IDs
+     * @param edges      Number of edges in sources and targets arrays
+     * @param linkCounts Number of all links for each document, indexed by ID - 1
+     * @return link graph
+     */
+    public static LinkGraph fromEdges(int nodes, int[] sources, int[] targets, int edges, int[] linkCounts) {
+        int[] outOffsets = new int[nodes + 1];
+        int[] inOffsets = new int[nodes + 1];
+        for (int e = 0; e < edges; e++) {
+            outOffsets[sources[e]]++;
+            inOffsets[targets[e]]++;
+        }
+        for (int i = 0; i < nodes; i++) {
+            outOffsets[i + 1] += outOffsets[i];
+            inOffsets[i + 1] += inOffsets[i];
+        }
+
+        // Fill from the end so edges keep their original order
+        int[] outTargets = new int[edges];
+        int[] inSources = new int[edges];
+        int[] outPosition = Arrays.copyOf(outOffsets, nodes + 1);
+        int[] inPosition = Arrays.copyOf(inOffsets, nodes + 1);
+        for (int e = edges - 1; e >= 0; e--) {
+            outTargets[--outPosition[sources[e]]] = targets[e];
+            inSources[--inPosition[targets[e]]] = sources[e];
+        }
+
+        return new LinkGraph(Arrays.copyOf(linkCounts, nodes), outOffsets, outTargets, inOffsets, inSources);
+    }
+
+    /**
+     * Loads graph from file
+     *
+     * @param file Path to graph file
+     * @return link graph
+     * @throws IOException when there is problem with file IO or file is not a link graph
+     */
+    public static LinkGraph load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            IntBuffer ints = buffer.asIntBuffer();
+            if (ints.remaining() < 4 || ints.get() != MAGIC)
+                throw new IOException("File " + file + " is not a link graph");
+            if (ints.get() != VERSION)
+                throw new IOException("Unsupported link graph version in " + file);
+            int nodes = ints.get();
+            int edges = ints.get();
+            if (ints.remaining() != 3 * nodes + 2 + 2 * edges)
+                throw new IOException("Link graph " + file + " is corrupted");
+
+            int[] linkCounts = new int[nodes];
+            int[] outOffsets = new int[nodes + 1];
+            int[] outTargets = new int[edges];
+            int[] inOffsets = new int[nodes + 1];
+            int[] inSources = new int[edges];
+            ints.get(linkCounts).get(outOffsets).get(outTargets).get(inOffsets).get(inSources);
+            return new LinkGraph(linkCounts, outOffsets, outTargets, inOffsets, inSources);
+        }
+    }
+
+    /**
+     * Saves graph into file
+     *
+     * @param file Path to file
+     * @throws IOException when there is problem with file IO
+     */
+    public void save(Path file) throws IOException {
+        try (OutputStream output = Files.newOutputStream(file);
+             DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(output, 1 << 16))) {
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeInt(nodes);
+            stream.writeInt(outTargets.length);
+            for (int[] array : new int[][]{linkCounts, outOffsets, outTargets, inOffsets, inSources}) {
+                for (int value : array)
+                    stream.writeInt(value);
+            }
+        }
+    }
+
+    /**
+     * Return number of documents in graph
+     *
+     * @return number of documents
+     */
+    public int getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * Return number of links between documents
+     *
+     * @return number of edges
+     */
+    public int getEdgeCount() {
+        return outTargets.length;
+    }
+
+    /**
+     * Return IDs of documents linked from document
+     *
+     * @param id Document ID
+     * @return array of document IDs
+     */
+    public int[] getOutLinks(int id) {
+        return Arrays.copyOfRange(outTargets, outOffsets[id - 1], outOffsets[id]);
+    }
+
+    /**
+     * Return IDs of documents linking to document
+     *
+     * @param id Document ID
+     * @return array of document IDs
+     */
+    public int[] getInLinks(int id) {
+        return Arrays.copyOfRange(inSources, inOffsets[id - 1], inOffsets[id]);
+    }
+
+    /**
+     * Return number of links from document to other documents
+     *
+     * @param id Document ID
+     * @return number of outgoing edges
+     */
+    public int getOutDegree(int id) {
+        return outOffsets[id] - outOffsets[id - 1];
+    }
+
+    /**
+     * Return number of links from other documents to document
+     *
+     * @param id Document ID
+     * @return number of ingoing edges
+     */
+    public int getInDegree(int id) {
+        return inOffsets[id] - inOffsets[id - 1];
+    }
+
+    /**
+     * Return number of all links on the page, including links to pages that weren't downloaded
+     *
+     * @param id Document ID
+     * @return number of links
+     */
+    public int getLinkCount(int id) {
+        return linkCounts[id - 1];
+    }
+}
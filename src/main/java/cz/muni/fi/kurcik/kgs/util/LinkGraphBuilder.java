@@ -0,0 +1,136 @@
+package cz.muni.fi.kurcik.kgs.util;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builder for LinkGraph used while downloading.
+ * Each seen URL gets integer key, links are kept as key pairs and translated into document IDs when graph is built.
+ *
+ * @author Lukáš Kurčík
+ */
+public class LinkGraphBuilder {
+
+    protected final Map<String, Integer> urlKeys = new HashMap<>();
+    protected int[] keyToId = new int[1024];
+
+    protected int[] sources = new int[1024];
+    protected int[] targets = new int[1024];
+    protected int edges = 0;
+
+    protected int[] linkCounts = new int[1024];
+    protected int nodes = 0;
+
+    /**
+     * Creates empty builder
+     */
+    public LinkGraphBuilder() {
+    }
+
+    /**
+     * Adds links from document
+     *
+     * @param id    Document ID
+     * @param links URLs linked from document
+     */
+    public void addLinks(long id, Collection<URI> links) {
+        int source = (int) id;
+        ensureNode(source);
+        linkCounts[source - 1] += links.size();
+        for (URI link : links)
+            addEdge(source, getKey(link.toString()));
+    }
+
+    /**
+     * Adds links from document, e.g. lines of links file
+     *
+     * @param id    Document ID
+     * @param links URLs linked from document
+     */
+    public void addRawLinks(long id, Collection<String> links) {
+        int source = (int) id;
+        ensureNode(source);
+        linkCounts[source - 1] += links.size();
+        for (String link : links)
+            addEdge(source, getKey(link));
+    }
+
+    /**
+     * Assigns document ID to URL
+     *
+     * @param url URL
+     * @param id  Document ID
+     */
+    public void setId(URI url, long id) {
+        ensureNode((int) id);
+        keyToId[getKey(url.toString())] = (int) id;
+    }
+
+    /**
+     * Builds graph from links between documents with assigned IDs. Links to other URLs are only counted.
+     *
+     * @return link graph
+     */
+    public LinkGraph build() {
+        int[] edgeSources = new int[edges];
+        int[] edgeTargets = new int[edges];
+        int resolved = 0;
+        for (int e = 0; e < edges; e++) {
+            int target = keyToId[targets[e]];
+            if (target == 0)
+                continue;
+            edgeSources[resolved] = sources[e];
+            edgeTargets[resolved] = target;
+            resolved++;
+        }
+        return LinkGraph.fromEdges(nodes, edgeSources, edgeTargets, resolved, linkCounts);
+    }
+
+    /**
+     * Adds edge from document to URL key
+     *
+     * @param source Document ID
+     * @param target URL key
+     */
+    protected void addEdge(int source, int target) {
+        if (edges == sources.length) {
+            sources = Arrays.copyOf(sources, edges * 2);
+            targets = Arrays.copyOf(targets, edges * 2);
+        }
+        sources[edges] = source;
+        targets[edges] = target;
+        edges++;
+    }
+
+    /**
+     * Return key for URL, creates new one if URL wasn't seen
+     *
+     * @param url URL
+     * @return key
+     */
+    protected int getKey(String url) {
+        String canonical = UrlCanonicalizer.canonicalize(url);
+        Integer key = urlKeys.get(canonical);
+        if (key == null) {
+            key = urlKeys.size();
+            urlKeys.put(canonical, key);
+            if (key == keyToId.length)
+                keyToId = Arrays.copyOf(keyToId, key * 2);
+        }
+        return key;
+    }
+
+    /**
+     * Makes sure that document ID fits into graph
+     *
+     * @param id Document ID
+     */
+    protected void ensureNode(int id) {
+        if (id > linkCounts.length)
+            linkCounts = Arrays.copyOf(linkCounts, Math.max(id, linkCounts.length * 2));
+        nodes = Math.max(nodes, id);
+    }
+}
@@ -8,6 +8,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
@@ -17,12 +19,18 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
- * Java wrapper for C++ majka library
+ * Java wrapper for majka library
  * See https://nlp.fi.muni.cz/czech-morphology-analyser/ for more information
+ * Instances can be used by more threads at the same time.
+ * <p>
+ * By default dictionary is read by pure Java MajkaDictionary, which returns the same results as C++ library.
+ * C++ library can be used instead, it is loaded only if it is needed.
+ * Dictionary is unpacked and loaded once, on first call, and kept until close is called,
+ * so one instance should be used for whole processing.
  *
  * @author Lukáš Kurčík
  */
-public class Majka {
+public class Majka implements AutoCloseable {
     public static final int ADD_DIACRITICS = 1;
     public static final int IGNORE_CASE = 2;
     public static final int DISALLOW_LOWERCASE = 4;
@@ -30,35 +38,70 @@ public class Majka {
     private final Logger logger = Logger.getLogger(Majka.class.getName());
     protected static final String TAGS_REGEX = ":.*$";
     protected static final String DICTIONARY_FILE = "majka/majka.w-lt";
+    protected static final int CHUNK_SIZE = 1 << 16; // Bytes of words sent to native library in one call
+    protected static final int RESULTS_SIZE = 4 * CHUNK_SIZE; // Results are longer than words because of tags
 
-    protected final HashMap<String, String> cache = new HashMap<>(); // Saves results of older calls to speed up processing
+    protected LemmaCache cache = new LemmaCache(); // Saves results of older calls to speed up processing, shared by threads
+
+    protected static boolean libraryLoaded = false;
+
+    protected final boolean nativeLibrary;
+    protected volatile MajkaDictionary dictionary; // Dictionary for pure Java lookup, null if it isn't loaded
+    protected volatile long handle = 0; // Pointer to native dictionary, 0 if it isn't loaded
+    protected boolean closed = false;
+
+    /**
+     * Loads dictionary into native memory
+     *
+     * @param dict path to dictionary
+     * @return handle of loaded dictionary or 0 if it can't be loaded
+     */
+    protected native long open(String dict);
+
+    /**
+     * Frees native memory of loaded dictionary
+     *
+     * @param handle handle of loaded dictionary
+     */
+    protected native void close(long handle);
 
     /**
      * Return all lemmas with tags for word.
      *
-     * @param dict  path to dictionary
-     * @param word  word
-     * @param flags Flags for majka as integer
+     * @param handle handle of loaded dictionary
+     * @param word   word
+     * @param flags  Flags for majka as integer
      * @return array with lemma:tag results
      */
-    protected native String[] find(String dict, String word, int flags);
+    protected native String[] find(long handle, String word, int flags);
 
     /**
-     * Return first lemma:tag pair for each word
+     * Writes first lemma:tag pair, or word itself if it is unknown, for each word into results buffer.
+     * Words and results are UTF-8 strings terminated by 0. Stops when next result doesn't fit into results buffer.
      *
-     * @param dict      path to dictionary
-     * @param words     array with words
-     * @param wordCount Length of words array
+     * @param handle    handle of loaded dictionary
+     * @param words     direct buffer with words
+     * @param wordCount number of words in buffer
+     * @param results   direct buffer for results
      * @param flags     Flags for majka as integer
-     * @return array with lemma:tag results
+     * @return number of bytes written into results buffer
      */
-    protected native String[] findAll(String dict, String[] words, int wordCount, int flags);
+    protected native int lemmatize(long handle, ByteBuffer words, int wordCount, ByteBuffer results, int flags);
 
-    static {
-        System.loadLibrary("majkaj"); /* Loads libmajkaj.so for unix or libmajkaj.dll for windows */
+    /**
+     * Create Majka using pure Java dictionary reader
+     */
+    public Majka() {
+        this(false);
     }
 
-    public Majka() {
+    /**
+     * Create Majka
+     *
+     * @param nativeLibrary Specify if C++ library should be used instead of pure Java dictionary reader
+     */
+    public Majka(boolean nativeLibrary) {
+        this.nativeLibrary = nativeLibrary;
     }
 
     /**
@@ -71,17 +114,15 @@ public class Majka {
      * @throws IOException on problem with dictionary
      */
     public List<String> find(String word, int flags, boolean tags) throws IOException {
-        Path dic = unpackDictionary();
-        Stream<String> output = Arrays.stream(find(dic.toString(), word, flags));
+        Stream<String> output = nativeLibrary
+                ? Arrays.stream(find(getHandle(), word, flags))
+                : getDictionary().find(word, flags).stream();
 
         if (!tags) {
             output = output.map(it -> it.replaceFirst(TAGS_REGEX, ""));
         }
 
-        List<String> result = output.collect(Collectors.toList());
-        Files.delete(dic);
-
-        return result;
+        return output.collect(Collectors.toList());
     }
 
     /**
@@ -94,31 +135,222 @@ public class Majka {
      * @throws IOException on problem with dictionary
      */
     public Map<String, String> findAll(List<String> words, int flags, boolean tags) throws IOException {
-        Path dic = unpackDictionary();
-
         Map<String, String> result = new HashMap<>();
         HashSet<String> majkuj = new HashSet<>();
         words.forEach(word -> {
-            if (cache.containsKey(word))
-                result.put(word, tags ? cache.get(word) : cache.get(word).replaceFirst(TAGS_REGEX, ""));
+            String cached = cache.get(word);
+            if (cached != null)
+                result.put(word, tags ? cached : cached.replaceFirst(TAGS_REGEX, ""));
             else
                 majkuj.add(word);
         });
 
-        String[] wordsArray = majkuj.toArray(new String[0]);
+        List<String> wordsList = new ArrayList<>(majkuj);
 
-        if (wordsArray.length > 0) {
-            String[] output = findAll(dic.toString(), wordsArray, wordsArray.length, flags);
-            for (int i = 0; i < wordsArray.length; i++) {
-                cache.put(wordsArray[i], output[i]);
-                result.put(wordsArray[i], tags ? output[i] : output[i].replaceFirst(TAGS_REGEX, ""));
+        if (!wordsList.isEmpty()) {
+            String[] output = lemmatize(wordsList, flags, true);
+            for (int i = 0; i < output.length; i++) {
+                cache.put(wordsList.get(i), output[i]);
+                result.put(wordsList.get(i), tags ? output[i] : output[i].replaceFirst(TAGS_REGEX, ""));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Return first lemma:tag pair for word, or word itself if majka doesn't know it. Result is cached.
+     *
+     * @param word  word
+     * @param flags Flags for majka as integer
+     * @param tags  Specify if tags should be part of lemma string
+     * @return lemma
+     * @throws IOException on problem with dictionary
+     */
+    public String lemma(String word, int flags, boolean tags) throws IOException {
+        String lemma = cache.get(word);
+        if (lemma == null) {
+            lemma = lemmatize(Collections.singletonList(word), flags, true)[0];
+            cache.put(word, lemma);
+        }
+        return tags ? lemma : lemma.replaceFirst(TAGS_REGEX, "");
+    }
+
+    /**
+     * Return first lemma:tag pair for each word, or word itself if majka doesn't know it.
+     * With C++ library, words are sent to native library in chunks through direct buffers, so any number of words
+     * can be processed with constant native memory. Results are not cached.
+     *
+     * @param words List with words
+     * @param flags Flags for majka as integer
+     * @param tags  Specify if tags should be part of lemma string
+     * @return lemmas in the same order as words
+     * @throws IOException on problem with dictionary
+     */
+    public String[] lemmatize(List<String> words, int flags, boolean tags) throws IOException {
+        if (!nativeLibrary) {
+            MajkaDictionary dictionary = getDictionary();
+            String[] result = new String[words.size()];
+            for (int i = 0; i < result.length; i++) {
+                String word = words.get(i);
+                String lemma = dictionary.findFirst(word, flags);
+                if (lemma == null)
+                    lemma = word;
+                result[i] = tags ? lemma : removeTagFast(lemma);
             }
+            return result;
         }
-        Files.delete(dic);
 
+        long handle = getHandle();
+        String[] result = new String[words.size()];
+        ByteBuffer input = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        ByteBuffer output = ByteBuffer.allocateDirect(RESULTS_SIZE);
+        byte[] bytes = new byte[RESULTS_SIZE];
+
+        int done = 0;
+        while (done < words.size()) {
+            input.clear();
+            int count = 0;
+            for (int i = done; i < words.size(); i++, count++) {
+                byte[] word = encode(words.get(i));
+                if (word.length + 1 > input.remaining()) {
+                    if (count > 0)
+                        break;
+                    input = ByteBuffer.allocateDirect(word.length + 1);
+                }
+                input.put(word).put((byte) 0);
+            }
+
+            int used = lemmatize(handle, input, count, output, flags);
+            if (used < 0)
+                throw new IOException("Majka needs direct buffers");
+            if (used == 0) {
+                // Result of first word doesn't fit
+                output = ByteBuffer.allocateDirect(output.capacity() * 2);
+                bytes = new byte[output.capacity()];
+                continue;
+            }
+
+            output.clear();
+            output.get(bytes, 0, used);
+            int start = 0;
+            for (int end = 0; end < used; end++) {
+                if (bytes[end] != 0)
+                    continue;
+                String lemma = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+                if (lemma.isEmpty())
+                    lemma = words.get(done);
+                result[done++] = tags ? lemma : removeTagFast(lemma);
+                start = end + 1;
+            }
+        }
         return result;
     }
 
+    /**
+     * Encodes word for native library. Words with character 0 are encoded as empty string and returned unchanged.
+     *
+     * @param word word
+     * @return UTF-8 bytes
+     */
+    protected static byte[] encode(String word) {
+        if (word.indexOf(0) >= 0)
+            return new byte[0];
+        return word.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Removes tag from lemma without regular expression
+     *
+     * @param lemma lemma:tag
+     * @return lemma
+     */
+    protected static String removeTagFast(String lemma) {
+        int colon = lemma.indexOf(':');
+        return colon < 0 ? lemma : lemma.substring(0, colon);
+    }
+
+    /**
+     * Return handle of loaded dictionary, loads dictionary on first call
+     *
+     * @return handle of loaded dictionary
+     * @throws IOException if dictionary can't be loaded
+     */
+    protected long getHandle() throws IOException {
+        long current = handle;
+        if (current != 0)
+            return current;
+        synchronized (this) {
+            if (closed)
+                throw new IllegalStateException("Majka is closed");
+            if (handle == 0) {
+                loadLibrary();
+                Path dic = unpackDictionary();
+                try {
+                    handle = open(dic.toString());
+                } finally {
+                    Files.delete(dic);
+                }
+                if (handle == 0) {
+                    logger.log(Level.SEVERE, "Majka couldn't load dictionary");
+                    throw new IOException("Majka couldn't load dictionary");
+                }
+            }
+            return handle;
+        }
+    }
+
+    /**
+     * Return dictionary for pure Java lookup, maps dictionary on first call
+     *
+     * @return dictionary
+     * @throws IOException if dictionary can't be loaded
+     */
+    protected MajkaDictionary getDictionary() throws IOException {
+        MajkaDictionary current = dictionary;
+        if (current != null)
+            return current;
+        synchronized (this) {
+            if (closed)
+                throw new IllegalStateException("Majka is closed");
+            if (dictionary == null) {
+                Path dic = unpackDictionary();
+                dictionary = MajkaDictionary.open(dic);
+                try {
+                    Files.delete(dic); // Mapping stays valid on unix systems
+                } catch (IOException e) {
+                    dic.toFile().deleteOnExit();
+                }
+            }
+            return dictionary;
+        }
+    }
+
+    /**
+     * Loads C++ library
+     */
+    protected static synchronized void loadLibrary() {
+        if (!libraryLoaded) {
+            System.loadLibrary("majkaj"); /* Loads libmajkaj.so for unix or libmajkaj.dll for windows */
+            libraryLoaded = true;
+        }
+    }
+
+    /**
+     * Frees loaded dictionary. Majka can't be used after it is closed.
+     * Should not be called while other threads use this instance.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        dictionary = null;
+        if (handle != 0) {
+            long current = handle;
+            handle = 0;
+            close(current);
+        }
+    }
+
     /**
      * Unpack dictionary from resources
      *
@@ -148,7 +380,16 @@ public class Majka {
         return lemma.replaceFirst(TAGS_REGEX, "");
     }
 
-    public HashMap<String, String> getCache() {
+    public LemmaCache getCache() {
         return cache;
     }
+
+    /**
+     * Sets cache for results, e.g. cache loaded from file
+     *
+     * @param cache cache
+     */
+    public void setCache(LemmaCache cache) {
+        this.cache = cache;
+    }
 }
@@ -0,0 +1,585 @@
+package cz.muni.fi.kurcik.kgs.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pure Java implementation of Majka lookup.
+ * Reads dictionary in fsa format of Jan Daciuk (version 5, used by majka.w-lt) through read-only memory-mapped buffer.
+ * Lookup uses only its own state, so one dictionary can be used by any number of threads.
+ * Results are the same as results of native majka compiled for UTF-8 (see majka4j/linux/majka.cc).
+ * <p>
+ * Automaton works with ISO-8859-2 bytes. Words with characters that majka can't convert (including character 0)
+ * have no results.
+ *
+ * @author Lukáš Kurčík
+ */
+public class MajkaDictionary {
+
+    protected static final int SIGNATURE_SIZE = 20;
+    protected static final int FSA_VERSION = 5;
+    protected static final int MAJKA_VERSION = 1;
+    protected static final int MAX_WORD_LENGTH = 100; // in bytes of UTF-8
+    protected static final int GOTO_OFFSET = 1;
+
+    // ISO-8859-2 characters from code 160 that majka converts, space means unknown character
+    protected static final String LETTERS = " Ą Ł ĽŚ  ŠŞŤŹ ŽŻ ą ł ľś  šşťź žż"
+            + "ŔÁÂĂÄĹĆÇČÉĘËĚÍÎĎÐŃŇÓÔŐÖ ŘŮÚŰÜÝŢ "
+            + "ŕáâăäĺćçčéęëěíîďðńňóôőö řůúűüýţ ";
+    // Letters from LETTERS without diacritics
+    protected static final String BASE_LETTERS = " A L LS  SSTZ ZZ a l ls  sstz zzRAAAALCCCEEEEIIDDNNOOOO RUUUUYT raaaalccceeeeiiddnnoooo ruuuuyt ";
+
+    protected static final int[] ACCENT = new int[3 * 256]; // Tables for ADD_DIACRITICS, IGNORE_CASE and both
+    protected static final int[] LOWER = new int[256];
+    protected static final char[] TO_CHAR = new char[256]; // 0 for unknown character
+    protected static final int[] FROM_CHAR = new int[0x180 - 0xC0]; // For characters from U+00C0 to U+017F
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            ACCENT[i] = i;
+            LOWER[i] = i >= 'A' && i <= 'Z' ? i + 'a' - 'A' : i;
+            if (i < 128)
+                TO_CHAR[i] = (char) i;
+        }
+        for (int i = 161; i < 176; i++)
+            LOWER[i] = i + 16;
+        for (int i = 192; i < 223; i++)
+            LOWER[i] = i + 32;
+        for (int i = 0; i < FROM_CHAR.length; i++)
+            FROM_CHAR[i] = ' ';
+        for (int i = 0; i < LETTERS.length(); i++) {
+            char letter = LETTERS.charAt(i);
+            if (letter == ' ')
+                continue;
+            TO_CHAR[160 + i] = letter;
+            FROM_CHAR[letter - 0xC0] = 160 + i;
+            ACCENT[160 + i] = BASE_LETTERS.charAt(i);
+        }
+        for (int i = 0; i < 256; i++) {
+            ACCENT[256 + i] = LOWER[i];
+            ACCENT[512 + i] = ACCENT[LOWER[i]];
+        }
+    }
+
+    protected final ByteBuffer dict;
+    protected final int type;
+    protected final int gotoLength;
+    protected final int arcSize;
+    protected final int start;
+    protected final int start1, start2; // Nodes for compound words, -1 if dictionary doesn't have them
+
+    /**
+     * Creates dictionary from buffer with whole dictionary file
+     *
+     * @param buffer buffer with dictionary
+     * @throws IOException if buffer doesn't contain supported dictionary
+     */
+    public MajkaDictionary(ByteBuffer buffer) throws IOException {
+        ByteBuffer signature = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (signature.limit() < SIGNATURE_SIZE || signature.get(0) != '\\' || signature.get(1) != 'f'
+                || signature.get(2) != 's' || signature.get(3) != 'a')
+            throw new IOException("Invalid dictionary file (bad magic number)");
+        if (signature.get(4) != FSA_VERSION)
+            throw new IOException("Invalid fsa dictionary version " + signature.get(4) + " instead of " + FSA_VERSION);
+        if (signature.get(9) != MAJKA_VERSION)
+            throw new IOException("Invalid majka dictionary version " + signature.get(9) + " instead of " + MAJKA_VERSION);
+        gotoLength = signature.get(7) & 0x0f;
+        type = signature.get(8) & 0xff;
+        if (!isSupportedType(type))
+            throw new IOException("Invalid dictionary file (cannot interpret file of type " + type + ")");
+        arcSize = GOTO_OFFSET + gotoLength;
+
+        signature.position(SIGNATURE_SIZE);
+        dict = signature.slice();
+
+        start = GOTO_OFFSET + gotoLength;
+        start1 = findArc(nextNode(start), '!');
+        start2 = findArc(nextNode(start), '^');
+    }
+
+    /**
+     * Maps dictionary file into memory
+     *
+     * @param file dictionary file
+     * @return dictionary
+     * @throws IOException if file can't be mapped or it isn't supported dictionary
+     */
+    public static MajkaDictionary open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MajkaDictionary(buffer);
+        }
+    }
+
+    /**
+     * Return all lemma:tag results for word
+     *
+     * @param word  word
+     * @param flags Flags for majka as integer
+     * @return results, empty if word is unknown
+     */
+    public List<String> find(String word, int flags) {
+        return find(word, flags, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Return first lemma:tag result for word
+     *
+     * @param word  word
+     * @param flags Flags for majka as integer
+     * @return result or null if word is unknown
+     */
+    public String findFirst(String word, int flags) {
+        List<String> results = find(word, flags, 1);
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    /**
+     * Return lemma:tag results for word
+     *
+     * @param word  word
+     * @param flags Flags for majka as integer
+     * @param limit Maximal number of results
+     * @return results
+     */
+    protected List<String> find(String word, int flags, int limit) {
+        byte[] copy = new byte[MAX_WORD_LENGTH + 2];
+        int length = 0;
+        int bytes = 0;
+        boolean uppercase = false;
+        for (int i = 0; i < word.length() && bytes < MAX_WORD_LENGTH; i++) {
+            char c = word.charAt(i);
+            int code;
+            if (c < 0x80 && c != 0) {
+                code = c;
+                bytes++;
+            } else if (c >= 0xC0 && c < 0x180) {
+                code = FROM_CHAR[c - 0xC0];
+                bytes += 2;
+            } else {
+                return Collections.emptyList();
+            }
+            copy[length] = (byte) code;
+            if ((flags & (Majka.IGNORE_CASE | Majka.DISALLOW_LOWERCASE)) == 0 && length > 0 && LOWER[code] != code)
+                uppercase = true;
+            length++;
+        }
+        copy[length] = ':';
+        copy[length + 1] = 0;
+
+        Lookup res = new Lookup(length, limit);
+        if ((flags & (Majka.ADD_DIACRITICS | Majka.IGNORE_CASE)) != 0) {
+            int accentTable = 256 * ((flags & (Majka.ADD_DIACRITICS | Majka.IGNORE_CASE)) - 1);
+            if ((flags & Majka.IGNORE_CASE) != 0)
+                lowerCase(copy, 0);
+            accentWord(copy, 0, 0, start, -1, accentTable, res);
+            if (uppercase) {
+                lowerCase(copy, 1);
+                accentWord(copy, 0, 0, start, -1, accentTable, res);
+            }
+            if (LOWER[copy[0] & 0xff] != (copy[0] & 0xff)) {
+                copy[0] = (byte) LOWER[copy[0] & 0xff];
+                accentWord(copy, 0, 0, start, -1, accentTable, res);
+            }
+            if (res.results.isEmpty() && start1 >= 0 && start2 >= 0)
+                accentWord(copy, 0, 0, start1, start2, accentTable, res);
+        } else {
+            findWord(copy, 0, 0, start, res);
+            if (uppercase) {
+                lowerCase(copy, 1);
+                findWord(copy, 0, 0, start, res);
+            }
+            if (LOWER[copy[0] & 0xff] != (copy[0] & 0xff) && (flags & Majka.DISALLOW_LOWERCASE) == 0) {
+                copy[0] = (byte) LOWER[copy[0] & 0xff];
+                findWord(copy, 0, 0, start, res);
+            }
+            if (res.results.isEmpty() && start1 >= 0 && start2 >= 0)
+                findCompound(copy, res);
+        }
+        return res.results;
+    }
+
+    /**
+     * Finds word as compound of prefix from start1 and word from start2
+     *
+     * @param word word with ':' at the end
+     * @param res  lookup state
+     */
+    protected void findCompound(byte[] word, Lookup res) {
+        int nextNode = nextNode(start1);
+        int level = 0;
+        int position = 0;
+        boolean found;
+        do {
+            found = false;
+            int newNode = -1;
+            for (int arc = nextNode; ; arc += arcSize) {
+                if ((word[position] & 0xff) == letter(arc)) {
+                    res.candidate(level++, letter(arc));
+                    if (word[++position] == 0)
+                        return;
+                    found = true;
+                    newNode = nextNode = nextNode(arc);
+                    break;
+                }
+                if (isLast(arc))
+                    break;
+            }
+            if (found) {
+                for (int arc = newNode; ; arc += arcSize) {
+                    if (letter(arc) == ':') {
+                        findWord(word, position, level, start2, res);
+                        break;
+                    }
+                    if (isLast(arc))
+                        break;
+                }
+            }
+        } while (found);
+    }
+
+    /**
+     * Finds word, letters can differ by accent table
+     *
+     * @param word        word with ':' at the end
+     * @param position    position in word
+     * @param level       position in candidate
+     * @param node        arc leading to node
+     * @param startNode2  node for rest of compound word, -1 if it isn't used
+     * @param accentTable offset of accent table
+     * @param res         lookup state
+     */
+    protected void accentWord(byte[] word, int position, int level, int node, int startNode2, int accentTable, Lookup res) {
+        int current = word[position] & 0xff;
+        for (int arc = nextNode(node); !res.isFull(); arc += arcSize) {
+            int letter = letter(arc);
+            if (current == letter || current == ACCENT[accentTable + letter]) {
+                res.candidate(level, letter);
+                if (word[position + 1] == 0 && startNode2 < 0)
+                    complRest(level + 1, arc, res);
+                else
+                    accentWord(word, position + 1, level + 1, arc, startNode2, accentTable, res);
+            } else if (letter == ':' && startNode2 >= 0) {
+                accentWord(word, position, level, startNode2, -1, accentTable, res);
+            }
+            if (isLast(arc))
+                break;
+        }
+    }
+
+    /**
+     * Finds exact word
+     *
+     * @param word     word with ':' at the end
+     * @param position position in word
+     * @param level    position in candidate
+     * @param node     arc leading to node
+     * @param res      lookup state
+     */
+    protected void findWord(byte[] word, int position, int level, int node, Lookup res) {
+        int nextNode = nextNode(node);
+        boolean found;
+        do {
+            found = false;
+            for (int arc = nextNode; ; arc += arcSize) {
+                if ((word[position] & 0xff) == letter(arc)) {
+                    res.candidate(level++, letter(arc));
+                    if (word[position + 1] == 0) {
+                        complRest(level, arc, res);
+                    } else {
+                        position++;
+                        found = true;
+                        nextNode = nextNode(arc);
+                    }
+                    break;
+                }
+                if (isLast(arc))
+                    break;
+            }
+        } while (found);
+    }
+
+    /**
+     * Adds all results from node
+     *
+     * @param depth position in candidate
+     * @param node  arc leading to node
+     * @param res   lookup state
+     */
+    protected void complRest(int depth, int node, Lookup res) {
+        int nextNode = nextNode(node);
+        if (nextNode == 0)
+            return;
+        for (int arc = nextNode; !res.isFull(); arc += arcSize) {
+            res.candidate(depth, letter(arc));
+            if (isFinal(arc)) {
+                res.candidate(depth + 1, 0);
+                processResult(res);
+            }
+            complRest(depth + 1, arc, res);
+            if (isLast(arc))
+                break;
+        }
+    }
+
+    /**
+     * Converts candidate into result based on dictionary type
+     *
+     * @param res lookup state
+     */
+    protected void processResult(Lookup res) {
+        byte[] candidate = res.candidate;
+        int inputLength = res.inputLength;
+        StringBuilder result = new StringBuilder();
+        switch (type) {
+            case 1: // w-lt
+            case 4: // l-wt
+                copy(result, candidate, 0, inputLength - (candidate[inputLength + 1] - 'A'));
+                copyLemmaTag(result, candidate, inputLength + 2);
+                break;
+            case 3: { // lt-w
+                int first = indexOf(candidate, 0, ':');
+                int second = inputLength;
+                if (first == second) {
+                    second = indexOf(candidate, first + 1, ':');
+                    copy(result, candidate, first + 1, second - first);
+                }
+                copy(result, candidate, 0, first - (candidate[second + 1] - 'A'));
+                copyString(result, candidate, second + 2);
+                break;
+            }
+            case 2: // w
+            case 5: // l-w
+            case 6: // w-l
+            case 7: // w-w
+                copy(result, candidate, 0, inputLength - (candidate[inputLength + 1] - 'A'));
+                copyString(result, candidate, inputLength + 2);
+                break;
+            case 1 + 128: { // w-lt
+                int prefixLength = candidate[inputLength + 1] - 'A';
+                copy(result, candidate, prefixLength, inputLength - prefixLength - (candidate[inputLength + 2] - 'A'));
+                copyLemmaTag(result, candidate, inputLength + 3);
+                break;
+            }
+            case 2 + 128: // w
+                copy(result, candidate, 0, inputLength);
+                break;
+            case 3 + 128: { // lt-w
+                int first = indexOf(candidate, 0, ':');
+                int second = inputLength;
+                if (first == second) {
+                    second = indexOf(candidate, first + 1, ':');
+                    copy(result, candidate, first + 1, second - first);
+                }
+                int prefixLength = candidate[second + 1] - 'A';
+                copy(result, candidate, second + 2, prefixLength);
+                copy(result, candidate, 0, first - (candidate[second + prefixLength + 2] - 'A'));
+                copyString(result, candidate, second + prefixLength + 3);
+                break;
+            }
+            case 4 + 128: { // l-wt
+                int prefixLength = candidate[inputLength + 1] - 'A';
+                copy(result, candidate, inputLength + 2, prefixLength);
+                copy(result, candidate, 0, inputLength - (candidate[inputLength + prefixLength + 2] - 'A'));
+                copyLemmaTag(result, candidate, inputLength + prefixLength + 3);
+                break;
+            }
+            case 5 + 128: { // l-w
+                int prefixLength = candidate[inputLength + 1] - 'A';
+                copy(result, candidate, inputLength + 2, prefixLength);
+                copy(result, candidate, 0, inputLength - (candidate[inputLength + prefixLength + 2] - 'A'));
+                copyString(result, candidate, inputLength + prefixLength + 3);
+                break;
+            }
+            case 6 + 128: { // w-l
+                int prefixLength = candidate[inputLength + 1] - 'A';
+                copy(result, candidate, prefixLength, inputLength - prefixLength - (candidate[inputLength + 2] - 'A'));
+                copyString(result, candidate, inputLength + 3);
+                break;
+            }
+            case 7 + 128: { // w-w
+                int prefixAddLength = candidate[inputLength + 1] - 'A';
+                copy(result, candidate, inputLength + 2, prefixAddLength);
+                int prefixRemoveLength = candidate[inputLength + 2 + prefixAddLength] - 'A';
+                copy(result, candidate, prefixRemoveLength, inputLength - prefixRemoveLength - (candidate[inputLength + 3 + prefixAddLength] - 'A'));
+                copyString(result, candidate, inputLength + prefixAddLength + 4);
+                break;
+            }
+        }
+        res.results.add(result.toString());
+    }
+
+    /**
+     * Appends converted characters of candidate
+     *
+     * @param result result
+     * @param source candidate
+     * @param from   start index
+     * @param count  number of bytes
+     */
+    protected static void copy(StringBuilder result, byte[] source, int from, int count) {
+        for (int i = from; i < from + count && i < source.length; i++)
+            appendChar(result, source[i] & 0xff);
+    }
+
+    /**
+     * Appends converted characters of candidate until its end
+     *
+     * @param result result
+     * @param source candidate
+     * @param from   start index
+     */
+    protected static void copyString(StringBuilder result, byte[] source, int from) {
+        for (int i = from; i < source.length && source[i] != 0; i++)
+            appendChar(result, source[i] & 0xff);
+    }
+
+    /**
+     * Appends lemma with converted characters and tag without conversion
+     *
+     * @param result result
+     * @param source candidate
+     * @param from   start index
+     */
+    protected static void copyLemmaTag(StringBuilder result, byte[] source, int from) {
+        int i = from;
+        for (; i < source.length && source[i] != ':' && source[i] != 0; i++)
+            appendChar(result, source[i] & 0xff);
+        for (; i < source.length && source[i] != 0; i++)
+            result.append(source[i] >= 0 ? (char) source[i] : '\uFFFD');
+    }
+
+    /**
+     * Appends character for ISO-8859-2 code, unknown characters are replaced by two spaces like majka does
+     *
+     * @param result result
+     * @param code   ISO-8859-2 code
+     */
+    protected static void appendChar(StringBuilder result, int code) {
+        char c = TO_CHAR[code];
+        if (c == 0 && code != 0)
+            result.append("  ");
+        else
+            result.append(c);
+    }
+
+    /**
+     * Return index of character in candidate
+     *
+     * @param source candidate
+     * @param from   start index
+     * @param c      character
+     * @return index or end of candidate if character isn't there
+     */
+    protected static int indexOf(byte[] source, int from, char c) {
+        int i = from;
+        while (i < source.length && source[i] != 0 && source[i] != c)
+            i++;
+        return i;
+    }
+
+    /**
+     * Lower-cases word from position until ':'
+     *
+     * @param word word
+     * @param from start index
+     */
+    protected static void lowerCase(byte[] word, int from) {
+        for (int i = from; word[i] != 0; i++)
+            word[i] = (byte) LOWER[word[i] & 0xff];
+    }
+
+    /**
+     * Return arc with letter in node
+     *
+     * @param node   first arc of node
+     * @param letter letter
+     * @return arc or -1 if node doesn't have it
+     */
+    protected int findArc(int node, char letter) {
+        for (int arc = node; ; arc += arcSize) {
+            if (letter(arc) == letter)
+                return arc;
+            if (isLast(arc))
+                return -1;
+        }
+    }
+
+    /**
+     * Return first arc of node that arc leads to
+     *
+     * @param arc arc
+     * @return first arc of next node, 0 if there is no next node
+     */
+    protected int nextNode(int arc) {
+        if ((dict.get(arc + GOTO_OFFSET) & 4) != 0)
+            return arc + GOTO_OFFSET + 1;
+        int address = 0;
+        for (int i = gotoLength - 1; i >= 0; i--)
+            address = (address << 8) | (dict.get(arc + GOTO_OFFSET + i) & 0xff);
+        return address >>> 3;
+    }
+
+    protected int letter(int arc) {
+        return dict.get(arc) & 0xff;
+    }
+
+    protected boolean isFinal(int arc) {
+        return (dict.get(arc + GOTO_OFFSET) & 1) != 0;
+    }
+
+    protected boolean isLast(int arc) {
+        return (dict.get(arc + GOTO_OFFSET) & 2) != 0;
+    }
+
+    /**
+     * Check if dictionary type can be interpreted
+     *
+     * @param type dictionary type
+     * @return true for types 1 to 7 with or without prefix flag 128
+     */
+    protected static boolean isSupportedType(int type) {
+        int base = type & 0x7f;
+        return base >= 1 && base <= 7;
+    }
+
+    /**
+     * State of one lookup
+     */
+    protected static class Lookup {
+        protected final int inputLength;
+        protected final int limit;
+        protected final List<String> results = new ArrayList<>();
+        protected byte[] candidate = new byte[2 * MAX_WORD_LENGTH];
+
+        protected Lookup(int inputLength, int limit) {
+            this.inputLength = inputLength;
+            this.limit = limit;
+        }
+
+        /**
+         * Sets byte of candidate
+         *
+         * @param index index
+         * @param value byte
+         */
+        protected void candidate(int index, int value) {
+            if (index + 1 >= candidate.length)
+                candidate = Arrays.copyOf(candidate, candidate.length * 2);
+            candidate[index] = (byte) value;
+        }
+
+        protected boolean isFull() {
+            return results.size() >= limit;
+        }
+    }
+}
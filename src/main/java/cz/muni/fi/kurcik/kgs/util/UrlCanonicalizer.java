@@ -0,0 +1,345 @@
+package cz.muni.fi.kurcik.kgs.util;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical form of URLs used as keys by downloader, UrlIndex and link mining.
+ * URL is parsed and normalized in one pass over its characters:
+ * scheme is always http, host is lower-cased, default ports, fragment and one trailing slash of path are removed,
+ * percent-encoded unreserved and non-ASCII characters are decoded, other escapes get upper-case hex digits
+ * and characters that are not allowed in URL are encoded.
+ * <p>
+ * Registrable host is last two labels of host if last label has only letters, e.g. muni.cz for www.fi.muni.cz.
+ * It is cached for each host, because many URLs share few hosts.
+ *
+ * @author Lukáš Kurčík
+ */
+public class UrlCanonicalizer {
+
+    protected static final int HOST_CACHE_SIZE = 100000;
+    protected static final Map<String, String> hostCache = new ConcurrentHashMap<>();
+
+    protected static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Return canonical key of URL
+     *
+     * @param url URL
+     * @return canonical key
+     */
+    public static String canonicalize(URI url) {
+        return canonicalize(url.toString());
+    }
+
+    /**
+     * Return canonical key of URL
+     *
+     * @param url URL
+     * @return canonical key
+     */
+    public static String canonicalize(String url) {
+        int length = url.length();
+        int schemeEnd = schemeEnd(url);
+        StringBuilder key = new StringBuilder(length + 8).append("http:");
+        int i = schemeEnd + 1;
+
+        if (i + 1 < length && url.charAt(i) == '/' && url.charAt(i + 1) == '/') {
+            key.append("//");
+            i += 2;
+            int authorityEnd = i;
+            int at = -1;
+            while (authorityEnd < length) {
+                char c = url.charAt(authorityEnd);
+                if (c == '/' || c == '?' || c == '#')
+                    break;
+                if (c == '@')
+                    at = authorityEnd;
+                authorityEnd++;
+            }
+            if (at >= 0) {
+                key.append(url, i, at + 1);
+                i = at + 1;
+            }
+            appendHost(key, url, i, authorityEnd);
+            i = authorityEnd;
+        }
+
+        int pathStart = key.length();
+        while (i < length) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#')
+                break;
+            i = appendChar(key, url, i);
+        }
+        if (key.length() > pathStart && key.charAt(key.length() - 1) == '/')
+            key.setLength(key.length() - 1);
+
+        if (i < length && url.charAt(i) == '?') {
+            key.append('?');
+            i++;
+            while (i < length && url.charAt(i) != '#')
+                i = appendChar(key, url, i);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Return registrable host of URL, e.g. muni.cz for http://www.fi.muni.cz/
+     *
+     * @param url URL
+     * @return registrable host or empty string if it can't be found
+     */
+    public static String registrableHost(URI url) {
+        String host = url.getHost();
+        if (host == null) {
+            host = url.getRawAuthority();
+            if (host == null)
+                return "";
+            int at = host.lastIndexOf('@');
+            int colon = host.lastIndexOf(':');
+            host = host.substring(at + 1, colon > at ? colon : host.length());
+        }
+        return registrableHost(host);
+    }
+
+    /**
+     * Return registrable host, e.g. muni.cz for www.fi.muni.cz
+     *
+     * @param host Host
+     * @return registrable host or empty string if it can't be found
+     */
+    public static String registrableHost(String host) {
+        String registrable = hostCache.get(host);
+        if (registrable != null)
+            return registrable;
+
+        registrable = findRegistrableHost(host);
+        if (hostCache.size() >= HOST_CACHE_SIZE)
+            hostCache.clear();
+        hostCache.put(host, registrable);
+        return registrable;
+    }
+
+    /**
+     * Finds registrable host. Result is the same as first match of (([^.]+\.)?[a-zA-Z]+)$ in lower-cased host.
+     *
+     * @param host Host
+     * @return registrable host or empty string
+     */
+    protected static String findRegistrableHost(String host) {
+        int end = host.length();
+        int letters = end;
+        while (letters > 0 && isLetter(host.charAt(letters - 1)))
+            letters--;
+        if (letters == end)
+            return "";
+
+        int start = letters;
+        if (letters > 0 && host.charAt(letters - 1) == '.') {
+            int label = letters - 1;
+            while (label > 0 && host.charAt(label - 1) != '.')
+                label--;
+            if (label < letters - 1)
+                start = label;
+        }
+        return lowerCase(host, start, end);
+    }
+
+    /**
+     * Return index of colon after scheme or -1 if URL has no scheme
+     *
+     * @param url URL
+     * @return index of colon or -1
+     */
+    protected static int schemeEnd(String url) {
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == ':')
+                return i > 0 ? i : -1;
+            if (!(isLetter(c) || (i > 0 && ((c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.'))))
+                return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Appends lower-cased host without default port
+     *
+     * @param key   Key builder
+     * @param url   URL
+     * @param start Start of host
+     * @param end   End of authority
+     */
+    protected static void appendHost(StringBuilder key, String url, int start, int end) {
+        int hostEnd = end;
+        for (int i = end - 1; i >= start; i--) {
+            char c = url.charAt(i);
+            if (c == ':') {
+                hostEnd = i;
+                break;
+            }
+            if (c < '0' || c > '9')
+                break;
+        }
+        for (int i = start; i < hostEnd; i++) {
+            char c = url.charAt(i);
+            key.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        if (hostEnd < end) {
+            int portLength = end - hostEnd - 1;
+            boolean defaultPort = portLength == 0
+                    || (portLength == 2 && url.startsWith("80", hostEnd + 1))
+                    || (portLength == 3 && url.startsWith("443", hostEnd + 1));
+            if (!defaultPort)
+                key.append(url, hostEnd, end);
+        }
+    }
+
+    /**
+     * Appends one character or escape sequence of path or query in canonical form
+     *
+     * @param key Key builder
+     * @param url URL
+     * @param i   Position of character
+     * @return position of next character
+     */
+    protected static int appendChar(StringBuilder key, String url, int i) {
+        char c = url.charAt(i);
+        if (c == '%') {
+            int value = escapedByte(url, i);
+            if (value < 0) {
+                appendEscape(key, '%');
+                return i + 1;
+            }
+            if (value < 0x80) {
+                if (isUnreserved((char) value))
+                    key.append((char) value);
+                else
+                    appendEscape(key, value);
+                return i + 3;
+            }
+            return appendEscapedUtf8(key, url, i, value);
+        }
+        if (c <= ' ' || c == 0x7f || c == '"' || c == '<' || c == '>' || c == '\\' || c == '^' || c == '`'
+                || c == '{' || c == '|' || c == '}')
+            appendEscape(key, c);
+        else
+            key.append(c);
+        return i + 1;
+    }
+
+    /**
+     * Decodes percent-encoded UTF-8 sequence starting with non-ASCII byte.
+     * Invalid sequence is kept encoded.
+     *
+     * @param key   Key builder
+     * @param url   URL
+     * @param i     Position of first escape
+     * @param first Value of first byte
+     * @return position after sequence
+     */
+    protected static int appendEscapedUtf8(StringBuilder key, String url, int i, int first) {
+        int count;
+        int codePoint;
+        if ((first & 0xE0) == 0xC0) {
+            count = 1;
+            codePoint = first & 0x1F;
+        } else if ((first & 0xF0) == 0xE0) {
+            count = 2;
+            codePoint = first & 0x0F;
+        } else if ((first & 0xF8) == 0xF0) {
+            count = 3;
+            codePoint = first & 0x07;
+        } else {
+            appendEscape(key, first);
+            return i + 3;
+        }
+
+        int position = i + 3;
+        for (int k = 0; k < count; k++) {
+            int next = escapedByte(url, position);
+            if (next < 0 || (next & 0xC0) != 0x80) {
+                appendEscape(key, first);
+                return i + 3;
+            }
+            codePoint = (codePoint << 6) | (next & 0x3F);
+            position += 3;
+        }
+
+        int minimum = count == 1 ? 0x80 : count == 2 ? 0x800 : 0x10000;
+        if (codePoint < minimum || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)
+                || Character.isISOControl(codePoint) || Character.isSpaceChar(codePoint)) {
+            appendEscape(key, first);
+            return i + 3;
+        }
+        key.appendCodePoint(codePoint);
+        return position;
+    }
+
+    /**
+     * Return value of escape sequence %XX
+     *
+     * @param url URL
+     * @param i   Position of %
+     * @return byte value or -1 if there is no valid escape
+     */
+    protected static int escapedByte(String url, int i) {
+        if (i + 2 >= url.length() || url.charAt(i) != '%')
+            return -1;
+        int high = Character.digit(url.charAt(i + 1), 16);
+        int low = Character.digit(url.charAt(i + 2), 16);
+        if (high < 0 || low < 0)
+            return -1;
+        return (high << 4) | low;
+    }
+
+    /**
+     * Appends escape sequence for byte
+     *
+     * @param key   Key builder
+     * @param value Byte value
+     */
+    protected static void appendEscape(StringBuilder key, int value) {
+        key.append('%').append(HEX[(value >> 4) & 0xF]).append(HEX[value & 0xF]);
+    }
+
+    /**
+     * Check if character is unreserved in URL
+     *
+     * @param c Character
+     * @return true for letters, digits and -._~
+     */
+    protected static boolean isUnreserved(char c) {
+        return isLetter(c) || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    /**
+     * Check if character is ASCII letter
+     *
+     * @param c Character
+     * @return true for a-z and A-Z
+     */
+    protected static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * Return lower-cased part of string, without copy if it is already lower-cased
+     *
+     * @param text  String
+     * @param start Start index
+     * @param end   End index
+     * @return lower-cased substring
+     */
+    protected static String lowerCase(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z')
+                return text.substring(start, end).toLowerCase();
+        }
+        return start == 0 && end == text.length() ? text : text.substring(start, end);
+    }
+}
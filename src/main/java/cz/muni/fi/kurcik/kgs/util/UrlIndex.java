@@ -1,9 +1,7 @@
 package cz.muni.fi.kurcik.kgs.util;
 
-import javax.ws.rs.core.UriBuilder;
 import java.io.IOException;
 import java.net.URI;
-import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -14,14 +12,14 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
- * Structure for finding id of URLs
+ * Structure for finding id of URLs. URLs are compared by their canonical keys from UrlCanonicalizer.
  *
  * @author Lukáš Kurčík
  */
 public class UrlIndex {
 
     final protected Map<Long, URI> idToUrl = new HashMap<>();
-    final protected Map<URI, Long> urlToId = new HashMap<>();
+    final protected Map<String, Long> urlToId = new HashMap<>();
 
     /**
      * Default constructor
@@ -50,7 +48,7 @@ public class UrlIndex {
                 if (line.isEmpty())
                     return;
                 String[] parts = line.split(" ");
-                add(Long.parseLong(parts[1]), URI.create(parts[0]));
+                add(Long.parseLong(parts[1]), parts[0]);
             });
         } catch (IOException e) {
             throw e;
@@ -64,23 +62,7 @@ public class UrlIndex {
      * @return id or null
      */
     public Long getId(URI url) {
-        url = normalize(url);
-        Long id = urlToId.get(url);
-        if (id != null) {
-            return id;
-        }
-
-        try {
-            URI lastSlash = null;
-            lastSlash = new URI(url.getScheme(), url.getAuthority(), url.getPath().replaceAll("/$", ""), url.getQuery());
-            id = urlToId.get(lastSlash);
-            if (id != null)
-                return id;
-        } catch (URISyntaxException e) {
-            e.printStackTrace();
-        }
-
-        return urlToId.get(UriBuilder.fromUri(url).scheme(url.getScheme().equals("http") ? "https" : "http").build());
+        return getId(url.toString());
     }
 
     /**
@@ -90,7 +72,7 @@ public class UrlIndex {
      * @return id or null
      */
     public Long getId(String url) {
-        return getId(URI.create(url));
+        return urlToId.get(UrlCanonicalizer.canonicalize(url));
     }
 
     /**
@@ -110,9 +92,19 @@ public class UrlIndex {
      * @param url URL
      */
     public void add(long id, URI url) {
-        url = normalize(url);
-        urlToId.put(url, id);
-        idToUrl.put(id, url);
+        add(id, url.toString());
+    }
+
+    /**
+     * Adds new url
+     *
+     * @param id  ID
+     * @param url URL
+     */
+    public void add(long id, String url) {
+        String key = UrlCanonicalizer.canonicalize(url);
+        urlToId.put(key, id);
+        idToUrl.put(id, URI.create(key));
     }
 
     /**
@@ -123,13 +115,8 @@ public class UrlIndex {
      */
     public static URI normalize(URI url) {
         try {
-            String path;
-            if (url.getPath() != null && url.getPath().endsWith("/"))
-                path = url.getPath().replaceAll("/$", "");
-            else
-                path = url.getPath();
-            return new URI("http", url.getAuthority(), path, url.getQuery(), null);
-        } catch (URISyntaxException e) {
+            return URI.create(UrlCanonicalizer.canonicalize(url));
+        } catch (IllegalArgumentException e) {
             return url;
         }
     }
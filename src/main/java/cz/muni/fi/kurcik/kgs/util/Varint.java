@@ -0,0 +1,73 @@
+package cz.muni.fi.kurcik.kgs.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Helper class for writing and reading non-negative integers as varints, 7 bits in each byte, lowest bits first.
+ * Highest bit of byte is set if more bytes follow.
+ *
+ * @author Lukáš Kurčík
+ */
+public class Varint {
+
+    /**
+     * Writes non-negative integer as varint
+     *
+     * @param output output
+     * @param value  value
+     * @throws IOException when there is problem with writing
+     */
+    public static void write(OutputStream output, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            output.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    /**
+     * Reads varint from buffer
+     *
+     * @param buffer buffer
+     * @return value
+     */
+    public static int read(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0)
+                return value;
+            if (shift > 28)
+                throw new IllegalStateException("Invalid varint");
+        }
+    }
+
+    /**
+     * Reads varint from stream
+     *
+     * @param input input
+     * @return value or -1 if stream ends before varint
+     * @throws IOException when there is problem with reading or stream ends inside varint
+     */
+    public static int read(InputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = input.read();
+            if (b < 0) {
+                if (shift == 0)
+                    return -1;
+                throw new EOFException("Stream ends inside varint");
+            }
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+            if (shift > 28)
+                throw new IOException("Invalid varint");
+        }
+    }
+}